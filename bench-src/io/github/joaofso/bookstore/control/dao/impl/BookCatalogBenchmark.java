@@ -0,0 +1,138 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class compares the catalog reads of the BookDAOXML streaming the file in
+ * every operation against the reads served from the in-memory catalog, with
+ * and without the trigram indexes, and against the BookDAOBinary reading the
+ * converted catalog through a memory mapped buffer. It generates one book database per catalog
+ * size and measures listAll, searchByTitle and searchByAuthor on every path.
+ *
+ * Usage: BookCatalogBenchmark [catalogSize]*
+ *
+ * @author João Felipe
+ *
+ */
+public class BookCatalogBenchmark {
+
+	private static final int[] DEFAULT_SIZES = { 1000, 100000, 1000000 };
+	private static final long TIME_BUDGET_NANOS = 2000000000L;
+	private static final String[] AUTHORS = { "Average Swede", "Rich Bloke", "First Author", "Second Author",
+			"Cunning Bastard" };
+	private static final String[] WORDS = { "Mastering", "åäö", "How", "To", "Spend", "Money", "Generic", "Title",
+			"Random", "Sales", "Desired" };
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.println(String.format("%-10s %-15s %15s %15s %15s", "books", "path", "listAll(ms)",
+				"byTitle(ms)", "byAuthor(ms)"));
+		for (int size : sizes) {
+			File dbFile = File.createTempFile("BookCatalogBenchmark", ".xml");
+			dbFile.deleteOnExit();
+			writeCatalog(dbFile, size);
+
+			measure(size, "stream per call", new BookDAOXML(dbFile.getPath(), false));
+			measure(size, "cached", new BookDAOXML(dbFile.getPath(), true));
+			measure(size, "trigram index", new BookDAOXML(dbFile.getPath(), true, false, true));
+
+			File binaryFile = File.createTempFile("BookCatalogBenchmark", ".bin");
+			binaryFile.deleteOnExit();
+			long start = System.nanoTime();
+			BookDatabaseConverter.convert(dbFile, binaryFile);
+			long converted = System.nanoTime();
+			BookDAOBinary binaryDAO = new BookDAOBinary(binaryFile.getPath());
+			binaryDAO.getStock(new Book("Benchmark Title", "Benchmark Author", BigDecimal.ONE));
+			long opened = System.nanoTime();
+			System.out.println(String.format("%-10d %-15s conversion %.3f ms, first lookup %.3f ms", size, "binary mapped",
+					(converted - start) / 1000000.0, (opened - converted) / 1000000.0));
+			measure(size, "binary mapped", binaryDAO);
+
+			dbFile.delete();
+			binaryFile.delete();
+		}
+	}
+
+	private static void measure(int size, String path, BookDAO bookDAO) throws BookstoreException {
+		// the first call loads the cache, so it is not part of the measurement
+		check(bookDAO.listAll(), size);
+
+		double listAll = averageMillis(new Operation() {
+			public List<Book> run() {
+				return bookDAO.listAll();
+			}
+		});
+		double byTitle = averageMillis(new Operation() {
+			public List<Book> run() {
+				return bookDAO.searchByTitle("Spend Money");
+			}
+		});
+		double byAuthor = averageMillis(new Operation() {
+			public List<Book> run() {
+				return bookDAO.searchByAuthor("Rich Bloke");
+			}
+		});
+		System.out.println(String.format("%-10d %-15s %15.3f %15.3f %15.3f", size, path, listAll, byTitle, byAuthor));
+	}
+
+	private static double averageMillis(Operation operation) throws BookstoreException {
+		int iterations = 0;
+		long start = System.nanoTime();
+		long elapsed = 0;
+		do {
+			check(operation.run(), -1);
+			iterations++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < TIME_BUDGET_NANOS);
+		return elapsed / 1000000.0 / iterations;
+	}
+
+	private static void check(List<Book> books, int expectedSize) throws BookstoreException {
+		if (books == null || (expectedSize >= 0 && books.size() != expectedSize)) {
+			throw new BookstoreException("The benchmark catalog could not be read");
+		}
+	}
+
+	static void writeCatalog(File dbFile, int size) throws IOException {
+		Random random = new Random(size);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(dbFile), StandardCharsets.UTF_8));
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<books>");
+			for (int i = 0; i < size; i++) {
+				String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+						+ i;
+				String author = AUTHORS[random.nextInt(AUTHORS.length)];
+				String price = (random.nextInt(100000) / 100) + "." + String.format("%02d", random.nextInt(100));
+				writer.write("<book><title>" + title + "</title><author>" + author + "</author><price>" + price
+						+ "</price></book>");
+			}
+			writer.write("</books>\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private interface Operation {
+		List<Book> run();
+	}
+}
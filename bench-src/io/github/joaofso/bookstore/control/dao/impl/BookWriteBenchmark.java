@@ -0,0 +1,68 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class compares the write latency of the BookDAOXML rewriting the whole
+ * XML file in every change against the journaled mode, which appends one record
+ * per change. Each measured operation inserts a book and removes it again.
+ *
+ * Usage: BookWriteBenchmark [catalogSize]*
+ *
+ * @author João Felipe
+ *
+ */
+public class BookWriteBenchmark {
+
+	private static final int[] DEFAULT_SIZES = { 1000, 100000, 1000000 };
+	private static final long TIME_BUDGET_NANOS = 2000000000L;
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = DEFAULT_SIZES;
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.println(String.format("%-10s %-15s %20s", "books", "path", "insert+delete(ms)"));
+		for (int size : sizes) {
+			File dbFile = File.createTempFile("BookWriteBenchmark", ".xml");
+			File journalFile = new File(dbFile.getPath() + ".journal");
+			dbFile.deleteOnExit();
+			journalFile.deleteOnExit();
+
+			BookCatalogBenchmark.writeCatalog(dbFile, size);
+			measure(size, "full rewrite", new BookDAOXML(dbFile.getPath(), true, false));
+			measure(size, "journaled", new BookDAOXML(dbFile.getPath(), true, true));
+
+			dbFile.delete();
+			journalFile.delete();
+		}
+	}
+
+	private static void measure(int size, String path, BookDAOXML bookDAO) throws BookstoreException {
+		Book book = new Book("Benchmark Title", "Benchmark Author", new BigDecimal("10.00"));
+		// the first call loads the catalog, so it is not part of the measurement
+		bookDAO.listAll();
+
+		int iterations = 0;
+		long start = System.nanoTime();
+		long elapsed = 0;
+		do {
+			if (!bookDAO.insertBook(book) || !bookDAO.deleteBook(book)) {
+				throw new BookstoreException("The benchmark catalog could not be written");
+			}
+			iterations++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < TIME_BUDGET_NANOS);
+		bookDAO.compact();
+
+		System.out.println(String.format("%-10d %-15s %20.3f", size, path, elapsed / 1000000.0 / iterations));
+	}
+}
@@ -0,0 +1,79 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class compares the latency of a purchase removing the units of the
+ * basket one by one, as the BookStore used to do, against the checkout of the
+ * whole basket in a single update, for several basket sizes. The catalog is
+ * restocked between purchases, outside the measurement.
+ *
+ * Usage: CheckoutBenchmark [catalogSize]
+ *
+ * @author João Felipe
+ *
+ */
+public class CheckoutBenchmark {
+
+	private static final int DEFAULT_SIZE = 10000;
+	private static final int[] BASKET_SIZES = { 1, 5, 20, 50 };
+	private static final long TIME_BUDGET_NANOS = 2000000000L;
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+
+		File dbFile = File.createTempFile("CheckoutBenchmark", ".xml");
+		dbFile.deleteOnExit();
+		BookCatalogBenchmark.writeCatalog(dbFile, size);
+		BookDAOXML bookDAO = new BookDAOXML(dbFile.getPath(), true, false);
+
+		System.out.println(String.format("%-10s %-10s %20s %20s", "books", "basket", "unit by unit(ms)",
+				"checkout(ms)"));
+		for (int basketSize : BASKET_SIZES) {
+			Book[] basket = new Book[basketSize];
+			for (int i = 0; i < basketSize; i++) {
+				// a few titles with several units each, as in a real basket
+				basket[i] = new Book("Benchmark Title " + (i % 5), "Benchmark Author", new BigDecimal("10.00"));
+			}
+			double unitByUnit = averageMillis(bookDAO, basket, false);
+			double checkout = averageMillis(bookDAO, basket, true);
+			System.out.println(String.format("%-10d %-10d %20.3f %20.3f", size, basketSize, unitByUnit, checkout));
+		}
+
+		dbFile.delete();
+	}
+
+	private static double averageMillis(BookDAOXML bookDAO, Book[] basket, boolean batched)
+			throws BookstoreException {
+		int iterations = 0;
+		long measured = 0;
+		long start = System.nanoTime();
+		do {
+			for (Book book : basket) {
+				bookDAO.incrementStock(book, 1);
+			}
+			long purchaseStart = System.nanoTime();
+			boolean bought = true;
+			if (batched) {
+				for (PurchaseStatus status : bookDAO.checkout(basket)) {
+					bought &= status == PurchaseStatus.OK;
+				}
+			} else {
+				for (Book book : basket) {
+					bought &= bookDAO.deleteBook(book);
+				}
+			}
+			measured += System.nanoTime() - purchaseStart;
+			if (!bought) {
+				throw new BookstoreException("The benchmark basket could not be bought");
+			}
+			iterations++;
+		} while (System.nanoTime() - start < TIME_BUDGET_NANOS);
+		return measured / 1000000.0 / iterations;
+	}
+}
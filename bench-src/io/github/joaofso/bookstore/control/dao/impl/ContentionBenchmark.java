@@ -0,0 +1,105 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class measures the checkout throughput of BookDAOXML with 1 to 32
+ * shoppers buying different titles at the same time. Each shopper buys baskets
+ * of its own titles, so they never compete for the same stock. The striped
+ * locks are compared against a single global lock around every checkout, as
+ * BookStore.buy used to be synchronized.
+ *
+ * Both storage modes are measured. In the default mode every checkout rewrites
+ * the XML file, and the rewrites take turns, so the baskets are checked out in
+ * parallel only in the journaled mode.
+ *
+ * Usage: ContentionBenchmark [catalogSize]
+ *
+ * @author João Felipe
+ *
+ */
+public class ContentionBenchmark {
+
+	private static final int DEFAULT_SIZE = 1000;
+	private static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+	private static final int BASKET_SIZE = 3;
+	private static final int STOCK = 1000000000;
+	private static final long TIME_BUDGET_NANOS = 2000000000L;
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SIZE;
+
+		System.out.println(String.format("%-10s %-10s %-10s %25s %25s", "mode", "books", "threads",
+				"global lock(checkouts/s)", "striped locks(checkouts/s)"));
+		for (boolean journaled : new boolean[] { false, true }) {
+			for (int threads : THREADS) {
+				double global = measure(size, threads, journaled, true);
+				double striped = measure(size, threads, journaled, false);
+				System.out.println(String.format("%-10s %-10d %-10d %25.0f %25.0f", journaled ? "journaled" : "default",
+						size, threads, global, striped));
+			}
+		}
+	}
+
+	private static double measure(int size, int threads, boolean journaled, boolean globalLock) throws Exception {
+		File dbFile = File.createTempFile("ContentionBenchmark", ".xml");
+		File journalFile = new File(dbFile.getPath() + ".journal");
+		BookCatalogBenchmark.writeCatalog(dbFile, size);
+		BookDAOXML bookDAO = new BookDAOXML(dbFile.getPath(), true, journaled);
+
+		Book[][] baskets = new Book[threads][BASKET_SIZE];
+		for (int i = 0; i < threads; i++) {
+			for (int j = 0; j < BASKET_SIZE; j++) {
+				baskets[i][j] = new Book("Contention Title " + i + "-" + j, "Benchmark Author", new BigDecimal("10.00"));
+				bookDAO.incrementStock(baskets[i][j], STOCK);
+			}
+		}
+
+		Object lock = new Object();
+		AtomicLong checkouts = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] shoppers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			Book[] basket = baskets[i];
+			shoppers[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long deadline = System.nanoTime() + TIME_BUDGET_NANOS;
+				long done = 0;
+				while (System.nanoTime() < deadline) {
+					PurchaseStatus[] statuses;
+					if (globalLock) {
+						synchronized (lock) {
+							statuses = bookDAO.checkout(basket);
+						}
+					} else {
+						statuses = bookDAO.checkout(basket);
+					}
+					if (statuses[0] != PurchaseStatus.OK) {
+						throw new IllegalStateException("The benchmark basket could not be bought");
+					}
+					done++;
+				}
+				checkouts.addAndGet(done);
+			});
+			shoppers[i].start();
+		}
+		start.countDown();
+		for (Thread shopper : shoppers) {
+			shopper.join();
+		}
+
+		dbFile.delete();
+		journalFile.delete();
+		return checkouts.get() / (TIME_BUDGET_NANOS / 1000000000.0);
+	}
+}
@@ -0,0 +1,370 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import io.github.joaofso.bookstore.model.Money;
+
+/**
+ * This class generates synthetic book and user databases for the scale
+ * tests, in the formats read by the bookstore: the XML book database, the XML
+ * user database and the semicolon separated inventory file of the exercise,
+ * which holds the same books as the XML one.
+ *
+ * The data is deterministic for a given seed. The popularity of the authors
+ * follows a Zipf distribution, so a few authors have most of the books, as do
+ * the words of the titles, whose number of words is skewed towards short
+ * titles. The names and words mix English and Swedish, with the non-ASCII
+ * letters of the exercise sample. The prices are spread around a few hundred,
+ * with the usual endings, and a few books are out of stock.
+ *
+ * The files are written as a stream, book by book, so the heap needed does
+ * not depend on the number of books. The books are unique with a very high
+ * probability; a repeated book is merged by the readers, adding its stock.
+ *
+ * The users are an admin, whose password is admin, and shoppers named
+ * shopper0, shopper1 and so on, whose passwords are their names.
+ *
+ * Usage: DataGenerator [books [users [seed [outputDirectory]]]]
+ *
+ * @author João Felipe
+ *
+ */
+public class DataGenerator {
+
+	private static final int DEFAULT_BOOKS = 100000;
+	private static final int DEFAULT_USERS = 1000;
+	private static final long DEFAULT_SEED = 42;
+	private static final int MAX_BOOKS = 10000000;
+	private static final int BOOKS_PER_AUTHOR = 8;
+
+	private static final double AUTHOR_EXPONENT = 1.0;
+	private static final double WORD_EXPONENT = 1.1;
+	// the chance of a title having one, two, three words and so on
+	private static final double[] TITLE_LENGTHS = { 0.10, 0.22, 0.25, 0.18, 0.11, 0.06, 0.04, 0.02, 0.02 };
+
+	private static final String[] WORDS = { "The", "Of", "And", "Mastering", "åäö", "How", "To", "Spend", "Money",
+			"Generic", "Title", "Random", "Sales", "Desired", "A", "In", "Life", "History", "Guide", "Love", "Night",
+			"World", "Secret", "House", "Last", "Garden", "War", "Sea", "Stone", "Winter", "Summer", "Island", "Light",
+			"Shadow", "City", "Road", "River", "King", "Queen", "Child", "Dream", "Fire", "Silence", "Time", "Art",
+			"Modern", "Practical", "Introduction", "Java", "Cooking", "Travel", "Forest", "Och", "Av", "Det", "En",
+			"Kärlek", "Hämnd", "Mörker", "Ödets", "Skärgård", "Fjällen", "Björnen", "Älven", "Sjön", "Ön", "Vägen",
+			"Hösten", "Våren", "Sommaren", "Vintern", "Mästaren", "Flickan", "Pojken", "Kungens", "Drömmar", "Tystnad",
+			"Ljus", "Skuggan", "Staden", "Havet", "Stjärnor", "Minnen", "Resan", "Hemligheten", "Båtar", "Kök",
+			"Trädgården", "Öar", "Fåglar", "Märkliga", "Gröna", "Röda", "Blå", "Förlorade", "Sista", "Första" };
+
+	private static final String[] FIRST_NAMES = { "Anna", "Lars", "Karin", "Björn", "Åsa", "Örjan", "Märta", "Göran",
+			"Eva", "Johan", "Maria", "Per", "Sofia", "Erik", "Ingrid", "Mikael", "Linnéa", "Anders", "Elin", "Håkan",
+			"Emma", "Jonas", "Kristina", "Stefan", "Frida", "Magnus", "Ylva", "Sören", "Malin", "Olof", "Helena", "Nils",
+			"Ebba", "Mats", "Agnes", "Jörgen", "Astrid", "Pär", "Ulla", "Rich" };
+	private static final String[] NAME_PREFIXES = { "Ek", "Lind", "Berg", "Ström", "Sjö", "Åker", "Björk", "Gran",
+			"Holm", "Löv", "Dahl", "Sand", "Ny", "Öst", "Väst", "Nord", "Sund", "Fors", "Hag", "Äng", "Ros", "Lund",
+			"Mal", "Wall", "Hed", "Kvist", "Ljung", "Al", "Ask", "Bäck" };
+	private static final String[] NAME_SUFFIXES = { "berg", "ström", "gren", "lund", "qvist", "man", "holm", "dahl",
+			"sson", "ander", "blad", "by", "feldt", "ling", "hammar", "stedt", "ros", "löf", "vall", "mark" };
+	private static final int SURNAMES = NAME_PREFIXES.length * NAME_SUFFIXES.length;
+
+	private final long seed;
+
+	/**
+	 * Constructor of the generator.
+	 * @param seed The seed of the random data.
+	 */
+	public DataGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int books = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOOKS;
+		int users = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_USERS;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+		File directory = new File(args.length > 3 ? args[3] : ".");
+		directory.mkdirs();
+
+		DataGenerator generator = new DataGenerator(seed);
+		long start = System.nanoTime();
+		File bookFile = new File(directory, "BookDatabase.xml");
+		File inventoryFile = new File(directory, "Inventory.txt");
+		generator.writeBooks(books, bookFile, inventoryFile);
+		File userFile = new File(directory, "UserDatabase.xml");
+		generator.writeUsers(users, userFile);
+		System.out.println(String.format("%d books and %d users written in %.1f s: %s (%d bytes), %s (%d bytes), %s (%d bytes)",
+				books, users, (System.nanoTime() - start) / 1e9, bookFile.getPath(), bookFile.length(),
+				inventoryFile.getPath(), inventoryFile.length(), userFile.getPath(), userFile.length()));
+	}
+
+	/**
+	 * Writes a book database as an XML file and as an inventory file, with the
+	 * same books in the same order. Either file may be omitted.
+	 * @param books The number of books, up to ten millions.
+	 * @param xmlFile The XML book database, or null.
+	 * @param inventoryFile The semicolon separated inventory file, or null.
+	 * @throws IOException Thrown if the files cannot be written.
+	 */
+	public void writeBooks(int books, File xmlFile, File inventoryFile) throws IOException {
+		if (books < 0 || books > MAX_BOOKS) {
+			throw new IllegalArgumentException("The number of books must be between 0 and " + MAX_BOOKS);
+		}
+		Random random = new Random(this.seed);
+		int authors = Math.max(1, books / BOOKS_PER_AUTHOR);
+		ZipfSampler authorSampler = new ZipfSampler(authors, AUTHOR_EXPONENT);
+		ZipfSampler wordSampler = new ZipfSampler(WORDS.length, WORD_EXPONENT);
+
+		OutputStream xmlOutput = xmlFile == null ? null : new BufferedOutputStream(new FileOutputStream(xmlFile), 1 << 16);
+		Writer inventory = inventoryFile == null ? null
+				: new BufferedWriter(new OutputStreamWriter(new FileOutputStream(inventoryFile), StandardCharsets.UTF_8), 1 << 16);
+		try {
+			XMLStreamWriter xml = null;
+			if (xmlOutput != null) {
+				xml = XMLOutputFactory.newInstance().createXMLStreamWriter(xmlOutput, "UTF-8");
+				xml.writeStartDocument("UTF-8", "1.0");
+				xml.writeStartElement("books");
+			}
+			StringBuilder title = new StringBuilder();
+			for (int i = 0; i < books; i++) {
+				title.setLength(0);
+				int words = titleLength(random);
+				int previous = -1;
+				for (int j = 0; j < words; j++) {
+					int word = wordSampler.sample(random) - 1;
+					while (word == previous) {
+						word = wordSampler.sample(random) - 1;
+					}
+					if (j > 0) {
+						title.append(' ');
+					}
+					title.append(WORDS[word]);
+					previous = word;
+				}
+				String author = authorName(authorSampler.sample(random) - 1);
+				long price = price(random);
+				int quantity = quantity(random);
+
+				if (xml != null) {
+					xml.writeStartElement("book");
+					element(xml, "title", title.toString());
+					element(xml, "author", author);
+					element(xml, "price", Money.toString(price));
+					element(xml, "quantity", Integer.toString(quantity));
+					xml.writeEndElement();
+				}
+				if (inventory != null) {
+					inventory.write(title.toString());
+					inventory.write(';');
+					inventory.write(author);
+					inventory.write(';');
+					inventory.write(groupThousands(price));
+					inventory.write(';');
+					inventory.write(Integer.toString(quantity));
+					inventory.write('\n');
+				}
+			}
+			if (xml != null) {
+				xml.writeEndElement();
+				xml.writeEndDocument();
+				xml.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			if (xmlOutput != null) {
+				xmlOutput.close();
+			}
+			if (inventory != null) {
+				inventory.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes a user database with an admin and the shoppers.
+	 * @param users The number of shoppers.
+	 * @param xmlFile The XML user database.
+	 * @throws IOException Thrown if the file cannot be written.
+	 */
+	public void writeUsers(int users, File xmlFile) throws IOException {
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(xmlFile), 1 << 16);
+		try {
+			XMLStreamWriter xml = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
+			xml.writeStartDocument("UTF-8", "1.0");
+			xml.writeStartElement("users");
+			user(xml, "admin", "admin", true);
+			for (int i = 0; i < users; i++) {
+				user(xml, "shopper" + i, "shopper" + i, false);
+			}
+			xml.writeEndElement();
+			xml.writeEndDocument();
+			xml.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Returns the name of an author. Every index has a different name: a first
+	 * name and a surname made of a prefix and a suffix, doubled for the authors
+	 * beyond the simple surnames.
+	 */
+	static String authorName(int index) {
+		String firstName = FIRST_NAMES[index % FIRST_NAMES.length];
+		int surname = index / FIRST_NAMES.length;
+		StringBuilder name = new StringBuilder(firstName).append(' ');
+		appendSurname(name, surname % SURNAMES);
+		if (surname >= SURNAMES) {
+			appendSurname(name.append('-'), surname / SURNAMES - 1);
+		}
+		return name.toString();
+	}
+
+	private static void appendSurname(StringBuilder name, int surname) {
+		name.append(NAME_PREFIXES[surname % NAME_PREFIXES.length])
+				.append(NAME_SUFFIXES[(surname / NAME_PREFIXES.length) % NAME_SUFFIXES.length]);
+	}
+
+	private static int titleLength(Random random) {
+		double chance = random.nextDouble();
+		for (int i = 0; i < TITLE_LENGTHS.length; i++) {
+			chance -= TITLE_LENGTHS[i];
+			if (chance < 0) {
+				return i + 1;
+			}
+		}
+		return TITLE_LENGTHS.length;
+	}
+
+	/**
+	 * Returns a price in cents, log-normally spread around 250, ending in .00,
+	 * .50 or .95.
+	 */
+	private static long price(Random random) {
+		long whole = Math.min(999999, Math.max(1, Math.round(Math.exp(5.5 + 0.9 * random.nextGaussian()))));
+		double ending = random.nextDouble();
+		return whole * 100 + (ending < 0.6 ? 0 : ending < 0.8 ? 50 : 95);
+	}
+
+	/**
+	 * Returns the stock of a book: out of stock for one in twenty books, and
+	 * geometrically spread around ten units for the others.
+	 */
+	private static int quantity(Random random) {
+		if (random.nextDouble() < 0.05) {
+			return 0;
+		}
+		return 1 + (int) Math.min(500, Math.floor(Math.log(1 - random.nextDouble()) / Math.log(0.9)));
+	}
+
+	/**
+	 * Writes a price like 1,000,000.00, as in the exercise file.
+	 */
+	private static String groupThousands(long price) {
+		String plain = Money.toString(price);
+		StringBuilder grouped = new StringBuilder(plain.length() + 4);
+		int integerDigits = plain.length() - 3;
+		for (int i = 0; i < plain.length(); i++) {
+			if (i > 0 && i < integerDigits && (integerDigits - i) % 3 == 0) {
+				grouped.append(',');
+			}
+			grouped.append(plain.charAt(i));
+		}
+		return grouped.toString();
+	}
+
+	private static void element(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+		xml.writeStartElement(name);
+		xml.writeCharacters(text);
+		xml.writeEndElement();
+	}
+
+	private static void user(XMLStreamWriter xml, String username, String password, boolean admin)
+			throws XMLStreamException {
+		xml.writeStartElement("user");
+		element(xml, "username", username);
+		element(xml, "password", password);
+		element(xml, "admin", Boolean.toString(admin));
+		xml.writeEndElement();
+	}
+
+	/**
+	 * Samples ranks from 1 to n with probabilities proportional to 1 / rank^s,
+	 * by the rejection-inversion method of Hörmann and Derflinger, which takes
+	 * constant time and memory whatever the number of ranks.
+	 */
+	static final class ZipfSampler {
+
+		private final int numberOfElements;
+		private final double exponent;
+		private final double hIntegralX1;
+		private final double hIntegralNumberOfElements;
+		private final double s;
+
+		ZipfSampler(int numberOfElements, double exponent) {
+			this.numberOfElements = numberOfElements;
+			this.exponent = exponent;
+			this.hIntegralX1 = this.hIntegral(1.5) - 1;
+			this.hIntegralNumberOfElements = this.hIntegral(numberOfElements + 0.5);
+			this.s = 2 - this.hIntegralInverse(this.hIntegral(2.5) - this.h(2));
+		}
+
+		int sample(Random random) {
+			while (true) {
+				double u = this.hIntegralNumberOfElements
+						+ random.nextDouble() * (this.hIntegralX1 - this.hIntegralNumberOfElements);
+				double x = this.hIntegralInverse(u);
+				int k = (int) (x + 0.5);
+				if (k < 1) {
+					k = 1;
+				} else if (k > this.numberOfElements) {
+					k = this.numberOfElements;
+				}
+				if (k - x <= this.s || u >= this.hIntegral(k + 0.5) - this.h(k)) {
+					return k;
+				}
+			}
+		}
+
+		private double hIntegral(double x) {
+			double logX = Math.log(x);
+			return helper2((1 - this.exponent) * logX) * logX;
+		}
+
+		private double h(double x) {
+			return Math.exp(-this.exponent * Math.log(x));
+		}
+
+		private double hIntegralInverse(double x) {
+			double t = x * (1 - this.exponent);
+			if (t < -1) {
+				t = -1;
+			}
+			return Math.exp(helper1(t) * x);
+		}
+
+		/**
+		 * Returns log(1 + x) / x, also near zero.
+		 */
+		private static double helper1(double x) {
+			return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+		}
+
+		/**
+		 * Returns (exp(x) - 1) / x, also near zero.
+		 */
+		private static double helper2(double x) {
+			return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+		}
+	}
+}
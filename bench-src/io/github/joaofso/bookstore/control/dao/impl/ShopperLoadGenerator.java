@@ -0,0 +1,283 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.Keywords;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.BookController;
+import io.github.joaofso.bookstore.control.BookStore;
+import io.github.joaofso.bookstore.control.SessionManager;
+import io.github.joaofso.bookstore.control.UserController;
+import io.github.joaofso.bookstore.metrics.LatencyHistogram;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.ShoppingBasketItem;
+
+/**
+ * This class drives many shoppers at once through the facade, in the same
+ * process, over a generated catalog kept in the XML files. Each shopper logs
+ * in, lists the books of a search, adds one of them to the basket, repeats the
+ * search and the addition up to three times, buys the basket and logs out,
+ * thinking for a random time, exponentially spread around the think time,
+ * before each step. Most searches use the most frequent words of the catalog,
+ * which the query cache answers, and the others use the rest of its words.
+ *
+ * The shoppers run in a closed loop, each one waiting for an answer before the
+ * next step, so a stall holds back the requests that would have been made
+ * meanwhile. Besides the latencies measured, the report shows them corrected
+ * for this coordinated omission, taking the think time as the interval
+ * between the requests of a shopper; without think time there is no
+ * correction. The first fifth of the run warms up and is not reported.
+ *
+ * Usage: ShopperLoadGenerator [shoppers [seconds [thinkMillis [catalogSize [journaled]]]]]
+ *
+ * @author João Felipe
+ *
+ */
+public class ShopperLoadGenerator {
+
+	private static final int DEFAULT_SHOPPERS = 16;
+	private static final int DEFAULT_SECONDS = 30;
+	private static final int DEFAULT_THINK_MILLIS = 10;
+	private static final int DEFAULT_CATALOG_SIZE = 100000;
+	private static final long SEED = 42;
+	private static final int POPULAR_WORDS = 20;
+	private static final double POPULAR_SEARCHES = 0.8;
+	private static final int MAX_ADDITIONS = 3;
+	private static final double[] PERCENTILES = { 50, 99, 99.9 };
+
+	private enum Operation {
+		LOGIN, LIST, ADD, BUY
+	}
+
+	private final SessionManager sessionManager;
+	private final List<String> popularWords;
+	private final List<String> longTailWords;
+	private final long thinkNanos;
+
+	private final Map<Operation, LatencyHistogram> latencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+	private final Map<Operation, LatencyHistogram> correctedLatencies = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+	private final Map<Operation, LongAdder> errors = new EnumMap<Operation, LongAdder>(Operation.class);
+	private final LongAdder booksBought = new LongAdder();
+	private final LongAdder booksNotInStock = new LongAdder();
+	private volatile boolean running = true;
+
+	ShopperLoadGenerator(SessionManager sessionManager, List<Book> catalog, long thinkNanos) {
+		this.sessionManager = sessionManager;
+		this.thinkNanos = thinkNanos;
+		for (Operation operation : Operation.values()) {
+			this.latencies.put(operation, new LatencyHistogram());
+			this.correctedLatencies.put(operation, new LatencyHistogram());
+			this.errors.put(operation, new LongAdder());
+		}
+
+		// the words of the catalog by frequency: the most frequent are the popular searches
+		Map<String, Integer> frequencies = new HashMap<String, Integer>();
+		for (Book book : catalog) {
+			for (String word : Keywords.tokenize(book.getTitle() + " " + book.getAuthor())) {
+				frequencies.merge(word, 1, Integer::sum);
+			}
+		}
+		List<String> words = new ArrayList<String>(frequencies.keySet());
+		Collections.sort(words);
+		Collections.sort(words, (a, b) -> frequencies.get(b) - frequencies.get(a));
+		this.popularWords = new ArrayList<String>(words.subList(0, Math.min(POPULAR_WORDS, words.size())));
+		List<String> longTail = words.subList(this.popularWords.size(), words.size());
+		this.longTailWords = longTail.isEmpty() ? this.popularWords : new ArrayList<String>(longTail);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int shoppers = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SHOPPERS;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+		int thinkMillis = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_THINK_MILLIS;
+		int catalogSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_CATALOG_SIZE;
+		boolean journaled = args.length > 4 ? Boolean.parseBoolean(args[4]) : true;
+
+		File bookFile = File.createTempFile("ShopperLoadGenerator", ".xml");
+		File userFile = File.createTempFile("ShopperLoadGenerator", ".users.xml");
+		bookFile.deleteOnExit();
+		userFile.deleteOnExit();
+		DataGenerator generator = new DataGenerator(SEED);
+		generator.writeBooks(catalogSize, bookFile, null);
+		generator.writeUsers(shoppers, userFile);
+
+		BookDAOXML bookDAO = new BookDAOXML(bookFile.getPath(), true, journaled);
+		SessionManager sessionManager = new SessionManager(new BookController(bookDAO),
+				new UserController(new UserDAOXML(userFile.getPath())));
+		ShopperLoadGenerator load = new ShopperLoadGenerator(sessionManager, bookDAO.listAll(),
+				TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+
+		System.out.println(String.format("%d shoppers over %d books (%s), thinking %d ms, for %d s", shoppers,
+				catalogSize, journaled ? "journaled" : "not journaled", thinkMillis, seconds));
+		long elapsed = load.run(shoppers, TimeUnit.SECONDS.toNanos(seconds) / 5, TimeUnit.SECONDS.toNanos(seconds));
+		System.out.print(load.report(elapsed));
+
+		// waits for a running compaction; one still queued may write the file again, which is deleted on exit
+		bookDAO.compact();
+		bookFile.delete();
+		new File(bookFile.getPath() + ".journal").delete();
+		userFile.delete();
+	}
+
+	/**
+	 * Runs the shoppers, forgetting what was measured while warming up.
+	 * @return The time measured, in nanoseconds.
+	 */
+	long run(int shoppers, long warmupNanos, long totalNanos) throws InterruptedException {
+		Thread[] threads = new Thread[shoppers];
+		for (int i = 0; i < shoppers; i++) {
+			String username = "shopper" + i;
+			Random random = new Random(SEED + i);
+			threads[i] = new Thread(() -> this.shop(username, random), username);
+			threads[i].start();
+		}
+		Thread.sleep(TimeUnit.NANOSECONDS.toMillis(warmupNanos));
+		for (Operation operation : Operation.values()) {
+			this.latencies.get(operation).reset();
+			this.correctedLatencies.get(operation).reset();
+			this.errors.get(operation).reset();
+		}
+		this.booksBought.reset();
+		this.booksNotInStock.reset();
+		long start = System.nanoTime();
+		Thread.sleep(TimeUnit.NANOSECONDS.toMillis(totalNanos - warmupNanos));
+		this.running = false;
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	String report(long elapsedNanos) {
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder report = new StringBuilder(String.format("%-8s %10s %8s %10s", "step", "ops/s", "errors", ""));
+		report.append(String.format(" %11s %11s %11s %11s%n", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)"));
+		for (Operation operation : Operation.values()) {
+			LatencyHistogram measured = this.latencies.get(operation);
+			report.append(String.format("%-8s %10.1f %8d %10s", operation.name().toLowerCase(),
+					measured.getCount() / seconds, this.errors.get(operation).sum(), "measured"));
+			appendLatencies(report, measured);
+			report.append(String.format("%-8s %10s %8s %10s", "", "", "", "corrected"));
+			appendLatencies(report, this.correctedLatencies.get(operation));
+		}
+		report.append(String.format("%.1f books bought/s, %.1f not in stock/s%n", this.booksBought.sum() / seconds,
+				this.booksNotInStock.sum() / seconds));
+		return report.toString();
+	}
+
+	private static void appendLatencies(StringBuilder report, LatencyHistogram histogram) {
+		for (double percentile : PERCENTILES) {
+			report.append(String.format(" %11.3f", histogram.getValueAtPercentile(percentile) / 1e6));
+		}
+		report.append(String.format(" %11.3f%n", histogram.getMax() / 1e6));
+	}
+
+	private void shop(String username, Random random) {
+		BookStore store = new BookStore(this.sessionManager);
+		while (this.running) {
+			this.think(random);
+			long start = System.nanoTime();
+			try {
+				store.loginUser(username, username);
+				this.record(Operation.LOGIN, start);
+			} catch (BookstoreException e) {
+				this.fail(Operation.LOGIN, start);
+				continue;
+			}
+
+			int additions = 1 + random.nextInt(MAX_ADDITIONS);
+			for (int i = 0; i < additions && this.running; i++) {
+				this.think(random);
+				start = System.nanoTime();
+				Book[] books = store.list(this.searchString(random));
+				this.record(Operation.LIST, start);
+				if (books.length == 0) {
+					continue;
+				}
+
+				this.think(random);
+				start = System.nanoTime();
+				try {
+					if (store.add(books[random.nextInt(books.length)], 1)) {
+						this.record(Operation.ADD, start);
+					} else {
+						this.fail(Operation.ADD, start);
+					}
+				} catch (BookstoreException e) {
+					this.fail(Operation.ADD, start);
+				}
+			}
+
+			List<ShoppingBasketItem> items = store.getShoppingBasket().getItems();
+			if (!items.isEmpty()) {
+				Book[] basket = new Book[items.size()];
+				for (int i = 0; i < basket.length; i++) {
+					basket[i] = items.get(i).getItem();
+				}
+				this.think(random);
+				start = System.nanoTime();
+				int[] statuses = store.buy(basket);
+				if (statuses.length == basket.length) {
+					this.record(Operation.BUY, start);
+					for (int status : statuses) {
+						if (status == PurchaseStatus.OK.getStatus()) {
+							this.booksBought.increment();
+						} else {
+							this.booksNotInStock.increment();
+						}
+					}
+				} else {
+					this.fail(Operation.BUY, start);
+				}
+			}
+			store.logoutUser();
+		}
+	}
+
+	/**
+	 * Searches for one of the popular words or, less often, for one or two
+	 * words of the long tail.
+	 */
+	private String searchString(Random random) {
+		if (random.nextDouble() < POPULAR_SEARCHES) {
+			return this.popularWords.get(random.nextInt(this.popularWords.size()));
+		}
+		String word = this.longTailWords.get(random.nextInt(this.longTailWords.size()));
+		if (random.nextBoolean()) {
+			return word;
+		}
+		return word + " " + this.longTailWords.get(random.nextInt(this.longTailWords.size()));
+	}
+
+	private void think(Random random) {
+		if (this.thinkNanos > 0) {
+			long nanos = (long) (-Math.log(1 - random.nextDouble()) * this.thinkNanos);
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void record(Operation operation, long start) {
+		long latency = System.nanoTime() - start;
+		this.latencies.get(operation).record(latency);
+		this.correctedLatencies.get(operation).record(latency, this.thinkNanos);
+	}
+
+	private void fail(Operation operation, long start) {
+		this.record(operation, start);
+		this.errors.get(operation).increment();
+	}
+
+}
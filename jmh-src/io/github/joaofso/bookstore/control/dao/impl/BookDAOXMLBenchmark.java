@@ -0,0 +1,96 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
+
+/**
+ * This class measures the operations of the BookDAOXML over generated
+ * catalogs, with the catalog cached in memory and with the changes journaled.
+ * The DAO is shared by the benchmark threads, so running with more threads
+ * measures the contention on the catalog and on the file.
+ *
+ * The insertions and deletions work on a book with a huge stock, so the
+ * catalog keeps its size during the measurement.
+ *
+ * @author João Felipe
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookDAOXMLBenchmark {
+
+	static final Book STOCKED_BOOK = new Book("Benchmark Title", "Benchmark Author", Money.parse("10.00"));
+	static final int HUGE_STOCK = 1 << 30;
+
+	@Param({ "1000", "10000", "100000" })
+	public int catalogSize;
+
+	@Param({ "false", "true" })
+	public boolean journaled;
+
+	private File dbFile;
+	private BookDAOXML bookDAO;
+
+	@Setup
+	public void createCatalog() throws Exception {
+		this.dbFile = File.createTempFile("BookDAOXMLBenchmark", ".xml");
+		this.dbFile.deleteOnExit();
+		BookCatalogBenchmark.writeCatalog(this.dbFile, this.catalogSize);
+		this.bookDAO = new BookDAOXML(this.dbFile.getPath(), true, this.journaled);
+		this.bookDAO.incrementStock(STOCKED_BOOK, HUGE_STOCK);
+	}
+
+	@TearDown
+	public void deleteCatalog() throws Exception {
+		// waits for a running compaction; one still queued may write the file again, which is deleted on exit
+		this.bookDAO.compact();
+		this.dbFile.delete();
+		new File(this.dbFile.getPath() + ".journal").delete();
+	}
+
+	@Benchmark
+	public List<Book> listAll() {
+		return this.bookDAO.listAll();
+	}
+
+	@Benchmark
+	public List<Book> searchByTitle() {
+		return this.bookDAO.searchByTitle("Spend Money");
+	}
+
+	@Benchmark
+	public List<Book> searchByAuthor() {
+		return this.bookDAO.searchByAuthor("Rich Bloke");
+	}
+
+	@Benchmark
+	public boolean insertBook() {
+		return this.bookDAO.insertBook(STOCKED_BOOK);
+	}
+
+	@Benchmark
+	public boolean deleteBook() {
+		return this.bookDAO.deleteBook(STOCKED_BOOK);
+	}
+}
@@ -0,0 +1,135 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.joaofso.bookstore.control.BookController;
+import io.github.joaofso.bookstore.control.BookStore;
+import io.github.joaofso.bookstore.control.SessionManager;
+import io.github.joaofso.bookstore.control.UserController;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class measures the facade over a generated catalog: the listing of
+ * books with one to five keywords and the purchase of a book. The catalog and
+ * the sessions are shared by the benchmark threads, and each thread shops in a
+ * session of its own.
+ *
+ * The listings go through the query cache of the session manager, so list
+ * measures the repeated searches, while listMissingCache empties the cache
+ * first and measures the keyword search on the DAO.
+ *
+ * @author João Felipe
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookStoreBenchmark {
+
+	private static final String[] KEYWORDS = { "Money", "Sales", "Desired", "åäö", "Title" };
+
+	@State(Scope.Benchmark)
+	public static class Catalog {
+
+		@Param({ "1000", "10000", "100000" })
+		public int catalogSize;
+
+		@Param({ "false", "true" })
+		public boolean journaled;
+
+		File bookFile;
+		File userFile;
+		BookDAOXML bookDAO;
+		SessionManager sessionManager;
+
+		@Setup
+		public void createCatalog() throws Exception {
+			this.bookFile = File.createTempFile("BookStoreBenchmark", ".xml");
+			this.bookFile.deleteOnExit();
+			BookCatalogBenchmark.writeCatalog(this.bookFile, this.catalogSize);
+			this.bookDAO = new BookDAOXML(this.bookFile.getPath(), true, this.journaled);
+			this.bookDAO.incrementStock(BookDAOXMLBenchmark.STOCKED_BOOK, BookDAOXMLBenchmark.HUGE_STOCK);
+
+			this.userFile = File.createTempFile("BookStoreBenchmark", ".users.xml");
+			UserDAOXMLBenchmark.writeUsers(this.userFile, 1);
+			this.sessionManager = new SessionManager(new BookController(this.bookDAO),
+					new UserController(new UserDAOXML(this.userFile.getPath())));
+		}
+
+		@TearDown
+		public void deleteCatalog() throws Exception {
+			// waits for a running compaction; one still queued may write the file again, which is deleted on exit
+			this.bookDAO.compact();
+			this.bookFile.delete();
+			new File(this.bookFile.getPath() + ".journal").delete();
+			this.userFile.delete();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Search {
+
+		@Param({ "1", "2", "3", "4", "5" })
+		public int keywords;
+
+		String searchString;
+
+		@Setup
+		public void createSearchString() {
+			StringBuilder searchString = new StringBuilder();
+			for (int i = 0; i < this.keywords; i++) {
+				searchString.append(KEYWORDS[i]).append(' ');
+			}
+			this.searchString = searchString.toString().trim();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Shopper {
+
+		BookStore store;
+
+		@Setup
+		public void login(Catalog catalog) throws Exception {
+			this.store = new BookStore(catalog.sessionManager);
+			this.store.loginUser("user0", "user0");
+		}
+
+		@TearDown
+		public void logout() {
+			this.store.logoutUser();
+		}
+	}
+
+	@Benchmark
+	public Book[] list(Search search, Shopper shopper) {
+		return shopper.store.list(search.searchString);
+	}
+
+	@Benchmark
+	public Book[] listMissingCache(Catalog catalog, Search search, Shopper shopper) {
+		catalog.sessionManager.getQueryCache().clear();
+		return shopper.store.list(search.searchString);
+	}
+
+	@Benchmark
+	public int[] buy(Shopper shopper) {
+		return shopper.store.buy(BookDAOXMLBenchmark.STOCKED_BOOK);
+	}
+}
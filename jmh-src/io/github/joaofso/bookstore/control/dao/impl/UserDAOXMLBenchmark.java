@@ -0,0 +1,84 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class measures the retrieval of users from the UserDAOXML over
+ * generated user databases. Each call retrieves a random user, so the lookups
+ * do not always hit the same entry.
+ *
+ * @author João Felipe
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDAOXMLBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	public int userCount;
+
+	private File dbFile;
+	private UserDAOXML userDAO;
+
+	@Setup
+	public void createUsers() throws Exception {
+		this.dbFile = File.createTempFile("UserDAOXMLBenchmark", ".xml");
+		writeUsers(this.dbFile, this.userCount);
+		this.userDAO = new UserDAOXML(this.dbFile.getPath());
+	}
+
+	@TearDown
+	public void deleteUsers() {
+		this.dbFile.delete();
+	}
+
+	@Benchmark
+	public User retrieveUser() {
+		return this.userDAO.retrieveUser("user" + ThreadLocalRandom.current().nextInt(this.userCount));
+	}
+
+	/**
+	 * Writes a user database with users named user0, user1 and so on, whose
+	 * passwords are their names.
+	 */
+	static void writeUsers(File dbFile, int count) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(dbFile), StandardCharsets.UTF_8));
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<users>");
+			for (int i = 0; i < count; i++) {
+				writer.write("<user><username>user" + i + "</username><password>user" + i
+						+ "</password><admin>false</admin></user>");
+			}
+			writer.write("</users>\n");
+		} finally {
+			writer.close();
+		}
+	}
+}
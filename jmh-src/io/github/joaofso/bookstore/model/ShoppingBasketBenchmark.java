@@ -0,0 +1,61 @@
+package io.github.joaofso.bookstore.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class measures the addition of many units of a book to a shopping
+ * basket that already holds many books. The units are removed right after
+ * being added, so the basket keeps its size and its total does not overflow
+ * during the measurement. Each benchmark thread has a basket of its own.
+ *
+ * @author João Felipe
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShoppingBasketBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	public int basketSize;
+
+	@Param({ "1", "1000", "1000000" })
+	public int quantity;
+
+	private ShoppingBasket basket;
+	private Book[] books;
+	private int next;
+
+	@Setup
+	public void fillBasket() {
+		this.basket = new ShoppingBasket();
+		this.books = new Book[this.basketSize];
+		for (int i = 0; i < this.basketSize; i++) {
+			this.books[i] = new Book("Benchmark Title " + i, "Benchmark Author", Money.ofMinorUnits(1000 + i));
+			this.basket.addItem(this.books[i]);
+		}
+	}
+
+	@Benchmark
+	public int addItem() {
+		Book book = this.books[this.next];
+		this.next = (this.next + 1) % this.books.length;
+		this.basket.addItem(book, this.quantity);
+		return this.basket.removeItem(book, this.quantity);
+	}
+}
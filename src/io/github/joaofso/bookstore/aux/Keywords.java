@@ -0,0 +1,52 @@
+package io.github.joaofso.bookstore.aux;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class splits texts into the keywords used to search books. The search
+ * string typed by the user and the titles and author names of the books go
+ * through the same rules: the text is normalized to the composed Unicode form,
+ * so "å" typed in two different ways is the same letter, and it is split at
+ * every character that is not a letter or a digit. The case is kept, since the
+ * book search has always been case sensitive.
+ *
+ * @author João Felipe
+ *
+ */
+public final class Keywords {
+
+	private Keywords() {
+	}
+
+	/**
+	 * Splits a text into its keywords.
+	 * @param text The text to be split.
+	 * @return The keywords of the text, in the order they appear. Repeated keywords are kept.
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> keywords = new ArrayList<String>();
+		if (text == null || text.isEmpty()) {
+			return keywords;
+		}
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+		int start = -1;
+		for (int i = 0; i < normalized.length();) {
+			int codePoint = normalized.codePointAt(i);
+			if (Character.isLetterOrDigit(codePoint)) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				keywords.add(normalized.substring(start, i));
+				start = -1;
+			}
+			i += Character.charCount(codePoint);
+		}
+		if (start >= 0) {
+			keywords.add(normalized.substring(start));
+		}
+		return keywords;
+	}
+}
@@ -0,0 +1,23 @@
+package io.github.joaofso.bookstore.control;
+
+import java.util.Collection;
+
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This interface defines an object told by the {@link BookController} about
+ * the books that may have entered or left the listings, because they were
+ * registered, got units in stock or ran out of them.
+ * 
+ * @author João Felipe
+ *
+ */
+public interface BookChangeListener {
+
+	/**
+	 * Receives the books that may have entered or left the listings.
+	 * @param books The changed books.
+	 */
+	void booksChanged(Collection<Book> books);
+
+}
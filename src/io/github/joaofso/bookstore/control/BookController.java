@@ -1,12 +1,22 @@
 package io.github.joaofso.bookstore.control;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
 import io.github.joaofso.bookstore.control.dao.BookDAO;
-import io.github.joaofso.bookstore.control.dao.impl.BookDAOXML;
+import io.github.joaofso.bookstore.control.dao.StorageProviders;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.metrics.OperationMetrics;
 import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
 
 /**
  * This class controls the BookDAO to manage the activities related to books.
@@ -19,14 +29,34 @@ import io.github.joaofso.bookstore.model.Book;
  */
 public class BookController{
 	
+	private final static OperationMetrics LIST_ALL = Metrics.operation("BookController", "listAll");
+	private final static OperationMetrics SEARCH_BY_AUTHOR = Metrics.operation("BookController", "searchByAuthor");
+	private final static OperationMetrics SEARCH_BY_TITLE = Metrics.operation("BookController", "searchByTitle");
+	private final static OperationMetrics SEARCH_BY_KEYWORDS = Metrics.operation("BookController", "searchByKeywords");
+	private final static OperationMetrics SEARCH_BY_TERMS = Metrics.operation("BookController", "searchByTerms");
+	private final static OperationMetrics ADD = Metrics.operation("BookController", "add");
+	private final static OperationMetrics REMOVE = Metrics.operation("BookController", "remove");
+	private final static OperationMetrics CHECKOUT = Metrics.operation("BookController", "checkout");
+
 	private BookDAO bookDAO;
+	private Inventory inventory;
+	private List<BookChangeListener> changeListeners = new CopyOnWriteArrayList<BookChangeListener>();
 	
 	/**
-	 * Constructor of a user controller.
+	 * Constructor of a book controller, over the storage engine chosen by the configuration.
 	 * @throws BookstoreException
 	 */
 	public BookController() throws BookstoreException {
-		this.bookDAO = new BookDAOXML();
+		this(StorageProviders.get().createBookDAO());
+	}
+
+	/**
+	 * Constructor of a book controller over the provided DAO.
+	 * @param bookDAO The DAO where the books are stored.
+	 */
+	public BookController(BookDAO bookDAO) {
+		this.bookDAO = bookDAO;
+		this.inventory = new Inventory(this.bookDAO);
 	}
 
 	/**
@@ -34,7 +64,12 @@ public class BookController{
 	 * @return A list with the registered books.
 	 */
 	public List<Book> listAll() {
-		return this.bookDAO.listAll();
+		long start = LIST_ALL.start();
+		try {
+			return this.inventory.inStock(this.bookDAO.listAll());
+		} finally {
+			LIST_ALL.end(start);
+		}
 	}
 	
 	/**
@@ -43,8 +78,13 @@ public class BookController{
 	 * @return A list with the books published by the referred author.
 	 */
 	public List<Book> searchByAuthor(String author) {
-		this.validateAuthorName(author);
-		return this.bookDAO.searchByAuthor(author);
+		long start = SEARCH_BY_AUTHOR.start();
+		try {
+			this.validateAuthorName(author);
+			return this.inventory.inStock(this.bookDAO.searchByAuthor(author));
+		} finally {
+			SEARCH_BY_AUTHOR.end(start);
+		}
 	}
 	
 	/**
@@ -53,24 +93,116 @@ public class BookController{
 	 * @return A list with the books with the referred title.
 	 */
 	public List<Book> searchByTitle(String title) {
-		this.validateBookTitle(title);
-		return this.bookDAO.searchByTitle(title);
+		long start = SEARCH_BY_TITLE.start();
+		try {
+			this.validateBookTitle(title);
+			return this.inventory.inStock(this.bookDAO.searchByTitle(title));
+		} finally {
+			SEARCH_BY_TITLE.end(start);
+		}
+	}
+	
+	/**
+	 * Search books by keywords, matching whole words of titles and author names.
+	 * @param keywords The keywords to be searched.
+	 * @return A list with the books that have at least one of the keywords, without repetitions.
+	 */
+	public List<Book> searchByKeywords(Collection<String> keywords) {
+		long start = SEARCH_BY_KEYWORDS.start();
+		try {
+			return this.inventory.inStock(this.bookDAO.searchByKeywords(keywords));
+		} finally {
+			SEARCH_BY_KEYWORDS.end(start);
+		}
+	}
+
+	/**
+	 * Search books by terms, matching any part of titles and author names. The
+	 * books by author come before the books by title for each term, as the
+	 * listings always showed them.
+	 * @param terms The terms to be searched.
+	 * @return A list with the books whose title or author name contains at least one of the terms, without repetitions.
+	 */
+	public List<Book> searchByTerms(Collection<String> terms) {
+		long start = SEARCH_BY_TERMS.start();
+		try {
+			return this.inventory.inStock(this.searchTerms(terms));
+		} finally {
+			SEARCH_BY_TERMS.end(start);
+		}
+	}
+
+	/**
+	 * Lists all the books in stock, profiling the search and the stock filter.
+	 */
+	List<Book> listAll(QueryProfile profile) {
+		long start = LIST_ALL.start();
+		try {
+			return this.profiledSearch(() -> this.bookDAO.listAll(), profile);
+		} finally {
+			LIST_ALL.end(start);
+		}
+	}
+
+	/**
+	 * Search books by keywords, profiling the search and the stock filter.
+	 */
+	List<Book> searchByKeywords(Collection<String> keywords, QueryProfile profile) {
+		long start = SEARCH_BY_KEYWORDS.start();
+		try {
+			return this.profiledSearch(() -> this.bookDAO.searchByKeywords(keywords), profile);
+		} finally {
+			SEARCH_BY_KEYWORDS.end(start);
+		}
 	}
 	
+	/**
+	 * Search books by terms, profiling the search and the stock filter.
+	 */
+	List<Book> searchByTerms(Collection<String> terms, QueryProfile profile) {
+		long start = SEARCH_BY_TERMS.start();
+		try {
+			return this.profiledSearch(() -> this.searchTerms(terms), profile);
+		} finally {
+			SEARCH_BY_TERMS.end(start);
+		}
+	}
+
 	/**
 	 * Add a new book in the system
 	 * @throws BookstoreException 
 	 */
 	public boolean add(String title, String author, String price) throws BookstoreException {
-		this.validateBookTitle(title);
-		this.validateAuthorName(author);
-		this.validatePrice(price);
-		BigDecimal formattedPrice = this.formatPrice(price);
+		return this.add(title, author, price, 1);
+	}
+	
+	/**
+	 * Add units of a book in the system, registering the book if it is new.
+	 * @param title The title of the book.
+	 * @param author The author of the book.
+	 * @param price The price of the book, which may have commas separating the thousands.
+	 * @param quantity The number of units to be added.
+	 * @return a boolean value indicating whether the units were added correctly.
+	 * @throws BookstoreException 
+	 */
+	public boolean add(String title, String author, String price, int quantity) throws BookstoreException {
+		long start = ADD.start();
+		try {
+			this.validateBookTitle(title);
+			this.validateAuthorName(author);
+			this.validatePrice(price);
+			Money formattedPrice = this.formatPrice(price);
 
-		Book newBook = new Book(title, author, formattedPrice);
-		boolean result = this.bookDAO.insertBook(newBook);
+			Book newBook = new Book(title, author, formattedPrice);
+			boolean result = this.inventory.add(newBook, quantity);
+			if (result) {
+				this.fireBooksChanged(Collections.singletonList(newBook));
+			}
 		
-		return result;
+			return result;
+		} finally {
+			ADD.end(start);
+		}
 	}
 	
 	/**
@@ -79,7 +211,115 @@ public class BookController{
 	 * @return a boolean value indicating whether the book was removed correctly.
 	 */
 	public boolean remove(Book book) {
-		return this.bookDAO.deleteBook(book);
+		return this.remove(book, 1) == 1;
+	}
+	
+	/**
+	 * Remove units of a book from the system. If there are not enough units in
+	 * stock, every unit left is removed.
+	 * @param book The book to be removed.
+	 * @param quantity The number of units to be removed.
+	 * @return The number of units actually removed.
+	 */
+	public int remove(Book book, int quantity) {
+		long start = REMOVE.start();
+		try {
+			int removed = this.inventory.remove(book, quantity);
+			if (removed > 0) {
+				this.fireSoldOut(Collections.singletonList(book));
+			}
+			return removed;
+		} finally {
+			REMOVE.end(start);
+		}
+	}
+	
+	/**
+	 * Remove from the system the units bought in a basket, all at once.
+	 * @param books The units to be bought, one element per unit.
+	 * @return The status of the purchase of each unit, in the same order.
+	 */
+	public PurchaseStatus[] checkout(Book... books) {
+		long start = CHECKOUT.start();
+		try {
+			PurchaseStatus[] statuses = this.inventory.checkout(books);
+			List<Book> bought = new ArrayList<Book>();
+			for (int i = 0; i < books.length; i++) {
+				if (statuses[i] == PurchaseStatus.OK) {
+					bought.add(books[i]);
+				}
+			}
+			this.fireSoldOut(bought);
+			return statuses;
+		} finally {
+			CHECKOUT.end(start);
+		}
+	}
+
+	/**
+	 * Returns the generation of the listings of the storage, which changes
+	 * whenever a book may have entered or left them, through this controller or
+	 * another one over the same storage.
+	 * @return The generation of the listings.
+	 */
+	public long getGeneration() {
+		return this.bookDAO.getGeneration();
+	}
+
+	/**
+	 * Registers an object to be told about the books that may have entered or
+	 * left the listings.
+	 * @param listener The object to be told.
+	 */
+	public void addChangeListener(BookChangeListener listener) {
+		this.changeListeners.add(listener);
+	}
+
+	/**
+	 * Tells the listeners about the books that ran out of stock, since the ones
+	 * still in stock stay in the listings.
+	 */
+	private void fireSoldOut(List<Book> books) {
+		List<Book> soldOut = new ArrayList<Book>();
+		for (Book book : books) {
+			if (this.inventory.getStock(book) <= 0) {
+				soldOut.add(book);
+			}
+		}
+		if (!soldOut.isEmpty()) {
+			this.fireBooksChanged(soldOut);
+		}
+	}
+
+	/**
+	 * Each term is searched by the storage, which uses its trigram indexes for
+	 * the parts of words when they are turned on.
+	 */
+	private List<Book> searchTerms(Collection<String> terms) {
+		Set<Book> found = new LinkedHashSet<Book>();
+		for (String term : terms) {
+			this.validateAuthorName(term);
+			found.addAll(this.bookDAO.searchByAuthor(term));
+			this.validateBookTitle(term);
+			found.addAll(this.bookDAO.searchByTitle(term));
+		}
+		return new ArrayList<Book>(found);
+	}
+
+	private List<Book> profiledSearch(Supplier<List<Book>> search, QueryProfile profile) {
+		long parses = this.bookDAO.getThreadParses();
+		List<Book> found = search.get();
+		profile.searched(found == null ? 0 : found.size(), this.bookDAO.getThreadParses() - parses);
+		profile.endPhase(QueryProfile.Phase.SEARCH);
+		List<Book> inStock = this.inventory.inStock(found);
+		profile.endPhase(QueryProfile.Phase.STOCK_FILTER);
+		return inStock;
+	}
+
+	private void fireBooksChanged(List<Book> books) {
+		for (BookChangeListener listener : this.changeListeners) {
+			listener.booksChanged(books);
+		}
 	}
 
 	
@@ -96,8 +336,8 @@ public class BookController{
 		
 	}
 
-	private BigDecimal formatPrice(String price) {
-		String newPrice = price.replaceAll(",", "").trim();
-		return new BigDecimal(newPrice);
+	private Money formatPrice(String price) {
+		// the commas separating the thousands are skipped by the parser
+		return Money.parse(price);
 	}
 }
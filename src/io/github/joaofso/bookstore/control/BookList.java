@@ -13,8 +13,12 @@ import io.github.joaofso.bookstore.model.Book;
 public interface BookList {
 	
 	/**
-	 * Retrieves books based on string information.
-	 * @param searchString The terms used to search books.
+	 * Retrieves books based on string information. A book is retrieved when its
+	 * title or author name contains at least one of the terms, so a part of a
+	 * word finds it too: "Mast" finds "Mastering åäö". The terms are compared
+	 * case sensitively.
+	 * @param searchString The terms used to search books, separated by spaces,
+	 *        or an empty string to list every book.
 	 * @return The list of books that satisfy the provided search string.
 	 */
 	public Book[] list(String searchString);
@@ -1,41 +1,86 @@
 package io.github.joaofso.bookstore.control;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
-
 import io.github.joaofso.bookstore.aux.BookstoreException;
-import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.StorageProviders;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.metrics.OperationMetrics;
 import io.github.joaofso.bookstore.model.Book;
 import io.github.joaofso.bookstore.model.ShoppingBasket;
 import io.github.joaofso.bookstore.model.User;
 
 /**
- * This class is the system's facade. It keeps track of the user and shopping
- * basket, using both user and book controllers to perform its activities.
+ * This class is the system's facade. It keeps track of the session of one
+ * user, using the session manager and both user and book controllers to
+ * perform its activities. Many bookstores can share the same session manager,
+ * and so the same catalog and users, one per shopper.
  * 
  * @author João Felipe
  *
  */
 public class BookStore implements BookList {
 
-	private static final String WRONG_QUANTITY = "The amount of books to be added is invalid";
+	private final static OperationMetrics LOGIN_USER = Metrics.operation("BookStore", "loginUser");
+	private final static OperationMetrics LOGOUT_USER = Metrics.operation("BookStore", "logoutUser");
+	private final static OperationMetrics LIST = Metrics.operation("BookStore", "list");
+	private final static OperationMetrics ADD = Metrics.operation("BookStore", "add");
+	private final static OperationMetrics REMOVE = Metrics.operation("BookStore", "remove");
+	private final static OperationMetrics BUY = Metrics.operation("BookStore", "buy");
+	private final static OperationMetrics ADD_NEW_USER = Metrics.operation("BookStore", "addNewUser");
+	private final static OperationMetrics REMOVE_USER = Metrics.operation("BookStore", "removeUser");
+	private final static OperationMetrics ADD_NEW_BOOK = Metrics.operation("BookStore", "addNewBook");
 
+	private SessionManager sessionManager;
 	private BookController bookController;
 	private UserController userController;
 
-	private ShoppingBasket shoppingBasket;
-	private User loggedUser;
+	private String sessionToken;
 
 	public BookStore() throws BookstoreException {
-		this.bookController = new BookController();
-		this.userController = new UserController();
+		this(StorageProviders.get());
+	}
 
-		this.shoppingBasket = null;
-		this.loggedUser = null;
+	/**
+	 * Constructor of the bookstore over a given storage engine, so the engines
+	 * can be compared behind the same facade.
+	 * 
+	 * @param storageProvider
+	 *            The storage engine of the books and users.
+	 * @throws BookstoreException
+	 *             Thrown when the storage cannot be accessed.
+	 */
+	public BookStore(StorageProvider storageProvider) throws BookstoreException {
+		this(new SessionManager(new BookController(storageProvider.createBookDAO()),
+				new UserController(storageProvider.createUserDAO())));
+	}
+
+	/**
+	 * Constructor of the bookstore of one shopper among the many sessions of a
+	 * session manager.
+	 * 
+	 * @param sessionManager
+	 *            The session manager shared by the shoppers.
+	 */
+	public BookStore(SessionManager sessionManager) {
+		this(sessionManager, null);
+	}
+
+	/**
+	 * Constructor of the bookstore that resumes a session of a session manager,
+	 * as a server does on every request of a shopper.
+	 * 
+	 * @param sessionManager
+	 *            The session manager shared by the shoppers.
+	 * @param sessionToken
+	 *            The token of the session, or null if the shopper has not logged
+	 *            in.
+	 */
+	public BookStore(SessionManager sessionManager, String sessionToken) {
+		this.sessionManager = sessionManager;
+		this.bookController = sessionManager.getBookController();
+		this.userController = sessionManager.getUserController();
+
+		this.sessionToken = sessionToken;
 	}
 
 	/**
@@ -49,43 +94,62 @@ public class BookStore implements BookList {
 	 *             Thrown when the provided username and password do not match.
 	 */
 	public void loginUser(String username, String password) throws BookstoreException {
-		this.loggedUser = this.userController.loginUser(username, password);
-		this.shoppingBasket = new ShoppingBasket();
+		long start = LOGIN_USER.start();
+		try {
+			Session session = this.sessionManager.login(username, password);
+			if (this.sessionToken != null) {
+				this.sessionManager.logout(this.sessionToken);
+			}
+			this.sessionToken = session.getToken();
+		} finally {
+			LOGIN_USER.end(start);
+		}
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Logs out the user, ending the session.
 	 */
-	public Book[] list(String searchString) {
-		// The user is not logged in yet
-		if (this.loggedUser == null || this.shoppingBasket == null) {
-			return new Book[0];
+	public void logoutUser() {
+		long start = LOGOUT_USER.start();
+		try {
+			if (this.sessionToken != null) {
+				this.sessionManager.logout(this.sessionToken);
+				this.sessionToken = null;
+			}
+		} finally {
+			LOGOUT_USER.end(start);
 		}
+	}
 
-		if (searchString.equals("")) {
-			List<Book> listBooks = this.getUnique(new LinkedList<Book>(this.bookController.listAll()));
-			Book[] books = new Book[listBooks.size()];
-			return listBooks.toArray(books);
-		} else {
-			List<Book> returnedBooks = new LinkedList<Book>();
-			Set<String> uniqueStrings = new TreeSet<String>(Arrays.asList(searchString.split(" ")));
-			for (String token : uniqueStrings) {
-				List<Book> byAuthor = this.bookController.searchByAuthor(token);
-				for (Book book : byAuthor) {
-					if(!returnedBooks.contains(book)) {
-						returnedBooks.add(book);
-					}
-				}
-				
-				List<Book> byTitle = this.bookController.searchByTitle(token);
-				for (Book book : byTitle) {
-					if(!returnedBooks.contains(book)) {
-						returnedBooks.add(book);
-					}
-				}
-			}
-			Book[] booksArray = new Book[returnedBooks.size()];
-			return returnedBooks.toArray(booksArray);
+	/**
+	 * Returns the token of the session of the user.
+	 * 
+	 * @return The token of the session, or null if the user has not logged in.
+	 */
+	public String getSessionToken() {
+		return this.sessionToken;
+	}
+
+	/**
+	 * Returns the logged user.
+	 * 
+	 * @return The logged user, or null if the user has not logged in or the
+	 *         session has expired.
+	 */
+	public User getLoggedUser() {
+		return this.loggedUser();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Book[] list(String searchString) {
+		long start = LIST.start();
+		try {
+			// The user who is not logged in yet gets no books
+			return this.sessionManager.list(this.sessionToken, searchString);
+		} finally {
+			LIST.end(start);
 		}
 	}
 
@@ -93,14 +157,12 @@ public class BookStore implements BookList {
 	 * {@inheritDoc}
 	 */
 	public boolean add(Book book, int quantity) throws BookstoreException {
-		if (this.loggedUser == null || this.shoppingBasket == null) {
-			return false;
-		}
-		int i = 0;
-		for (i = 0; i < quantity; i++) {
-			this.shoppingBasket.addItem(book);
+		long start = ADD.start();
+		try {
+			return this.sessionManager.add(this.sessionToken, book, quantity);
+		} finally {
+			ADD.end(start);
 		}
-		return true;
 	}
 
 	/**
@@ -116,103 +178,118 @@ public class BookStore implements BookList {
 	 * @throws BookstoreException
 	 */
 	public boolean remove(Book book, int quantity) throws BookstoreException {
-		if (this.loggedUser == null || this.shoppingBasket == null) {
-			return false;
-		}
-		int i = 0;
-		for (i = 0; i < quantity; i++) {
-			this.shoppingBasket.removeItem(book);
+		long start = REMOVE.start();
+		try {
+			return this.sessionManager.remove(this.sessionToken, book, quantity);
+		} finally {
+			REMOVE.end(start);
 		}
-		return true;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	synchronized public int[] buy(Book... books) {
-		if (this.loggedUser == null || this.shoppingBasket == null) {
-			return new int[0];
-		}
-
-		this.processPayment();
+	public int[] buy(Book... books) {
+		long start = BUY.start();
+		try {
+			if (this.sessionManager.getSession(this.sessionToken) == null) {
+				return new int[0];
+			}
 
-		int[] purchaseStatuses = new int[books.length];
-		for (int i = 0; i < books.length; i++) {
+			this.processPayment();
 
-			boolean removed = this.bookController.remove(books[i]);
-			PurchaseStatus purchResult = removed ? PurchaseStatus.OK : PurchaseStatus.NOT_IN_STOCK;
-			purchaseStatuses[i] = purchResult.getStatus();
+			// the session manager cleans the basket after the purchase
+			return this.sessionManager.buy(this.sessionToken, books);
+		} finally {
+			BUY.end(start);
 		}
-
-		// Cleaning the basket after the purchase
-		this.shoppingBasket = new ShoppingBasket();
-		return purchaseStatuses;
 	}
 	
 	public ShoppingBasket getShoppingBasket() {
-		return this.shoppingBasket;
+		Session session = this.sessionManager.getSession(this.sessionToken);
+		return session == null ? null : session.getShoppingBasket();
 	}
 
 	// ============================================ADMIN TASKS====================================================
 
 	public boolean addNewUser(String username, String password, boolean admin) {
+		long start = ADD_NEW_USER.start();
 		try {
-			if(!admin || (admin && this.loggedUser != null && this.loggedUser.isAdmin()) ) {
-				this.userController.createUser(username, password, admin);
-				return true;
-			}
-			return false;
+			try {
+				User loggedUser = this.loggedUser();
+				if(!admin || (admin && loggedUser != null && loggedUser.isAdmin()) ) {
+					this.userController.createUser(username, password, admin);
+					return true;
+				}
+				return false;
 			
-		} catch (BookstoreException e) {
-			return false;
+			} catch (BookstoreException e) {
+				return false;
+			}
+		} finally {
+			ADD_NEW_USER.end(start);
 		}
 	}
 
 	public boolean removeUser(String username, String password) {
-
-		if (this.loggedUser.getUsername().equals(username)) {
-			// the user wants to remove its own account from the bookstore
-			try {
-				this.userController.loginUser(username, password);
-				return this.userController.deteleUser(username, password);
-			} catch (BookstoreException e) {
+		long start = REMOVE_USER.start();
+		try {
+			User loggedUser = this.loggedUser();
+			if (loggedUser == null) {
+				// there is no session, or it has expired
 				return false;
 			}
-		} else {
-			// an admin wants to delete another account
-			if (this.loggedUser.isAdmin()) {
+
+			if (loggedUser.getUsername().equals(username)) {
+				// the user wants to remove its own account from the bookstore
 				try {
-					this.userController.loginUser(this.loggedUser.getUsername(), password);
-					User userToBeRemoved = this.userController.retrieveUser(username);
-					return this.userController.deteleUser(username, userToBeRemoved.getPassword());
+					this.userController.loginUser(username, password);
+					return this.userController.deteleUser(username, password);
 				} catch (BookstoreException e) {
 					return false;
 				}
+			} else {
+				// an admin wants to delete another account
+				if (loggedUser.isAdmin()) {
+					try {
+						this.userController.loginUser(loggedUser.getUsername(), password);
+						User userToBeRemoved = this.userController.retrieveUser(username);
+						return this.userController.deteleUser(username, userToBeRemoved.getPassword());
+					} catch (BookstoreException e) {
+						return false;
+					}
+				}
+				return false;
 			}
-			return false;
+		} finally {
+			REMOVE_USER.end(start);
 		}
 	}
 
 	public boolean addNewBook(String title, String author, String price) {
+		return this.addNewBook(title, author, price, 1);
+	}
+
+	public boolean addNewBook(String title, String author, String price, int quantity) {
+		long start = ADD_NEW_BOOK.start();
 		try {
-			return this.bookController.add(title, author, price);
-		} catch (BookstoreException e) {
-			return false;
+			try {
+				return this.bookController.add(title, author, price, quantity);
+			} catch (BookstoreException e) {
+				return false;
+			}
+		} finally {
+			ADD_NEW_BOOK.end(start);
 		}
 	}
 	
+	private User loggedUser() {
+		Session session = this.sessionManager.getSession(this.sessionToken);
+		return session == null ? null : session.getUser();
+	}
+
 	private void processPayment() {
 		// I did not implement this method because it is not part of the activity
 	}
 	
-	private List<Book> getUnique(List<Book> listOfBook){
-		List<Book> result = new LinkedList<Book>();
-		for (Book book : listOfBook) {
-			if(!result.contains(book)) {
-				result.add(book);
-			}
-		}
-		return result;
-	}
-
 }
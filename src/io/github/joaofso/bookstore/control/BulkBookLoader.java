@@ -0,0 +1,341 @@
+package io.github.joaofso.bookstore.control;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.StorageProviders;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
+
+/**
+ * This class loads an inventory file in the format of the exercise file, one
+ * book per line as title;author;price;quantity, into the storage of the books.
+ * The file is read as a stream in chunks of lines, and each chunk is parsed in
+ * parallel with fork/join while the next one is read. The quantities of the
+ * repeated books are merged, and the storage is written once, at the end.
+ *
+ * The malformed lines are rejected and reported with their line numbers,
+ * while the other lines are loaded. The blank lines are skipped.
+ *
+ * The books are loaded straight into the storage, so the controllers already
+ * running over the same storage do not see them until they are created again.
+ *
+ * Usage: BulkBookLoader inventoryFile [storageName]
+ *
+ * @author João Felipe
+ *
+ */
+public class BulkBookLoader {
+
+	private final static int CHUNK_SIZE = 16384;
+	private final static int LEAF_SIZE = 1024;
+	private final static int CHUNKS_IN_FLIGHT = 4;
+
+	private final static String IT_IS_NOT_POSSIBLE_READ_FILE = "It is not possible to read the inventory file: ";
+	private final static String IT_IS_NOT_POSSIBLE_WRITE_STORAGE = "It is not possible to write the books into the storage";
+	private final static String TOO_MANY_UNITS = "The stock of a book exceeds the maximum number of units";
+	private final static String WRONG_NUMBER_OF_FIELDS = "expected title;author;price;quantity";
+	private final static String EMPTY_TITLE_OR_AUTHOR = "empty title or author";
+	private final static String INVALID_PRICE = "invalid price";
+	private final static String INVALID_QUANTITY = "invalid quantity";
+
+	private final BookDAO bookDAO;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor of the loader, which parses the chunks in the common fork/join
+	 * pool.
+	 * @param bookDAO The storage of the books.
+	 */
+	public BulkBookLoader(BookDAO bookDAO) {
+		this(bookDAO, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor of the loader.
+	 * @param bookDAO The storage of the books.
+	 * @param pool The pool where the chunks are parsed.
+	 */
+	public BulkBookLoader(BookDAO bookDAO, ForkJoinPool pool) {
+		this.bookDAO = bookDAO;
+		this.pool = pool;
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: BulkBookLoader inventoryFile [storageName]");
+			System.exit(1);
+		}
+		File file = new File(args[0]);
+		try {
+			StorageProvider storage = args.length > 1 ? StorageProviders.get(args[1]) : StorageProviders.get();
+			Report report = new BulkBookLoader(storage.createBookDAO()).load(file);
+			for (String rejected : report.getRejectedLines()) {
+				System.err.println(rejected);
+			}
+			System.out.println(report + " from " + file.getPath() + " into the " + storage.getName() + " storage");
+		} catch (BookstoreException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Loads an inventory file, encoded in UTF-8.
+	 * @param file The inventory file.
+	 * @return The report of the load.
+	 * @throws BookstoreException Thrown if the file cannot be read or the storage cannot be written.
+	 */
+	public Report load(File file) throws BookstoreException {
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			return this.load(reader);
+		} catch (IOException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_READ_FILE + file.getPath());
+		}
+	}
+
+	/**
+	 * Loads an inventory from a stream of lines. The reader is not closed.
+	 * @param input The lines of the inventory.
+	 * @return The report of the load.
+	 * @throws BookstoreException Thrown if the lines cannot be read or the storage cannot be written.
+	 */
+	public Report load(Reader input) throws BookstoreException {
+		long start = System.nanoTime();
+		BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+		Chunk loaded = new Chunk();
+		Deque<ForkJoinTask<Chunk>> parsing = new ArrayDeque<ForkJoinTask<Chunk>>();
+		int lines = 0;
+		try {
+			List<String> chunk = new ArrayList<String>(CHUNK_SIZE);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				chunk.add(line);
+				if (chunk.size() == CHUNK_SIZE) {
+					parsing.add(this.pool.submit(new ParseTask(chunk, lines + 1, 0, chunk.size())));
+					lines += chunk.size();
+					chunk = new ArrayList<String>(CHUNK_SIZE);
+					if (parsing.size() > CHUNKS_IN_FLIGHT) {
+						// the chunks are merged in the order of the file, so the books keep their order
+						loaded.merge(parsing.poll().join());
+					}
+				}
+			}
+			if (!chunk.isEmpty()) {
+				parsing.add(this.pool.submit(new ParseTask(chunk, lines + 1, 0, chunk.size())));
+				lines += chunk.size();
+			}
+			while (!parsing.isEmpty()) {
+				loaded.merge(parsing.poll().join());
+			}
+		} catch (IOException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_READ_FILE + e.getMessage());
+		} catch (ArithmeticException e) {
+			throw new BookstoreException(TOO_MANY_UNITS);
+		}
+
+		if (!loaded.books.isEmpty() && !this.bookDAO.incrementStock(loaded.books)) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_WRITE_STORAGE);
+		}
+		return new Report(lines, loaded.books.size(), loaded.units, loaded.rejected, System.nanoTime() - start);
+	}
+
+	/**
+	 * Parses a single line, adding its book to the chunk or rejecting it.
+	 */
+	private static void parse(String line, int lineNumber, Chunk chunk) {
+		if (line.trim().isEmpty()) {
+			return;
+		}
+		int first = line.indexOf(';');
+		int second = first < 0 ? -1 : line.indexOf(';', first + 1);
+		int third = second < 0 ? -1 : line.indexOf(';', second + 1);
+		if (third < 0 || line.indexOf(';', third + 1) >= 0) {
+			chunk.reject(lineNumber, WRONG_NUMBER_OF_FIELDS);
+			return;
+		}
+		String title = line.substring(0, first);
+		String author = line.substring(first + 1, second);
+		if (title.isEmpty() || author.isEmpty()) {
+			chunk.reject(lineNumber, EMPTY_TITLE_OR_AUTHOR);
+			return;
+		}
+		long price;
+		try {
+			price = Money.parseMinorUnits(line.subSequence(second + 1, third));
+		} catch (NumberFormatException e) {
+			chunk.reject(lineNumber, INVALID_PRICE);
+			return;
+		}
+		int quantity;
+		try {
+			quantity = Integer.parseInt(line.substring(third + 1).trim());
+		} catch (NumberFormatException e) {
+			quantity = -1;
+		}
+		if (price < 0 || quantity < 0) {
+			chunk.reject(lineNumber, price < 0 ? INVALID_PRICE : INVALID_QUANTITY);
+			return;
+		}
+		try {
+			chunk.add(new Book(title, author, Money.ofMinorUnits(price)), quantity);
+		} catch (ArithmeticException e) {
+			chunk.reject(lineNumber, TOO_MANY_UNITS);
+		}
+	}
+
+	/**
+	 * Parses a range of the lines of a chunk, splitting it in halves until the
+	 * ranges are small enough.
+	 */
+	private static class ParseTask extends RecursiveTask<Chunk> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> lines;
+		private final int firstLineNumber;
+		private final int from;
+		private final int to;
+
+		ParseTask(List<String> lines, int firstLineNumber, int from, int to) {
+			this.lines = lines;
+			this.firstLineNumber = firstLineNumber;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Chunk compute() {
+			if (this.to - this.from <= LEAF_SIZE) {
+				Chunk chunk = new Chunk();
+				for (int i = this.from; i < this.to; i++) {
+					parse(this.lines.get(i), this.firstLineNumber + i, chunk);
+				}
+				return chunk;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			ParseTask second = new ParseTask(this.lines, this.firstLineNumber, middle, this.to);
+			second.fork();
+			Chunk first = new ParseTask(this.lines, this.firstLineNumber, this.from, middle).compute();
+			first.merge(second.join());
+			return first;
+		}
+	}
+
+	/**
+	 * The books parsed from a range of lines, with their merged quantities, and
+	 * the lines rejected.
+	 */
+	private static class Chunk {
+
+		private final Map<Book, Integer> books = new LinkedHashMap<Book, Integer>();
+		private final List<String> rejected = new ArrayList<String>();
+		private long units;
+
+		void add(Book book, int quantity) {
+			Integer stock = this.books.get(book);
+			this.books.put(book, stock == null ? quantity : Math.addExact(stock, quantity));
+			this.units += quantity;
+		}
+
+		void reject(int lineNumber, String reason) {
+			this.rejected.add("Line " + lineNumber + ": " + reason);
+		}
+
+		void merge(Chunk other) {
+			for (Map.Entry<Book, Integer> book : other.books.entrySet()) {
+				this.add(book.getKey(), book.getValue());
+			}
+			this.rejected.addAll(other.rejected);
+		}
+	}
+
+	/**
+	 * This class reports the outcome of a load.
+	 */
+	public static class Report {
+
+		private final int lines;
+		private final int books;
+		private final long units;
+		private final List<String> rejectedLines;
+		private final long elapsedNanos;
+
+		Report(int lines, int books, long units, List<String> rejectedLines, long elapsedNanos) {
+			this.lines = lines;
+			this.books = books;
+			this.units = units;
+			this.rejectedLines = Collections.unmodifiableList(rejectedLines);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Returns the number of lines read, including the rejected and the blank ones.
+		 * @return The number of lines.
+		 */
+		public int getLines() {
+			return this.lines;
+		}
+
+		/**
+		 * Returns the number of different books loaded.
+		 * @return The number of books.
+		 */
+		public int getBooks() {
+			return this.books;
+		}
+
+		/**
+		 * Returns the number of units loaded.
+		 * @return The number of units.
+		 */
+		public long getUnits() {
+			return this.units;
+		}
+
+		/**
+		 * Returns the rejected lines, as "Line n: reason", in the order of the file.
+		 * @return The rejected lines.
+		 */
+		public List<String> getRejectedLines() {
+			return this.rejectedLines;
+		}
+
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+		}
+
+		/**
+		 * Returns the throughput of the load, reading and writing included.
+		 * @return The number of lines loaded per second.
+		 */
+		public double getLinesPerSecond() {
+			return this.elapsedNanos == 0 ? 0 : this.lines * (double) TimeUnit.SECONDS.toNanos(1) / this.elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d lines read, %d books and %d units loaded, %d lines rejected, in %d ms (%.0f lines/s)",
+					this.lines, this.books, this.units, this.rejectedLines.size(), this.getElapsedMillis(),
+					this.getLinesPerSecond());
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package io.github.joaofso.bookstore.control;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.metrics.Counter;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class keeps the stock of the books in memory as atomic counters, in
+ * front of the BookDAO. A purchase reserves its units with compare-and-set
+ * decrements, without taking any lock, so the shoppers of a popular title do
+ * not queue up behind each other. The counter of a book is read from the DAO
+ * the first time the book is used, and -1 stands for a book that is not
+ * registered. Only the registered books keep a counter, so the titles probed
+ * by the baskets do not take memory for good.
+ *
+ * The counters are only a fast path: the stock may be changed outside this
+ * inventory, by another controller, a bulk load or an edit of the storage. So
+ * whenever a counter cannot serve a whole purchase, it is read again from the
+ * DAO before the units are answered as not in stock or not existent. The units
+ * reserved and not persisted yet are kept apart, and taken from the stock read
+ * again, so they are never sold twice.
+ *
+ * The reserved units are then taken from the DAO. By default this happens
+ * before the purchase returns, and the DAO has the last word on every unit.
+ * With the system property bookstore.inventory.writeBehind set to true, it
+ * happens in the background, one purchase at a time and in the order they were
+ * made, and the purchases waiting are persisted before the JVM exits. A unit
+ * already answered as bought and then refused by the DAO cannot be taken back,
+ * so it is counted in {@link #getRefusedWrites()} and in the counter
+ * Inventory.refusedWrites.
+ *
+ * @author João Felipe
+ *
+ */
+public class Inventory {
+
+	/**
+	 * System property that makes the purchases be persisted in the background.
+	 */
+	public final static String WRITE_BEHIND_PROPERTY = "bookstore.inventory.writeBehind";
+
+	private final static int NOT_REGISTERED = -1;
+	private final static long SHUTDOWN_TIMEOUT_SECONDS = 30;
+	private final static Counter REFUSED_WRITES = Metrics.counter("Inventory", "refusedWrites");
+
+	private final BookDAO bookDAO;
+	private final boolean writeBehind;
+	private final ConcurrentMap<Book, Stock> stocks = new ConcurrentHashMap<Book, Stock>();
+	private final LongAdder refusedWrites = new LongAdder();
+
+	private ExecutorService writer;
+
+	/**
+	 * Constructor of the inventory of the books of a DAO. The purchases are
+	 * persisted in the background if the system property
+	 * bookstore.inventory.writeBehind is true.
+	 * @param bookDAO The DAO where the stock is persisted.
+	 */
+	public Inventory(BookDAO bookDAO) {
+		this(bookDAO, Boolean.getBoolean(WRITE_BEHIND_PROPERTY));
+	}
+
+	/**
+	 * Constructor of the inventory of the books of a DAO.
+	 * @param bookDAO The DAO where the stock is persisted.
+	 * @param writeBehind A boolean value indicating whether the purchases are persisted in the background.
+	 */
+	Inventory(BookDAO bookDAO, boolean writeBehind) {
+		this.bookDAO = bookDAO;
+		this.writeBehind = writeBehind;
+	}
+
+	/**
+	 * Reserves the units of a basket and takes them from the stock. The units are
+	 * served in the basket order, so when a book runs short the first units get
+	 * it and the remaining ones are not in stock.
+	 * @param books The units to be bought, one element per unit.
+	 * @return The status of each unit, in the same order of the basket.
+	 */
+	public PurchaseStatus[] checkout(Book... books) {
+		PurchaseStatus[] statuses = new PurchaseStatus[books.length];
+		Map<Book, List<Integer>> positionsByBook = new LinkedHashMap<Book, List<Integer>>();
+		for (int i = 0; i < books.length; i++) {
+			positionsByBook.computeIfAbsent(books[i], book -> new ArrayList<Integer>()).add(i);
+		}
+
+		List<Book> reserved = new ArrayList<Book>(books.length);
+		List<Integer> reservedPositions = new ArrayList<Integer>(books.length);
+		for (List<Integer> positions : positionsByBook.values()) {
+			Book book = books[positions.get(0)];
+			int taken = this.reserve(book, positions.size());
+			for (int i = 0; i < positions.size(); i++) {
+				if (taken < 0) {
+					statuses[positions.get(i)] = PurchaseStatus.DOES_NOT_EXIST;
+				} else if (i < taken) {
+					statuses[positions.get(i)] = PurchaseStatus.OK;
+					reserved.add(book);
+					reservedPositions.add(positions.get(i));
+				} else {
+					statuses[positions.get(i)] = PurchaseStatus.NOT_IN_STOCK;
+				}
+			}
+		}
+		if (reserved.isEmpty()) {
+			return statuses;
+		}
+
+		Book[] units = reserved.toArray(new Book[reserved.size()]);
+		if (this.writeBehind) {
+			try {
+				this.writer().execute(() -> this.persistBehind(units));
+				return statuses;
+			} catch (RejectedExecutionException e) {
+				// the units are persisted right away below
+			}
+		}
+		// the storage has the last word on the units it could not take
+		PurchaseStatus[] persisted = this.persist(units);
+		for (int i = 0; i < units.length; i++) {
+			statuses[reservedPositions.get(i)] = persisted[i];
+		}
+		return statuses;
+	}
+
+	/**
+	 * Takes units of a book from the stock, right away. If there are not enough
+	 * units, every unit left is taken.
+	 * @param book The book to be removed.
+	 * @param quantity The number of units to be removed.
+	 * @return The number of units actually removed.
+	 */
+	public int remove(Book book, int quantity) {
+		if (quantity <= 0) {
+			return 0;
+		}
+		int taken = this.reserve(book, quantity);
+		if (taken <= 0) {
+			return 0;
+		}
+		Stock stock = this.stockOf(book);
+		int removed = 0;
+		try {
+			removed = this.bookDAO.decrementStock(book, taken);
+		} finally {
+			stock.pending.addAndGet(-taken);
+			if (removed < taken) {
+				this.refresh(book, stock);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Adds units of a book to the stock, registering the book if it is new. The
+	 * units are persisted before they are added to the counter, so they are never
+	 * sold before being stored.
+	 * @param book The book to be added.
+	 * @param quantity The number of units to be added.
+	 * @return a boolean value indicating whether the units were added correctly.
+	 */
+	public boolean add(Book book, int quantity) {
+		Stock stock = this.stockOf(book);
+		if (!this.bookDAO.incrementStock(book, quantity)) {
+			return false;
+		}
+		if (!stock.add(quantity)) {
+			// the book was just registered, or its counter was stale, so it is read from the DAO
+			this.refresh(book, stock);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of units of a book in stock, counting the purchases not
+	 * persisted yet. A counter with no unit left is read again from the DAO.
+	 * @param book The book to be checked.
+	 * @return The number of units in stock, or -1 if the book is not registered.
+	 */
+	public int getStock(Book book) {
+		Stock stock = this.stockOf(book);
+		int units = stock.units();
+		return units > 0 ? units : this.refresh(book, stock);
+	}
+
+	/**
+	 * Leaves out of a list of books the ones sold out by purchases not persisted
+	 * yet. Without the write behind, the DAO is always up to date and the list is
+	 * returned as it is.
+	 * @param books The books listed by the DAO.
+	 * @return The books still in stock.
+	 */
+	public List<Book> inStock(List<Book> books) {
+		if (!this.writeBehind || books == null) {
+			return books;
+		}
+		List<Book> inStock = new ArrayList<Book>(books.size());
+		for (Book book : books) {
+			Stock stock = this.stocks.get(book);
+			if (stock == null || stock.pending.get() == 0 || stock.units() > 0) {
+				inStock.add(book);
+			}
+		}
+		return inStock;
+	}
+
+	/**
+	 * Returns the number of units answered as bought and then refused by the
+	 * DAO, when the purchases are persisted in the background.
+	 * @return The number of units refused.
+	 */
+	public long getRefusedWrites() {
+		return this.refusedWrites.sum();
+	}
+
+	/**
+	 * Returns the number of counters kept, one per registered book used.
+	 * @return The number of counters.
+	 */
+	int size() {
+		return this.stocks.size();
+	}
+
+	/**
+	 * Waits until every purchase made so far is persisted.
+	 */
+	public void flush() {
+		ExecutorService currentWriter;
+		synchronized (this) {
+			currentWriter = this.writer;
+		}
+		if (currentWriter == null) {
+			return;
+		}
+		try {
+			currentWriter.submit(() -> {
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | RejectedExecutionException e) {
+			// nothing was waiting to be persisted
+		}
+	}
+
+	/**
+	 * Persists every purchase waiting and stops the background writer. The
+	 * purchases made afterwards are persisted before they return.
+	 */
+	public void close() {
+		ExecutorService currentWriter;
+		synchronized (this) {
+			currentWriter = this.writer;
+		}
+		if (currentWriter == null) {
+			return;
+		}
+		currentWriter.shutdown();
+		try {
+			currentWriter.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Takes up to the wanted units of a book. If the counter cannot serve them
+	 * all, it is read again from the DAO and the remaining units are tried once
+	 * more. The units taken are pending until the caller persists them.
+	 * @return The number of units taken, or -1 if the book is not registered.
+	 */
+	private int reserve(Book book, int wanted) {
+		Stock stock = this.stockOf(book);
+		int taken = stock.take(wanted);
+		if (taken == wanted) {
+			return taken;
+		}
+		this.refresh(book, stock);
+		int more = stock.take(wanted - Math.max(taken, 0));
+		if (more < 0) {
+			return taken;
+		}
+		return Math.max(taken, 0) + more;
+	}
+
+	/**
+	 * Reads the stock of a book again from the DAO, leaving out the units
+	 * reserved and not persisted yet. The pending units are read before the DAO,
+	 * so a purchase persisted meanwhile can only make the counter lower than the
+	 * stock, never higher. If the counter changed while the DAO was read, the
+	 * change is kept and this reading is dropped.
+	 * @return The units of the counter afterwards.
+	 */
+	private int refresh(Book book, Stock stock) {
+		long state = stock.state.get();
+		int pending = stock.pending.get();
+		int stored = this.bookDAO.getStock(book);
+		int units = stored < 0 ? NOT_REGISTERED : Math.max(0, stored - pending);
+		if (stock.state.compareAndSet(state, Stock.next(state, units))) {
+			return units;
+		}
+		return stock.units();
+	}
+
+	/**
+	 * Takes the reserved units from the DAO, and releases them from the pending
+	 * ones. A unit refused by the DAO means the stock was changed outside this
+	 * inventory, so its counter is read again.
+	 * @return The status of each unit given by the DAO.
+	 */
+	private PurchaseStatus[] persist(Book[] units) {
+		PurchaseStatus[] statuses = null;
+		try {
+			statuses = this.bookDAO.checkout(units);
+			return statuses;
+		} finally {
+			Set<Book> refused = new LinkedHashSet<Book>();
+			for (int i = 0; i < units.length; i++) {
+				this.stockOf(units[i]).pending.decrementAndGet();
+				if (statuses == null || statuses[i] != PurchaseStatus.OK) {
+					refused.add(units[i]);
+				}
+			}
+			for (Book book : refused) {
+				this.refresh(book, this.stockOf(book));
+			}
+		}
+	}
+
+	/**
+	 * Persists the units of a purchase already answered, counting the ones the
+	 * DAO refused, since they cannot be taken back.
+	 */
+	private void persistBehind(Book[] units) {
+		int refused = units.length;
+		try {
+			int persisted = 0;
+			for (PurchaseStatus status : this.persist(units)) {
+				if (status == PurchaseStatus.OK) {
+					persisted++;
+				}
+			}
+			refused = units.length - persisted;
+		} finally {
+			if (refused > 0) {
+				this.refusedWrites.add(refused);
+				REFUSED_WRITES.add(refused);
+			}
+		}
+	}
+
+	/**
+	 * The DAO is read before the counter is put in the map, so no bin of the map
+	 * stays locked while the storage is read. A book not registered gets a
+	 * counter of its own that is not kept.
+	 */
+	private Stock stockOf(Book book) {
+		Stock stock = this.stocks.get(book);
+		if (stock != null) {
+			return stock;
+		}
+		int stored = this.bookDAO.getStock(book);
+		if (stored < 0) {
+			return new Stock(NOT_REGISTERED);
+		}
+		Stock newStock = new Stock(stored);
+		stock = this.stocks.putIfAbsent(book, newStock);
+		return stock == null ? newStock : stock;
+	}
+
+	private synchronized ExecutorService writer() {
+		if (this.writer == null) {
+			this.writer = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Inventory-write-behind");
+				thread.setDaemon(true);
+				return thread;
+			});
+			// the purchases already answered are persisted before the JVM exits
+			Runtime.getRuntime().addShutdownHook(new Thread(this::close, "Inventory-shutdown"));
+		}
+		return this.writer;
+	}
+
+	/**
+	 * The stock of a book: the units for sale, and the units reserved and not
+	 * persisted yet. The units for sale are kept in the low half of a long and a
+	 * version in the high half, changed by every update, so reading the DAO again
+	 * never overwrites an update made meanwhile.
+	 */
+	private static class Stock {
+
+		private final AtomicLong state;
+		private final AtomicInteger pending = new AtomicInteger();
+
+		Stock(int units) {
+			this.state = new AtomicLong(pack(0, units));
+		}
+
+		int units() {
+			return (int) this.state.get();
+		}
+
+		/**
+		 * Takes up to the wanted units, counting them as pending before they
+		 * leave the counter.
+		 * @return The number of units taken, or -1 if the book is not registered.
+		 */
+		int take(int wanted) {
+			while (true) {
+				long state = this.state.get();
+				int units = (int) state;
+				if (units == NOT_REGISTERED) {
+					return NOT_REGISTERED;
+				}
+				int taken = Math.min(units, wanted);
+				if (taken == 0) {
+					return 0;
+				}
+				this.pending.addAndGet(taken);
+				if (this.state.compareAndSet(state, next(state, units - taken))) {
+					return taken;
+				}
+				this.pending.addAndGet(-taken);
+			}
+		}
+
+		/**
+		 * Adds units to a registered book. The DAO refuses a stock larger than an
+		 * int holds, so a counter that would pass it is behind the DAO.
+		 * @return A boolean value indicating whether the units were added to the counter.
+		 */
+		boolean add(int quantity) {
+			while (true) {
+				long state = this.state.get();
+				int units = (int) state;
+				if (units == NOT_REGISTERED || units > Integer.MAX_VALUE - quantity) {
+					return false;
+				}
+				int added = units + quantity;
+				if (this.state.compareAndSet(state, next(state, added))) {
+					return true;
+				}
+			}
+		}
+
+		static long next(long state, int units) {
+			return pack((int) (state >>> 32) + 1, units);
+		}
+
+		private static long pack(int version, int units) {
+			return ((long) version << 32) | (units & 0xffffffffL);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package io.github.joaofso.bookstore.control;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.metrics.Counter;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.metrics.OperationMetrics;
+
+/**
+ * This class profiles the book listings of a session manager, when it is set
+ * there. The time of every phase of every listing is recorded in the
+ * {@link Metrics} of the component ListProfiler, one histogram per phase, and
+ * the listings slower than the threshold are written to the slow query log.
+ *
+ * The profiling is turned on for the default session managers by setting the
+ * system property bookstore.list.slowQueryMillis to the threshold; the log is
+ * the file named by bookstore.list.slowQueryLog, or slow-queries.log in the
+ * working directory.
+ *
+ * @author João Felipe
+ *
+ */
+public class ListProfiler {
+
+	/**
+	 * System property with the threshold, in milliseconds, of the slow listings.
+	 */
+	public final static String SLOW_QUERY_MILLIS_PROPERTY = "bookstore.list.slowQueryMillis";
+
+	/**
+	 * System property with the path of the slow query log.
+	 */
+	public final static String SLOW_QUERY_LOG_PROPERTY = "bookstore.list.slowQueryLog";
+
+	private final static String DEFAULT_SLOW_QUERY_LOG = "./slow-queries.log";
+	private final static Counter SLOW_QUERIES = Metrics.counter("ListProfiler", "slowQueries");
+	private final static Map<QueryProfile.Phase, OperationMetrics> PHASES = new EnumMap<QueryProfile.Phase, OperationMetrics>(
+			QueryProfile.Phase.class);
+
+	static {
+		for (QueryProfile.Phase phase : QueryProfile.Phase.values()) {
+			PHASES.put(phase, Metrics.operation("ListProfiler", QueryProfile.camelCase(phase)));
+		}
+	}
+
+	private static ListProfiler configured;
+	private static boolean configurationRead;
+
+	private final long thresholdNanos;
+	private final SlowQueryLog log;
+
+	/**
+	 * Constructor of the profiler.
+	 * @param threshold The time after which a listing is slow.
+	 * @param unit The unit of the threshold.
+	 * @param log The log of the slow listings, or null to record only the phases.
+	 */
+	public ListProfiler(long threshold, TimeUnit unit, SlowQueryLog log) {
+		this.thresholdNanos = unit.toNanos(threshold);
+		this.log = log;
+	}
+
+	/**
+	 * Returns the profiler configured by the system properties, created the
+	 * first time and shared by every session manager.
+	 * @return The profiler, or null if the profiling is not turned on or its log cannot be opened.
+	 */
+	static synchronized ListProfiler configured() {
+		if (!configurationRead) {
+			configurationRead = true;
+			Long threshold = Long.getLong(SLOW_QUERY_MILLIS_PROPERTY);
+			if (threshold != null) {
+				try {
+					File logFile = new File(System.getProperty(SLOW_QUERY_LOG_PROPERTY, DEFAULT_SLOW_QUERY_LOG));
+					configured = new ListProfiler(threshold, TimeUnit.MILLISECONDS, new SlowQueryLog(logFile));
+				} catch (BookstoreException e) {
+					System.err.println(e.getMessage());
+				}
+			}
+		}
+		return configured;
+	}
+
+	public SlowQueryLog getLog() {
+		return this.log;
+	}
+
+	/**
+	 * Records a finished listing, logging it if it is slow.
+	 */
+	void record(QueryProfile profile) {
+		for (QueryProfile.Phase phase : QueryProfile.Phase.values()) {
+			long nanos = profile.getPhaseNanos(phase);
+			if (nanos > 0) {
+				PHASES.get(phase).record(nanos);
+			}
+		}
+		if (profile.getTotalNanos() >= this.thresholdNanos) {
+			SLOW_QUERIES.increment();
+			if (this.log != null) {
+				this.log.write(profile.toJson());
+			}
+		}
+	}
+
+}
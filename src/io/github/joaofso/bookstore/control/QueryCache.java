@@ -0,0 +1,243 @@
+package io.github.joaofso.bookstore.control;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class keeps the results of the latest book listings, so the most
+ * frequent searches do not run again. A result is found by the set of
+ * terms of the search, so the same terms typed in another order or
+ * repeated find the same result, and the empty results are kept too. The
+ * least recently used result is dropped when the cache is full.
+ *
+ * A result is dropped as soon as a book that may enter or leave it changes,
+ * which is told by the {@link BookController}: a book can be in the result of
+ * a search only if its title or author name contains one of the terms of the
+ * search, and every book can be in the list of all books. A result computed
+ * while a book changed is not kept, since it may have missed the change.
+ *
+ * The controller tells only the changes made through itself, so every result
+ * also keeps the generation of the listings of the storage it was read under,
+ * and it is used only while the storage is at the same generation. That covers
+ * the changes made through other controllers, bulk loads and, for the file
+ * storages, edits of the files. Some changes cannot be noticed by the storage,
+ * such as the ones made by another process over a SQL database, so a result is
+ * never used after its time to live either.
+ * 
+ * @author João Felipe
+ *
+ */
+public class QueryCache implements BookChangeListener {
+
+	/**
+	 * The key of the list of all books, which no set of terms produces.
+	 */
+	private final static String ALL_BOOKS = "";
+
+	private final int capacity;
+	private final LongSupplier generation;
+	private final long timeToLive;
+	private final Map<String, Result> results;
+	private final Map<String, Set<String>> keysByTerm = new HashMap<String, Set<String>>();
+	private long version;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * Constructor of a cache told about the changes only by the controller, whose
+	 * results live for ever.
+	 * @param capacity The maximum number of results kept.
+	 */
+	public QueryCache(int capacity) {
+		this(capacity, () -> 0L, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor of the cache.
+	 * @param capacity The maximum number of results kept.
+	 * @param generation The generation of the listings of the storage.
+	 * @param timeToLive The time, in milliseconds, a result is used.
+	 */
+	public QueryCache(int capacity, LongSupplier generation, long timeToLive) {
+		this.capacity = Math.max(1, capacity);
+		this.generation = generation;
+		this.timeToLive = timeToLive;
+		this.results = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+				if (this.size() > QueryCache.this.capacity) {
+					QueryCache.this.unindex(eldest.getKey());
+					QueryCache.this.evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the result of a listing, running it if the result is not kept.
+	 * @param terms The terms of the search, or null for the list of all books.
+	 * @param listing The listing to be run on a miss.
+	 * @return A copy of the result.
+	 */
+	public Book[] get(SortedSet<String> terms, Supplier<Book[]> listing) {
+		String key = terms == null ? ALL_BOOKS : keyOf(terms);
+		// the generation is read before the listing, so a change during the listing is seen next time
+		long generation = this.generation.getAsLong();
+		long now = System.currentTimeMillis();
+		long startVersion;
+		synchronized (this) {
+			Result result = this.results.get(key);
+			if (result != null) {
+				if (result.generation == generation && now - result.created <= this.timeToLive) {
+					this.hits.increment();
+					return result.books.clone();
+				}
+				this.invalidate(key);
+			}
+			startVersion = this.version;
+		}
+		this.misses.increment();
+
+		Book[] books = listing.get();
+		synchronized (this) {
+			if (this.version == startVersion) {
+				this.results.put(key, new Result(books.clone(), generation, now));
+				if (terms != null) {
+					for (String term : terms) {
+						this.keysByTerm.computeIfAbsent(term, k -> new HashSet<String>()).add(key);
+					}
+				}
+			}
+		}
+		return books;
+	}
+
+	/**
+	 * Drops the results that may hold the changed books.
+	 */
+	public synchronized void booksChanged(Collection<Book> books) {
+		this.version++;
+		this.invalidate(ALL_BOOKS);
+		for (Book book : books) {
+			// the terms are parts of words, so every term kept is compared
+			for (String term : this.keysByTerm.keySet().toArray(new String[this.keysByTerm.size()])) {
+				Set<String> keys = this.keysByTerm.get(term);
+				if (keys != null && (book.getTitle().contains(term) || book.getAuthor().contains(term))) {
+					for (String key : keys.toArray(new String[keys.size()])) {
+						this.invalidate(key);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drops every result.
+	 */
+	public synchronized void clear() {
+		this.version++;
+		this.results.clear();
+		this.keysByTerm.clear();
+	}
+
+	public synchronized int size() {
+		return this.results.size();
+	}
+
+	public long getHits() {
+		return this.hits.sum();
+	}
+
+	public long getMisses() {
+		return this.misses.sum();
+	}
+
+	public long getEvictions() {
+		return this.evictions.sum();
+	}
+
+	public long getInvalidations() {
+		return this.invalidations.sum();
+	}
+
+	private void invalidate(String key) {
+		if (this.results.remove(key) != null) {
+			this.unindex(key);
+			this.invalidations.increment();
+		}
+	}
+
+	private void unindex(String key) {
+		for (String term : termsOf(key)) {
+			Set<String> keys = this.keysByTerm.get(term);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					this.keysByTerm.remove(term);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Each term is written after its length, since a term may have any
+	 * character, and the key starts with a character of its own, so no search
+	 * shares the key of the list of all books.
+	 */
+	private static String keyOf(SortedSet<String> terms) {
+		StringBuilder key = new StringBuilder("\0");
+		for (String term : terms) {
+			key.append(term.length()).append(':').append(term);
+		}
+		return key.toString();
+	}
+
+	private static List<String> termsOf(String key) {
+		List<String> terms = new ArrayList<String>();
+		int position = 1;
+		while (position < key.length()) {
+			int colon = key.indexOf(':', position);
+			int end = colon + 1 + Integer.parseInt(key.substring(position, colon));
+			terms.add(key.substring(colon + 1, end));
+			position = end;
+		}
+		return terms;
+	}
+
+	/**
+	 * A result with the generation it was read under and the time it was read.
+	 */
+	private static final class Result {
+
+		private final Book[] books;
+		private final long generation;
+		private final long created;
+
+		private Result(Book[] books, long generation, long created) {
+			this.books = books;
+			this.generation = generation;
+			this.created = created;
+		}
+	}
+
+}
@@ -0,0 +1,171 @@
+package io.github.joaofso.bookstore.control;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * This class keeps the profile of one book listing: the time spent in each
+ * phase, whether the result came from the query cache, how many books the
+ * storage found and were checked against the stock, how many were returned,
+ * and how many times the XML book file was parsed meanwhile.
+ *
+ * The phases are measured one after the other: ending a phase takes the time
+ * since the end of the previous one, so the phases add up to the whole
+ * listing. A phase ended more than once, as the cache before and after the
+ * search, adds its times.
+ *
+ * @author João Felipe
+ *
+ */
+public class QueryProfile {
+
+	/**
+	 * The phases of a listing.
+	 */
+	public enum Phase {
+		/** Finding the session of the user. */
+		SESSION,
+		/** Splitting the search into keywords. */
+		TOKENIZE,
+		/** Looking up and filling the query cache, and copying the result. */
+		CACHE,
+		/** Searching the storage, parsing its file if it changed. */
+		SEARCH,
+		/** Leaving out the books sold out but not yet written to the storage. */
+		STOCK_FILTER
+	}
+
+	private final String searchString;
+	private final long startMillis = System.currentTimeMillis();
+	private final long start = System.nanoTime();
+	private final Map<Phase, Long> phaseNanos = new EnumMap<Phase, Long>(Phase.class);
+	private long last = this.start;
+	private long totalNanos;
+	private boolean searched;
+	private int examined;
+	private int returned;
+	private long xmlParses;
+
+	QueryProfile(String searchString) {
+		this.searchString = searchString;
+	}
+
+	/**
+	 * Ends a phase, adding the time since the end of the previous phase.
+	 */
+	void endPhase(Phase phase) {
+		long now = System.nanoTime();
+		this.phaseNanos.merge(phase, now - this.last, Long::sum);
+		this.last = now;
+	}
+
+	/**
+	 * Ends the listing, with the number of books returned.
+	 */
+	void finish(int returned) {
+		this.returned = returned;
+		this.totalNanos = System.nanoTime() - this.start;
+	}
+
+	/**
+	 * Marks the listing as run on the storage, with the number of books found
+	 * and the parses of the XML book file during the search.
+	 */
+	void searched(int examined, long xmlParses) {
+		this.searched = true;
+		this.examined += examined;
+		this.xmlParses += xmlParses;
+	}
+
+	public String getSearchString() {
+		return this.searchString;
+	}
+
+	public long getTotalNanos() {
+		return this.totalNanos;
+	}
+
+	/**
+	 * Returns the time spent in a phase.
+	 * @param phase The phase.
+	 * @return The time, in nanoseconds, or zero if the listing did not go through the phase.
+	 */
+	public long getPhaseNanos(Phase phase) {
+		Long nanos = this.phaseNanos.get(phase);
+		return nanos == null ? 0 : nanos;
+	}
+
+	/**
+	 * Tells whether the result came from the query cache.
+	 * @return A boolean value indicating whether the cache was looked up and the storage was not searched.
+	 */
+	public boolean isCacheHit() {
+		return this.phaseNanos.containsKey(Phase.CACHE) && !this.searched;
+	}
+
+	public int getExamined() {
+		return this.examined;
+	}
+
+	public int getReturned() {
+		return this.returned;
+	}
+
+	/**
+	 * Returns the parses of the XML book file made by the search itself, not
+	 * counting the other threads parsing at the same time.
+	 * @return The number of parses.
+	 */
+	public long getXmlParses() {
+		return this.xmlParses;
+	}
+
+	/**
+	 * Writes the profile as a JSON object, in a single line.
+	 * @return The profile as JSON.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder(256);
+		json.append("{\"time\":\"").append(Instant.ofEpochMilli(this.startMillis)).append('"');
+		json.append(",\"search\":");
+		appendString(json, this.searchString);
+		json.append(",\"totalMicros\":").append(this.totalNanos / 1000);
+		for (Phase phase : Phase.values()) {
+			json.append(",\"").append(camelCase(phase)).append("Micros\":").append(this.getPhaseNanos(phase) / 1000);
+		}
+		json.append(",\"cacheHit\":").append(this.isCacheHit());
+		json.append(",\"xmlParses\":").append(this.xmlParses);
+		json.append(",\"examined\":").append(this.examined);
+		json.append(",\"returned\":").append(this.returned);
+		return json.append('}').toString();
+	}
+
+	static String camelCase(Phase phase) {
+		StringBuilder name = new StringBuilder();
+		for (String word : phase.name().toLowerCase().split("_")) {
+			name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+		}
+		return name.toString();
+	}
+
+	private static void appendString(StringBuilder json, String text) {
+		if (text == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+}
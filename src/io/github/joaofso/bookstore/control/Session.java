@@ -0,0 +1,74 @@
+package io.github.joaofso.bookstore.control;
+
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.ShoppingBasket;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class represents the session of a logged user, found by an opaque token.
+ * It holds the user and the shopping basket, which is changed by one thread at
+ * a time, since a shopper may send requests in parallel.
+ *
+ * @author João Felipe
+ *
+ */
+public class Session {
+
+	private final String token;
+	private final User user;
+	private ShoppingBasket shoppingBasket;
+	private volatile long lastAccess;
+
+	Session(String token, User user, long now) {
+		this.token = token;
+		this.user = user;
+		this.shoppingBasket = new ShoppingBasket();
+		this.lastAccess = now;
+	}
+
+	public String getToken() {
+		return this.token;
+	}
+
+	public User getUser() {
+		return this.user;
+	}
+
+	synchronized public ShoppingBasket getShoppingBasket() {
+		return this.shoppingBasket;
+	}
+
+	/**
+	 * Adds units of a book to the shopping basket.
+	 * @param book The book to be added.
+	 * @param quantity The number of units to be added.
+	 */
+	synchronized void addItems(Book book, int quantity) {
+		this.shoppingBasket.addItem(book, quantity);
+	}
+
+	/**
+	 * Removes units of a book from the shopping basket.
+	 * @param book The book to be removed.
+	 * @param quantity The number of units to be removed.
+	 */
+	synchronized void removeItems(Book book, int quantity) {
+		this.shoppingBasket.removeItem(book, quantity);
+	}
+
+	/**
+	 * Replaces the shopping basket by an empty one, after a purchase.
+	 */
+	synchronized void clearShoppingBasket() {
+		this.shoppingBasket = new ShoppingBasket();
+	}
+
+	long getLastAccess() {
+		return this.lastAccess;
+	}
+
+	void touch(long now) {
+		this.lastAccess = now;
+	}
+
+}
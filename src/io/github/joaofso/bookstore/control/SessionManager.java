@@ -0,0 +1,359 @@
+package io.github.joaofso.bookstore.control;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class keeps the sessions of many users at once, over a single book
+ * controller and a single user controller, so every shopper shares the same
+ * catalog, inventory and user directory. A session is created by a login and
+ * found by its token, which is random and tells nothing about the user.
+ *
+ * The sessions are kept in a concurrent map, so the requests of different
+ * shoppers do not wait for each other. A session not used for longer than the
+ * time to live is dropped the next time it is looked up. When there are more
+ * sessions than the limit, the least recently used ones are dropped, together
+ * with the expired ones, so the memory taken by the sessions is bounded.
+ *
+ * @author João Felipe
+ *
+ */
+public class SessionManager {
+
+	/**
+	 * Default time a session lives without being used: thirty minutes.
+	 */
+	public final static long DEFAULT_TIME_TO_LIVE = 30 * 60 * 1000L;
+
+	/**
+	 * Default maximum number of sessions kept at once.
+	 */
+	public final static int DEFAULT_MAX_SESSIONS = 100000;
+
+	/**
+	 * Default maximum number of listings kept by the query cache.
+	 */
+	public final static int DEFAULT_QUERY_CACHE_SIZE = 1024;
+
+	/**
+	 * Default time a listing is kept by the query cache: one minute, which bounds
+	 * how long a change the storage cannot notice goes unseen.
+	 */
+	public final static long DEFAULT_QUERY_CACHE_TIME_TO_LIVE = 60 * 1000L;
+
+	private final static int TOKEN_BYTES = 16;
+
+	private final BookController bookController;
+	private final UserController userController;
+	private final long timeToLive;
+	private final int maxSessions;
+
+	private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final SecureRandom random = new SecureRandom();
+	private final QueryCache queryCache;
+	private volatile ListProfiler listProfiler = ListProfiler.configured();
+
+	/**
+	 * Constructor of a session manager with the default time to live and limit.
+	 * @param bookController The controller of the books shared by the sessions.
+	 * @param userController The controller of the users shared by the sessions.
+	 */
+	public SessionManager(BookController bookController, UserController userController) {
+		this(bookController, userController, DEFAULT_TIME_TO_LIVE, DEFAULT_MAX_SESSIONS);
+	}
+
+	/**
+	 * Constructor of a session manager.
+	 * @param bookController The controller of the books shared by the sessions.
+	 * @param userController The controller of the users shared by the sessions.
+	 * @param timeToLive The time, in milliseconds, a session lives without being used.
+	 * @param maxSessions The maximum number of sessions kept at once.
+	 */
+	public SessionManager(BookController bookController, UserController userController, long timeToLive,
+			int maxSessions) {
+		this.bookController = bookController;
+		this.userController = userController;
+		this.timeToLive = timeToLive;
+		this.maxSessions = Math.max(1, maxSessions);
+		this.queryCache = new QueryCache(DEFAULT_QUERY_CACHE_SIZE, bookController::getGeneration,
+				DEFAULT_QUERY_CACHE_TIME_TO_LIVE);
+		this.bookController.addChangeListener(this.queryCache);
+	}
+
+	/**
+	 * Logs in an user and creates a session with an empty shopping basket.
+	 * @param username The username for the user.
+	 * @param password The password to be matched with the one from the database.
+	 * @return The new session.
+	 * @throws BookstoreException Thrown when the provided username and password do not match.
+	 */
+	public Session login(String username, String password) throws BookstoreException {
+		User user = this.userController.loginUser(username, password);
+		long now = System.currentTimeMillis();
+		Session session;
+		do {
+			session = new Session(this.newToken(), user, now);
+		} while (this.sessions.putIfAbsent(session.getToken(), session) != null);
+
+		if (this.sessions.size() > this.maxSessions) {
+			this.evict();
+		}
+		return session;
+	}
+
+	/**
+	 * Ends a session.
+	 * @param token The token of the session.
+	 */
+	public void logout(String token) {
+		this.sessions.remove(token);
+	}
+
+	/**
+	 * Finds a session, marking it as used.
+	 * @param token The token of the session.
+	 * @return The session, or null if there is no such session or it has expired.
+	 */
+	public Session getSession(String token) {
+		if (token == null) {
+			return null;
+		}
+		Session session = this.sessions.get(token);
+		if (session == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (this.isExpired(session, now)) {
+			this.sessions.remove(token, session);
+			return null;
+		}
+		session.touch(now);
+		return session;
+	}
+
+	/**
+	 * Retrieves the books in stock, for a logged user, whose title or author
+	 * name contains at least one of the terms, as described by
+	 * {@link BookList#list(String)}.
+	 * @param token The token of the session.
+	 * @param searchString The terms used to search books, separated by spaces,
+	 *        or an empty string to list every book.
+	 * @return The books found, or no book if the session does not exist.
+	 */
+	public Book[] list(String token, String searchString) {
+		ListProfiler profiler = this.listProfiler;
+		if (profiler != null) {
+			return this.profiledList(token, searchString, profiler);
+		}
+		if (this.getSession(token) == null) {
+			return new Book[0];
+		}
+		if (searchString.equals("")) {
+			// every book is stored once, with its stock, so there are no repetitions
+			return this.queryCache.get(null, () -> toArray(this.bookController.listAll()));
+		}
+		SortedSet<String> terms = terms(searchString);
+		return this.queryCache.get(terms, () -> toArray(this.bookController.searchByTerms(terms)));
+	}
+
+	/**
+	 * Adds books to the shopping basket of a session.
+	 * @param token The token of the session.
+	 * @param book The book to be added.
+	 * @param quantity The number of units to be added.
+	 * @return A boolean value indicating whether the session exists.
+	 */
+	public boolean add(String token, Book book, int quantity) {
+		Session session = this.getSession(token);
+		if (session == null) {
+			return false;
+		}
+		session.addItems(book, quantity);
+		return true;
+	}
+
+	/**
+	 * Removes books from the shopping basket of a session.
+	 * @param token The token of the session.
+	 * @param book The book to be removed.
+	 * @param quantity The number of units to be removed.
+	 * @return A boolean value indicating whether the session exists.
+	 */
+	public boolean remove(String token, Book book, int quantity) {
+		Session session = this.getSession(token);
+		if (session == null) {
+			return false;
+		}
+		session.removeItems(book, quantity);
+		return true;
+	}
+
+	/**
+	 * Buys books for a logged user, emptying the shopping basket of the session.
+	 * @param token The token of the session.
+	 * @param books The books to be bought.
+	 * @return The purchase status of each book, or no status if the session does not exist.
+	 */
+	public int[] buy(String token, Book... books) {
+		Session session = this.getSession(token);
+		if (session == null) {
+			return new int[0];
+		}
+		// the whole basket is taken from the stock in a single update, locking just its titles
+		PurchaseStatus[] purchResults = this.bookController.checkout(books);
+		int[] purchaseStatuses = new int[books.length];
+		for (int i = 0; i < books.length; i++) {
+			purchaseStatuses[i] = purchResults[i].getStatus();
+		}
+		session.clearShoppingBasket();
+		return purchaseStatuses;
+	}
+
+	/**
+	 * Returns the number of sessions kept, including the expired ones not dropped yet.
+	 * @return The number of sessions.
+	 */
+	public int size() {
+		return this.sessions.size();
+	}
+
+	/**
+	 * Drops every expired session.
+	 */
+	public void evictExpired() {
+		long now = System.currentTimeMillis();
+		for (Session session : this.sessions.values()) {
+			if (this.isExpired(session, now)) {
+				this.sessions.remove(session.getToken(), session);
+			}
+		}
+	}
+
+	/**
+	 * Turns the profiling of the listings on or off.
+	 * @param listProfiler The profiler of the listings, or null to turn the profiling off.
+	 */
+	public void setListProfiler(ListProfiler listProfiler) {
+		this.listProfiler = listProfiler;
+	}
+
+	/**
+	 * Returns the profiler of the listings.
+	 * @return The profiler, or null if the listings are not profiled.
+	 */
+	public ListProfiler getListProfiler() {
+		return this.listProfiler;
+	}
+
+	/**
+	 * Returns the cache of the listings, with its counters of hits, misses and evictions.
+	 * @return The query cache.
+	 */
+	public QueryCache getQueryCache() {
+		return this.queryCache;
+	}
+
+	BookController getBookController() {
+		return this.bookController;
+	}
+
+	UserController getUserController() {
+		return this.userController;
+	}
+
+	/**
+	 * Drops the expired sessions and, if there are still too many, the least
+	 * recently used ones down to nine tenths of the limit, so the next logins do
+	 * not have to evict again. A single thread evicts at a time; the others go
+	 * on, since the limit is soon restored anyway.
+	 */
+	private void evict() {
+		if (!this.evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			this.evictExpired();
+			int excess = this.sessions.size() - this.maxSessions * 9 / 10;
+			if (excess <= 0) {
+				return;
+			}
+			List<Session> candidates = new ArrayList<Session>(this.sessions.values());
+			Collections.sort(candidates, Comparator.comparingLong(Session::getLastAccess));
+			for (int i = 0; i < excess && i < candidates.size(); i++) {
+				this.sessions.remove(candidates.get(i).getToken(), candidates.get(i));
+			}
+		} finally {
+			this.evictionLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs a listing as {@link #list(String, String)} does, measuring each of
+	 * its phases. The time spent on a cache miss before the search and after
+	 * it, storing and copying the result, is part of the cache phase.
+	 */
+	private Book[] profiledList(String token, String searchString, ListProfiler profiler) {
+		QueryProfile profile = new QueryProfile(searchString);
+		Session session = this.getSession(token);
+		profile.endPhase(QueryProfile.Phase.SESSION);
+		Book[] result;
+		if (session == null) {
+			result = new Book[0];
+		} else if (searchString.equals("")) {
+			result = this.queryCache.get(null, () -> {
+				profile.endPhase(QueryProfile.Phase.CACHE);
+				return toArray(this.bookController.listAll(profile));
+			});
+			profile.endPhase(QueryProfile.Phase.CACHE);
+		} else {
+			SortedSet<String> terms = terms(searchString);
+			profile.endPhase(QueryProfile.Phase.TOKENIZE);
+			result = this.queryCache.get(terms, () -> {
+				profile.endPhase(QueryProfile.Phase.CACHE);
+				return toArray(this.bookController.searchByTerms(terms, profile));
+			});
+			profile.endPhase(QueryProfile.Phase.CACHE);
+		}
+		profile.finish(result.length);
+		profiler.record(profile);
+		return result;
+	}
+
+	/**
+	 * The terms are separated by spaces, and each one is searched once.
+	 */
+	private static SortedSet<String> terms(String searchString) {
+		return new TreeSet<String>(Arrays.asList(searchString.split(" ")));
+	}
+
+	private static Book[] toArray(List<Book> books) {
+		return books.toArray(new Book[books.size()]);
+	}
+
+	private boolean isExpired(Session session, long now) {
+		return now - session.getLastAccess() > this.timeToLive;
+	}
+
+	private String newToken() {
+		byte[] bytes = new byte[TOKEN_BYTES];
+		this.random.nextBytes(bytes);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+	}
+
+}
@@ -0,0 +1,220 @@
+package io.github.joaofso.bookstore.control;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+
+/**
+ * This class writes the profiles of the slow book listings to a log file, one
+ * JSON object per line. When the file grows past its limit, it is renamed to
+ * file.1, the older files are shifted to file.2 and so on, and the oldest one
+ * is deleted, so the log never takes more than its files times their limit.
+ *
+ * The listings do not wait for the disk: the lines are queued and written by
+ * a daemon thread, which writes every line waiting at once and flushes once
+ * per batch. When the queue is full, as when the disk is slower than the slow
+ * listings, the new lines are dropped and counted.
+ *
+ * @author João Felipe
+ *
+ */
+public class SlowQueryLog implements Closeable {
+
+	/**
+	 * Default size of a log file before it is rotated: ten megabytes.
+	 */
+	public final static long DEFAULT_MAX_BYTES = 10 * 1024 * 1024;
+
+	/**
+	 * Default number of rotated files kept besides the current one.
+	 */
+	public final static int DEFAULT_MAX_FILES = 5;
+
+	private final static int QUEUE_CAPACITY = 1024;
+	private final static String IT_IS_NOT_POSSIBLE_OPEN_LOG = "It is not possible to open the slow query log in: ";
+	// compared by identity, so a line with the same text does not close the log
+	private final static String CLOSE = new String("close");
+
+	private final File file;
+	private final long maxBytes;
+	private final int maxFiles;
+	private final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+	private final LongAdder written = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final Thread writerThread;
+
+	private Writer writer;
+	private long bytes;
+	private volatile boolean closed;
+
+	/**
+	 * Constructor of a log with the default limits.
+	 * @param file The log file, appended if it exists.
+	 * @throws BookstoreException Thrown if the file cannot be opened.
+	 */
+	public SlowQueryLog(File file) throws BookstoreException {
+		this(file, DEFAULT_MAX_BYTES, DEFAULT_MAX_FILES);
+	}
+
+	/**
+	 * Constructor of a log.
+	 * @param file The log file, appended if it exists.
+	 * @param maxBytes The size of the file after which it is rotated.
+	 * @param maxFiles The number of rotated files kept besides the current one.
+	 * @throws BookstoreException Thrown if the file cannot be opened.
+	 */
+	public SlowQueryLog(File file, long maxBytes, int maxFiles) throws BookstoreException {
+		this.file = file;
+		this.maxBytes = Math.max(1, maxBytes);
+		this.maxFiles = Math.max(0, maxFiles);
+		try {
+			this.open();
+		} catch (IOException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_OPEN_LOG + file.getPath());
+		}
+		this.writerThread = new Thread(this::writeLines, "SlowQueryLog-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	/**
+	 * Queues a line to be written, without waiting for the disk.
+	 * @param line The line, without the line break.
+	 * @return A boolean value indicating whether the line was queued; it is
+	 *         dropped if the queue is full or the log is closed.
+	 */
+	public boolean write(String line) {
+		if (this.closed || !this.queue.offer(line)) {
+			this.dropped.increment();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of lines written to the files.
+	 * @return The number of lines written.
+	 */
+	public long getWritten() {
+		return this.written.sum();
+	}
+
+	/**
+	 * Returns the number of lines dropped because the queue was full or the
+	 * file could not be written.
+	 * @return The number of lines dropped.
+	 */
+	public long getDropped() {
+		return this.dropped.sum();
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Writes the lines queued so far and closes the file.
+	 */
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			this.queue.put(CLOSE);
+			this.writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeLines() {
+		List<String> batch = new ArrayList<String>();
+		boolean closing = false;
+		while (!closing) {
+			try {
+				batch.add(this.queue.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			this.queue.drainTo(batch);
+			int done = 0;
+			try {
+				for (String line : batch) {
+					if (line == CLOSE) {
+						closing = true;
+						break;
+					}
+					if (this.bytes >= this.maxBytes) {
+						this.rotate();
+					}
+					this.writer.write(line);
+					this.writer.write('\n');
+					this.bytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+					this.written.increment();
+					done++;
+				}
+				this.writer.flush();
+			} catch (IOException e) {
+				// the lines of a failed write are lost, and the next batch tries again on the file opened again
+				this.dropped.add(batch.size() - done);
+				this.reopen();
+			}
+			batch.clear();
+		}
+		try {
+			this.writer.close();
+		} catch (IOException e) {
+			// nothing is left to be written
+		}
+	}
+
+	private void open() throws IOException {
+		this.writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(this.file, true), StandardCharsets.UTF_8));
+		this.bytes = this.file.length();
+	}
+
+	private void reopen() {
+		try {
+			this.writer.close();
+		} catch (IOException e) {
+			// the file is opened again anyway
+		}
+		try {
+			this.open();
+		} catch (IOException e) {
+			// the writer stays closed, so the next batch fails and tries again
+		}
+	}
+
+	private void rotate() throws IOException {
+		this.writer.close();
+		new File(this.file.getPath() + "." + this.maxFiles).delete();
+		for (int i = this.maxFiles - 1; i >= 1; i--) {
+			File older = new File(this.file.getPath() + "." + i);
+			if (older.exists()) {
+				older.renameTo(new File(this.file.getPath() + "." + (i + 1)));
+			}
+		}
+		if (this.maxFiles > 0) {
+			this.file.renameTo(new File(this.file.getPath() + ".1"));
+		} else {
+			this.file.delete();
+		}
+		this.open();
+	}
+
+}
@@ -2,7 +2,9 @@ package io.github.joaofso.bookstore.control;
 
 import io.github.joaofso.bookstore.aux.BookstoreException;
 import io.github.joaofso.bookstore.control.dao.UserDAO;
-import io.github.joaofso.bookstore.control.dao.impl.UserDAOXML;
+import io.github.joaofso.bookstore.control.dao.StorageProviders;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.metrics.OperationMetrics;
 import io.github.joaofso.bookstore.model.User;
 
 /**
@@ -18,15 +20,27 @@ public class UserController {
 
 	private static final String INVALID_PASSWORD = "The provided password does not match. Try again providing the correct one!";
 	private static final String GENERAL_ERROR = "Some error happened during the last action!";
+	private final static OperationMetrics LOGIN_USER = Metrics.operation("UserController", "loginUser");
+	private final static OperationMetrics CREATE_USER = Metrics.operation("UserController", "createUser");
+	private final static OperationMetrics DELETE_USER = Metrics.operation("UserController", "deleteUser");
+	private final static OperationMetrics RETRIEVE_USER = Metrics.operation("UserController", "retrieveUser");
 
 	private UserDAO userDAO;
 
 	/**
-	 * Constructor of a user controller.
+	 * Constructor of a user controller, over the storage engine chosen by the configuration.
 	 * @throws BookstoreException 
 	 */
 	public UserController() throws BookstoreException {
-		this.userDAO = new UserDAOXML();
+		this(StorageProviders.get().createUserDAO());
+	}
+
+	/**
+	 * Constructor of a user controller over the provided DAO.
+	 * @param userDAO The DAO where the users are stored.
+	 */
+	public UserController(UserDAO userDAO) {
+		this.userDAO = userDAO;
 	}
 
 	/**
@@ -40,16 +54,21 @@ public class UserController {
 	 * does not match.
 	 */
 	public User loginUser(String username, String password) throws BookstoreException {
-		this.validateUsername(username);
+		long start = LOGIN_USER.start();
+		try {
+			this.validateUsername(username);
 
-		User user = this.userDAO.retrieveUser(username);
+			User user = this.userDAO.retrieveUser(username);
 
-		String hashedPassword = this.hashPassword(password);
+			String hashedPassword = this.hashPassword(password);
 
-		if (user != null && this.passwordMatch(user, hashedPassword)) {
-			return user;
-		} else {
-			throw new BookstoreException(INVALID_PASSWORD);
+			if (user != null && this.passwordMatch(user, hashedPassword)) {
+				return user;
+			} else {
+				throw new BookstoreException(INVALID_PASSWORD);
+			}
+		} finally {
+			LOGIN_USER.end(start);
 		}
 	}
 
@@ -62,15 +81,20 @@ public class UserController {
 	 * @throws BookstoreException Thrown if any malformation rule is broken or any database problem happens.
 	 */
 	public User createUser(String username, String password, boolean admin) throws BookstoreException {
-		this.validateUsername(username);
-		this.validatePassword(password);
-
-		User newUser = new User(username, password, admin);
-		boolean success = this.userDAO.addUser(newUser);
-		if (success) {
-			return newUser;
-		} else {
-			throw new BookstoreException(GENERAL_ERROR);
+		long start = CREATE_USER.start();
+		try {
+			this.validateUsername(username);
+			this.validatePassword(password);
+
+			User newUser = new User(username, password, admin);
+			boolean success = this.userDAO.addUser(newUser);
+			if (success) {
+				return newUser;
+			} else {
+				throw new BookstoreException(GENERAL_ERROR);
+			}
+		} finally {
+			CREATE_USER.end(start);
 		}
 	}
 
@@ -82,23 +106,28 @@ public class UserController {
 	 * @throws BookstoreException Thrown if any malformation rule is broken or any database problem happens.
 	 */
 	public boolean deteleUser(String username, String password) throws BookstoreException {
-		this.validateUsername(username);
-		this.validatePassword(password);
+		long start = DELETE_USER.start();
+		try {
+			this.validateUsername(username);
+			this.validatePassword(password);
 
-		User user = this.userDAO.retrieveUser(username);
+			User user = this.userDAO.retrieveUser(username);
 
-		String hashedPassword = this.hashPassword(password);
+			String hashedPassword = this.hashPassword(password);
 
-		if (user != null) {
-			if (this.passwordMatch(user, hashedPassword)) {
-				this.userDAO.removeUser(user);
-				return true;
-			} else {
-				throw new BookstoreException(INVALID_PASSWORD);
-			}
+			if (user != null) {
+				if (this.passwordMatch(user, hashedPassword)) {
+					this.userDAO.removeUser(user);
+					return true;
+				} else {
+					throw new BookstoreException(INVALID_PASSWORD);
+				}
 
+			}
+			return false;
+		} finally {
+			DELETE_USER.end(start);
 		}
-		return false;
 	}
 	
 	/**
@@ -107,7 +136,12 @@ public class UserController {
 	 * @return A user instance with the provided username or null if the user is not in the database.
 	 */
 	public User retrieveUser(String username) {
-		return this.userDAO.retrieveUser(username);
+		long start = RETRIEVE_USER.start();
+		try {
+			return this.userDAO.retrieveUser(username);
+		} finally {
+			RETRIEVE_USER.end(start);
+		}
 	}
 
 	private String hashPassword(String password) {
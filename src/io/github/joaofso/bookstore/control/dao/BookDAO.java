@@ -1,8 +1,11 @@
 package io.github.joaofso.bookstore.control.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
 import io.github.joaofso.bookstore.model.Book;
 
 /**
@@ -15,28 +18,37 @@ import io.github.joaofso.bookstore.model.Book;
 public interface BookDAO {
 
 	/**
-	 * Lists every book stored currently in the system.
-	 * @return A list with every book stored currently.
+	 * Lists every book in stock currently in the system.
+	 * @return A list with every book in stock, one element per book.
 	 */
 	List<Book> listAll();
 
 	/**
-	 * Searches the books, comparing with the provided title.
+	 * Searches the books in stock, comparing with the provided title.
 	 * @param title The title to be compared.
-	 * @return A list of every book that match the titles with the provided title.
+	 * @return A list of every book that match the titles with the provided title, one element per book.
 	 */
 	List<Book> searchByTitle(String title);
 
 	/**
-	 * Searches the books, comparing with the provided author name.
+	 * Searches the books in stock, comparing with the provided author name.
 	 * @param authorName The author name to be compared.
-	 * @return A list of every book that match the provided author name.
+	 * @return A list of every book that match the provided author name, one element per book.
 	 * @throws BookstoreException 
 	 */
 	List<Book> searchByAuthor(String authorName);
 
 	/**
-	 * Adds a new book in the bookstore.
+	 * Searches the books in stock whose title or author name have at least one
+	 * of the provided keywords as a whole word. The keywords are compared after
+	 * the normalization done by {@link io.github.joaofso.bookstore.aux.Keywords}.
+	 * @param keywords The keywords to be compared.
+	 * @return A list with every matching book, without repetitions.
+	 */
+	List<Book> searchByKeywords(Collection<String> keywords);
+
+	/**
+	 * Adds a unit of a book in the bookstore, registering the book if it is new.
 	 * @param book The book to be stored.
 	 * @return A boolean value indicating that the book was really inserted.
 	 * @throws BookstoreException 
@@ -44,10 +56,74 @@ public interface BookDAO {
 	boolean insertBook(Book book);
 
 	/**
-	 * Removes a book from the bookstore
+	 * Removes a unit of a book from the bookstore
 	 * @param book The book to be removed.
 	 * @return A boolean value indicating that the book was really removed.
 	 */
 	boolean deleteBook(Book book);
 
+	/**
+	 * Adds units of a book to the stock, registering the book if it is new.
+	 * @param book The book to be stored.
+	 * @param quantity The number of units to be added. Zero just registers the book.
+	 * @return A boolean value indicating that the stock was really updated.
+	 */
+	boolean incrementStock(Book book, int quantity);
+
+	/**
+	 * Adds units of many books to the stock in a single update, registering the
+	 * new books, so a large load writes the storage once.
+	 * @param quantities The number of units to be added to each book. Zero just registers the book.
+	 * @return A boolean value indicating that the stock was really updated. If
+	 *         any quantity is negative, nothing is updated.
+	 */
+	boolean incrementStock(Map<Book, Integer> quantities);
+
+	/**
+	 * Removes units of a book from the stock. If there are not enough units,
+	 * every unit left is removed.
+	 * @param book The book to be removed.
+	 * @param quantity The number of units to be removed.
+	 * @return The number of units actually removed.
+	 */
+	int decrementStock(Book book, int quantity);
+
+	/**
+	 * Takes the units of a whole basket from the stock in a single update. The
+	 * availability of every unit is resolved first, in the basket order, and then
+	 * every unit available is removed and the stock is persisted once.
+	 * @param books The units to be bought, one element per unit.
+	 * @return The status of each unit, in the same order of the basket. If the
+	 *         stock cannot be updated, every unit is not in stock.
+	 */
+	PurchaseStatus[] checkout(Book... books);
+
+	/**
+	 * Returns the number of units of a book in stock.
+	 * @param book The book to be checked.
+	 * @return The number of units in stock, -1 if the book is not registered,
+	 *         or 0 if the stock cannot be read.
+	 */
+	int getStock(Book book);
+
+	/**
+	 * Returns the generation of the listings, a number that changes whenever a
+	 * book may enter or leave them: a book registered, sold out or restocked,
+	 * through this DAO or through another one over the same storage that this
+	 * one can notice. Two listings made under the same generation give the same
+	 * books, so their results can be kept.
+	 * @return The generation of the listings.
+	 */
+	long getGeneration();
+
+	/**
+	 * Returns the number of times the calling thread parsed the storage through
+	 * this DAO, so the caller can tell the parses of its own calls from the ones
+	 * of the other threads. The storages that are not parsed return 0.
+	 * @return The number of parses made by the calling thread.
+	 */
+	default long getThreadParses() {
+		return 0;
+	}
+
 }
@@ -0,0 +1,38 @@
+package io.github.joaofso.bookstore.control.dao;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+
+/**
+ * This interface defines a storage engine of the bookstore, which creates the
+ * DAOs of books and users of one kind of storage. The engines are discovered
+ * through the ServiceLoader, so a new engine is plugged by listing its class in
+ * META-INF/services/io.github.joaofso.bookstore.control.dao.StorageProvider,
+ * and the engine used is chosen by its name, as described in
+ * {@link StorageProviders}.
+ * 
+ * @author João Felipe
+ *
+ */
+public interface StorageProvider {
+
+	/**
+	 * Returns the name used to choose this engine in the configuration.
+	 * @return The name of the engine.
+	 */
+	String getName();
+
+	/**
+	 * Creates the DAO of the books stored by this engine.
+	 * @return The DAO of the books.
+	 * @throws BookstoreException Thrown when the storage cannot be accessed.
+	 */
+	BookDAO createBookDAO() throws BookstoreException;
+
+	/**
+	 * Creates the DAO of the users stored by this engine.
+	 * @return The DAO of the users.
+	 * @throws BookstoreException Thrown when the storage cannot be accessed.
+	 */
+	UserDAO createUserDAO() throws BookstoreException;
+
+}
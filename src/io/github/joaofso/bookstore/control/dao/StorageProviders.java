@@ -0,0 +1,100 @@
+package io.github.joaofso.bookstore.control.dao;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+
+/**
+ * This class finds the storage engines available and chooses the one to be
+ * used. The engine is the one named by the system property bookstore.storage
+ * or, if it is not set, by the same key in the file bookstore.properties of the
+ * working directory. Without any of them, the XML engine is used.
+ * 
+ * @author João Felipe
+ *
+ */
+public final class StorageProviders {
+
+	/**
+	 * System property, and key of the properties file, with the name of the storage engine.
+	 */
+	public final static String STORAGE_PROPERTY = "bookstore.storage";
+
+	private final static String PROPERTIES_FILE = "./bookstore.properties";
+	private final static String DEFAULT_STORAGE = "xml";
+	private final static String UNKNOWN_STORAGE = "There is no storage engine named: ";
+	private final static String INVALID_PROPERTIES_FILE = "The properties file of the bookstore is invalid: ";
+
+	private static Map<String, StorageProvider> providers;
+
+	private StorageProviders() {
+	}
+
+	/**
+	 * Returns the storage engine chosen by the configuration.
+	 * @return The configured storage engine.
+	 * @throws BookstoreException Thrown when there is no engine with the configured name.
+	 */
+	public static StorageProvider get() throws BookstoreException {
+		return get(configuredName());
+	}
+
+	/**
+	 * Returns a storage engine by its name.
+	 * @param name The name of the engine.
+	 * @return The storage engine.
+	 * @throws BookstoreException Thrown when there is no engine with the provided name.
+	 */
+	public static StorageProvider get(String name) throws BookstoreException {
+		StorageProvider provider = available().get(name);
+		if (provider == null) {
+			throw new BookstoreException(UNKNOWN_STORAGE + name);
+		}
+		return provider;
+	}
+
+	/**
+	 * Lists the storage engines found by the ServiceLoader. Each engine is
+	 * loaded once, so the engines that keep their data in memory share it among
+	 * every controller.
+	 * @return The storage engines by name.
+	 */
+	public static synchronized Map<String, StorageProvider> available() {
+		if (providers == null) {
+			Map<String, StorageProvider> loaded = new LinkedHashMap<String, StorageProvider>();
+			for (StorageProvider provider : ServiceLoader.load(StorageProvider.class)) {
+				loaded.put(provider.getName(), provider);
+			}
+			providers = loaded;
+		}
+		return providers;
+	}
+
+	private static String configuredName() throws BookstoreException {
+		String name = System.getProperty(STORAGE_PROPERTY);
+		if (name != null) {
+			return name.trim();
+		}
+		File propertiesFile = new File(PROPERTIES_FILE);
+		if (propertiesFile.exists()) {
+			Properties properties = new Properties();
+			try (InputStream input = new FileInputStream(propertiesFile)) {
+				properties.load(input);
+			} catch (IOException e) {
+				throw new BookstoreException(INVALID_PROPERTIES_FILE + propertiesFile.getPath());
+			}
+			name = properties.getProperty(STORAGE_PROPERTY);
+			if (name != null) {
+				return name.trim();
+			}
+		}
+		return DEFAULT_STORAGE;
+	}
+}
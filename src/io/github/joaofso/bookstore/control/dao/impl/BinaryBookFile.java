@@ -0,0 +1,323 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
+
+/**
+ * This class gives access to the binary book database through a memory mapped
+ * buffer, so the records are read straight from the page cache, without
+ * parsing the file. The file has four sections:
+ *
+ * a header with the magic number, the format version and the number of books;
+ * the records, one per book in the order they were registered, each with the
+ * offsets of the title and of the author name in the string heap, the price as
+ * an unscaled long and its scale, and the number of units in stock;
+ * an index with the record numbers sorted by title, author name and price, used
+ * to find a book by binary search;
+ * the string heap, where every string is its length followed by its UTF-8 bytes.
+ *
+ * Since the version 2 of the format, the prices are written in cents, with the
+ * scale of {@link Money}, and the index is sorted by their value. The files of
+ * the version 1 kept the scale of each price and sorted by it, so their books
+ * are found by a scan until the file is written again.
+ *
+ * The stock of a registered book is changed in place. Registering a book
+ * rewrites the whole file, which is then mapped again.
+ *
+ * @author João Felipe
+ *
+ */
+final class BinaryBookFile {
+
+	private static final int MAGIC = 0x424B4442;
+	private static final int VERSION = 2;
+	private static final int SCALE_SORTED_VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_SIZE = 24;
+	private static final int INDEX_ENTRY_SIZE = 4;
+
+	private static final int TITLE_FIELD = 0;
+	private static final int AUTHOR_FIELD = 4;
+	private static final int PRICE_FIELD = 8;
+	private static final int SCALE_FIELD = 16;
+	private static final int QUANTITY_FIELD = 20;
+
+	private static final String INVALID_BINARY_FILE = "The binary file with the book database is invalid: ";
+	private static final String IT_IS_NOT_POSSIBLE_WRITE_FILE = "It is not possible to write the binary book database: ";
+
+	private final MappedByteBuffer buffer;
+	private final int size;
+	private final boolean sortedByValue;
+
+	private BinaryBookFile(MappedByteBuffer buffer, int size, boolean sortedByValue) {
+		this.buffer = buffer;
+		this.size = size;
+		this.sortedByValue = sortedByValue;
+	}
+
+	/**
+	 * Maps a binary book database. Just the header is read.
+	 * @param file The binary file of the book database.
+	 * @return The mapped file.
+	 * @throws BookstoreException Thrown if the file cannot be mapped or is not a binary book database.
+	 */
+	static BinaryBookFile open(File file) throws BookstoreException {
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			FileChannel channel = randomAccessFile.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+					|| (buffer.getInt(4) != VERSION && buffer.getInt(4) != SCALE_SORTED_VERSION)) {
+				throw new BookstoreException(INVALID_BINARY_FILE + file.getPath());
+			}
+			int size = buffer.getInt(8);
+			if (size < 0 || (long) HEADER_SIZE + (long) size * (RECORD_SIZE + INDEX_ENTRY_SIZE) > buffer.capacity()) {
+				throw new BookstoreException(INVALID_BINARY_FILE + file.getPath());
+			}
+			// the mapping stays valid after the channel is closed
+			return new BinaryBookFile(buffer, size, buffer.getInt(4) == VERSION);
+		} catch (IOException e) {
+			throw new BookstoreException(INVALID_BINARY_FILE + file.getPath());
+		}
+	}
+
+	/**
+	 * Writes a binary book database, replacing the file at once, so a reader
+	 * never maps a file written halfway.
+	 * @param file The binary file of the book database.
+	 * @param books The books, in the order they were registered.
+	 * @param quantities The number of units in stock of each book.
+	 * @throws BookstoreException Thrown if the file cannot be written.
+	 */
+	static void write(File file, List<Book> books, List<Integer> quantities) throws BookstoreException {
+		int size = books.size();
+		List<byte[]> titles = new ArrayList<byte[]>(size);
+		List<byte[]> authors = new ArrayList<byte[]>(size);
+		long heapSize = 0;
+		for (Book book : books) {
+			byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+			byte[] author = book.getAuthor().getBytes(StandardCharsets.UTF_8);
+			titles.add(title);
+			authors.add(author);
+			heapSize += 8 + title.length + author.length;
+		}
+		long heapStart = HEADER_SIZE + (long) size * (RECORD_SIZE + INDEX_ENTRY_SIZE);
+		if (heapStart + heapSize > Integer.MAX_VALUE) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_WRITE_FILE + file.getPath());
+		}
+
+		ByteBuffer output = ByteBuffer.allocate((int) (heapStart + heapSize));
+		output.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0);
+		int heapOffset = (int) heapStart;
+		for (int i = 0; i < size; i++) {
+			int record = HEADER_SIZE + i * RECORD_SIZE;
+			output.putInt(record + TITLE_FIELD, heapOffset);
+			output.position(heapOffset);
+			output.putInt(titles.get(i).length).put(titles.get(i));
+			heapOffset = output.position();
+			output.putInt(record + AUTHOR_FIELD, heapOffset);
+			output.putInt(authors.get(i).length).put(authors.get(i));
+			heapOffset = output.position();
+			output.putLong(record + PRICE_FIELD, books.get(i).getPriceMoney().getMinorUnits());
+			output.putInt(record + SCALE_FIELD, Money.SCALE);
+			output.putInt(record + QUANTITY_FIELD, quantities.get(i));
+		}
+
+		List<Integer> index = new ArrayList<Integer>(size);
+		for (int i = 0; i < size; i++) {
+			index.add(i);
+		}
+		Collections.sort(index, (first, second) -> compare(titles.get(first), authors.get(first),
+				books.get(first).getPriceMoney().getMinorUnits(), titles.get(second), authors.get(second),
+				books.get(second).getPriceMoney().getMinorUnits()));
+		int indexStart = HEADER_SIZE + size * RECORD_SIZE;
+		for (int i = 0; i < size; i++) {
+			output.putInt(indexStart + i * INDEX_ENTRY_SIZE, index.get(i));
+		}
+
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			Files.write(tempFile.toPath(), output.array());
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_WRITE_FILE + file.getPath());
+		}
+	}
+
+	/**
+	 * Returns the number of books registered in the file.
+	 * @return The number of records.
+	 */
+	int size() {
+		return this.size;
+	}
+
+	String titleOf(int record) {
+		return this.stringAt(this.buffer.getInt(recordOffset(record) + TITLE_FIELD));
+	}
+
+	String authorOf(int record) {
+		return this.stringAt(this.buffer.getInt(recordOffset(record) + AUTHOR_FIELD));
+	}
+
+	/**
+	 * Reads the price of a record in cents, whatever the scale it was written with.
+	 * @param record The record of the book.
+	 * @return The number of minor units of the price.
+	 */
+	long priceOf(int record) {
+		int offset = recordOffset(record);
+		return Money.toMinorUnits(this.buffer.getLong(offset + PRICE_FIELD), this.buffer.getInt(offset + SCALE_FIELD));
+	}
+
+	Book bookOf(int record) {
+		return new Book(this.titleOf(record), this.authorOf(record), Money.ofMinorUnits(this.priceOf(record)));
+	}
+
+	int quantityOf(int record) {
+		return this.buffer.getInt(recordOffset(record) + QUANTITY_FIELD);
+	}
+
+	/**
+	 * Changes the stock of a book in place. The change reaches the disk on the
+	 * next call to force.
+	 * @param record The record of the book.
+	 * @param quantity The new number of units in stock.
+	 */
+	void setQuantity(int record, int quantity) {
+		this.buffer.putInt(recordOffset(record) + QUANTITY_FIELD, quantity);
+	}
+
+	/**
+	 * Writes the changes made in place to the disk.
+	 */
+	void force() {
+		this.buffer.force();
+	}
+
+	/**
+	 * Finds a book by binary search on the index, comparing the UTF-8 bytes in
+	 * the heap without decoding them.
+	 * @param book The book to be found.
+	 * @return The record of the book, or -1 if the book is not registered.
+	 */
+	int find(Book book) {
+		byte[] title = book.getTitle().getBytes(StandardCharsets.UTF_8);
+		byte[] author = book.getAuthor().getBytes(StandardCharsets.UTF_8);
+		long price = book.getPriceMoney().getMinorUnits();
+		if (!this.sortedByValue) {
+			for (int record = 0; record < this.size; record++) {
+				if (this.compareRecord(record, title, author, price) == 0) {
+					return record;
+				}
+			}
+			return -1;
+		}
+		int indexStart = HEADER_SIZE + this.size * RECORD_SIZE;
+		int low = 0;
+		int high = this.size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int record = this.buffer.getInt(indexStart + middle * INDEX_ENTRY_SIZE);
+			int comparison = this.compareRecord(record, title, author, price);
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return record;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads every record, to build a new file with one more book.
+	 */
+	void readAll(List<Book> books, List<Integer> quantities) {
+		for (int record = 0; record < this.size; record++) {
+			books.add(this.bookOf(record));
+			quantities.add(this.quantityOf(record));
+		}
+	}
+
+	private int compareRecord(int record, byte[] title, byte[] author, long price) {
+		int offset = recordOffset(record);
+		int comparison = this.compareString(this.buffer.getInt(offset + TITLE_FIELD), title);
+		if (comparison != 0) {
+			return comparison;
+		}
+		comparison = this.compareString(this.buffer.getInt(offset + AUTHOR_FIELD), author);
+		if (comparison != 0) {
+			return comparison;
+		}
+		return Long.compare(this.priceOf(record), price);
+	}
+
+	private int compareString(int heapOffset, byte[] value) {
+		int length = this.buffer.getInt(heapOffset);
+		int common = Math.min(length, value.length);
+		for (int i = 0; i < common; i++) {
+			int comparison = (this.buffer.get(heapOffset + 4 + i) & 0xff) - (value[i] & 0xff);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return length - value.length;
+	}
+
+	private String stringAt(int heapOffset) {
+		int length = this.buffer.getInt(heapOffset);
+		byte[] bytes = new byte[length];
+		ByteBuffer view = this.buffer.duplicate();
+		view.position(heapOffset + 4);
+		view.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int recordOffset(int record) {
+		return HEADER_SIZE + record * RECORD_SIZE;
+	}
+
+	private static int compare(byte[] firstTitle, byte[] firstAuthor, long firstPrice, byte[] secondTitle,
+			byte[] secondAuthor, long secondPrice) {
+		int comparison = compareBytes(firstTitle, secondTitle);
+		if (comparison != 0) {
+			return comparison;
+		}
+		comparison = compareBytes(firstAuthor, secondAuthor);
+		if (comparison != 0) {
+			return comparison;
+		}
+		return Long.compare(firstPrice, secondPrice);
+	}
+
+	private static int compareBytes(byte[] first, byte[] second) {
+		int common = Math.min(first.length, second.length);
+		for (int i = 0; i < common; i++) {
+			int comparison = (first[i] & 0xff) - (second[i] & 0xff);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return first.length - second.length;
+	}
+}
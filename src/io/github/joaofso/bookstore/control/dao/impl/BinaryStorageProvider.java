@@ -0,0 +1,39 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+
+/**
+ * This class is the storage engine that keeps the books in the memory mapped
+ * binary file, chosen by the name binary. There is no binary format for the
+ * users, which stay in the XML file.
+ * 
+ * @author João Felipe
+ *
+ */
+public class BinaryStorageProvider implements StorageProvider {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getName() {
+		return "binary";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BookDAO createBookDAO() throws BookstoreException {
+		return new BookDAOBinary();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public UserDAO createUserDAO() throws BookstoreException {
+		return new UserDAOXML();
+	}
+
+}
@@ -0,0 +1,501 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.BookRegistry;
+
+/**
+ * This class keeps the book database in memory, so the DAO can answer reads
+ * without touching the disk. Every book is kept in a single entry with the
+ * number of units in stock. A book that runs out of stock stays registered,
+ * but it is left out of the listings and searches. Every entry gets an
+ * identifier, used by the keyword index, which is built on the first keyword
+ * search and kept up to date afterwards. Optionally, the catalog also keeps
+ * trigram indexes of titles and author names, so the substring searches of
+ * three or more characters check only the candidate entries instead of
+ * scanning the whole catalog. Reads and writes may happen concurrently, so
+ * every access is guarded by a read/write lock.
+ *
+ * The catalog has a generation, which changes whenever a book enters or leaves
+ * the listings. The generations are drawn from a single sequence, so a catalog
+ * read again from the storage never repeats the generation of another one.
+ *
+ * @author João Felipe
+ *
+ */
+final class BookCatalog {
+
+	private static final String SEQUENCE_ATTRIBUTE = "sequence";
+	private static final AtomicLong GENERATIONS = new AtomicLong();
+
+	private final Map<Book, Entry> entries = new LinkedHashMap<Book, Entry>();
+	private final Map<Integer, Entry> entriesById = new HashMap<Integer, Entry>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final boolean substringIndexed;
+	private final BookRegistry registry;
+	private volatile TokenIndex tokenIndex;
+	private volatile TrigramIndex titleIndex;
+	private volatile TrigramIndex authorIndex;
+	private volatile long generation = newGeneration();
+	private int nextId;
+	private long sequence;
+
+	/**
+	 * Constructor of an empty catalog.
+	 * @param substringIndexed A boolean value indicating whether the substring searches use trigram indexes.
+	 */
+	BookCatalog(boolean substringIndexed) {
+		this(substringIndexed, new BookRegistry());
+	}
+
+	/**
+	 * Constructor of an empty catalog whose books are shared through a registry,
+	 * so the catalogs read again from the same file keep the same instances.
+	 * @param substringIndexed A boolean value indicating whether the substring searches use trigram indexes.
+	 * @param registry The registry of the books.
+	 */
+	BookCatalog(boolean substringIndexed, BookRegistry registry) {
+		this.substringIndexed = substringIndexed;
+		this.registry = registry;
+	}
+
+	/**
+	 * Reads a catalog from the book database file. A book element without
+	 * quantity counts as one unit, and repeated elements are summed, as the
+	 * databases written before the stock count had one element per unit.
+	 * @param dbFile The XML file of the book database.
+	 * @param substringIndexed A boolean value indicating whether the substring searches use trigram indexes.
+	 * @return A catalog with every book of the file.
+	 * @throws BookstoreException Thrown if the file is not a valid book database.
+	 */
+	static BookCatalog fromFile(File dbFile, boolean substringIndexed) throws BookstoreException {
+		return fromFile(dbFile, substringIndexed, new BookRegistry());
+	}
+
+	/**
+	 * Reads a catalog from the book database file, sharing its books through a registry.
+	 * @param dbFile The XML file of the book database.
+	 * @param substringIndexed A boolean value indicating whether the substring searches use trigram indexes.
+	 * @param registry The registry of the books.
+	 * @return A catalog with every book of the file.
+	 * @throws BookstoreException Thrown if the file is not a valid book database.
+	 */
+	static BookCatalog fromFile(File dbFile, boolean substringIndexed, BookRegistry registry)
+			throws BookstoreException {
+		BookCatalog catalog = new BookCatalog(substringIndexed, registry);
+		catalog.sequence = BookXMLReader.read(dbFile,
+				(title, author, price, quantity) -> catalog.add(registry.canonical(title, author, price), quantity));
+		return catalog;
+	}
+
+	/**
+	 * Returns the journal sequence number the file of this catalog was written with.
+	 * @return The sequence number of the last journal record folded in the file, or 0 if there is none.
+	 */
+	long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Builds the document to be written in the book database file.
+	 * @param sequence The sequence number of the last journal record applied to this catalog, or 0 if there is none.
+	 * @return A document with every book of this catalog.
+	 */
+	Document toDocument(long sequence) {
+		return toDocument(this.snapshot(), sequence);
+	}
+
+	/**
+	 * Copies the entries of the catalog, so a document can be built from them
+	 * without holding any lock.
+	 * @return A copy of every entry of the catalog.
+	 */
+	List<Entry> snapshot() {
+		this.lock.readLock().lock();
+		try {
+			List<Entry> snapshot = new ArrayList<Entry>(this.entries.size());
+			for (Entry entry : this.entries.values()) {
+				snapshot.add(new Entry(entry.id, entry.book, entry.quantity));
+			}
+			return snapshot;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Builds the document to be written in the book database file.
+	 * @param snapshot The entries of the catalog.
+	 * @param sequence The sequence number of the last journal record applied to the entries, or 0 if there is none.
+	 * @return A document with every book of the entries.
+	 */
+	static Document toDocument(List<Entry> snapshot, long sequence) {
+		Element root = new Element("books");
+		if (sequence > 0) {
+			root.setAttribute(SEQUENCE_ATTRIBUTE, Long.toString(sequence));
+		}
+		for (Entry entry : snapshot) {
+			Element bookTag = new Element("book");
+			bookTag.addContent(new Element("title").setText(entry.book.getTitle()));
+			bookTag.addContent(new Element("author").setText(entry.book.getAuthor()));
+			bookTag.addContent(new Element("price").setText(entry.book.getPriceMoney().toString()));
+			bookTag.addContent(new Element("quantity").setText(Integer.toString(entry.quantity)));
+			root.addContent(bookTag);
+		}
+		return new Document(root);
+	}
+
+	/**
+	 * Lists every book in stock. The books are the cached instances.
+	 * @return A new list with every book in stock, one element per book.
+	 */
+	List<Book> listAll() {
+		List<Book> allBooks = new LinkedList<Book>();
+		this.lock.readLock().lock();
+		try {
+			for (Entry entry : this.entries.values()) {
+				if (entry.quantity > 0) {
+					allBooks.add(entry.book);
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return allBooks;
+	}
+
+	/**
+	 * Searches the books in stock whose titles contain the provided title.
+	 * @param title The title to be compared.
+	 * @return A new list with the matching books, one element per book.
+	 */
+	List<Book> searchByTitle(String title) {
+		if (this.substringIndexed && title.length() >= TrigramIndex.GRAM_LENGTH) {
+			this.buildTrigramIndexes();
+			return this.searchCandidates(this.titleIndex, title, true);
+		}
+		List<Book> booksByTitle = new LinkedList<Book>();
+		this.lock.readLock().lock();
+		try {
+			for (Entry entry : this.entries.values()) {
+				if (entry.quantity > 0 && entry.book.getTitle().contains(title)) {
+					booksByTitle.add(entry.book);
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return booksByTitle;
+	}
+
+	/**
+	 * Searches the books in stock whose author names contain the provided author name.
+	 * @param authorName The author name to be compared.
+	 * @return A new list with the matching books, one element per book.
+	 */
+	List<Book> searchByAuthor(String authorName) {
+		if (this.substringIndexed && authorName.length() >= TrigramIndex.GRAM_LENGTH) {
+			this.buildTrigramIndexes();
+			return this.searchCandidates(this.authorIndex, authorName, false);
+		}
+		List<Book> booksByAuthor = new LinkedList<Book>();
+		this.lock.readLock().lock();
+		try {
+			for (Entry entry : this.entries.values()) {
+				if (entry.quantity > 0 && entry.book.getAuthor().contains(authorName)) {
+					booksByAuthor.add(entry.book);
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return booksByAuthor;
+	}
+
+	/**
+	 * Checks the candidates given by a trigram index, in the catalog order, so the
+	 * result is the same a scan would give.
+	 */
+	private List<Book> searchCandidates(TrigramIndex index, String query, boolean byTitle) {
+		List<Book> books = new LinkedList<Book>();
+		this.lock.readLock().lock();
+		try {
+			for (int id : index.candidates(query)) {
+				Entry entry = this.entriesById.get(id);
+				String text = byTitle ? entry.book.getTitle() : entry.book.getAuthor();
+				if (entry.quantity > 0 && text.contains(query)) {
+					books.add(entry.book);
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return books;
+	}
+
+	/**
+	 * Searches the books in stock whose titles or author names have at least one
+	 * of the keywords.
+	 * @param keywords The keywords to be searched.
+	 * @return A new list with the matching books, one element per book, in the catalog order.
+	 */
+	List<Book> searchByKeywords(Collection<String> keywords) {
+		this.buildTokenIndex();
+		List<Book> booksByKeywords = new ArrayList<Book>();
+		this.lock.readLock().lock();
+		try {
+			for (int id : this.tokenIndex.search(keywords)) {
+				Entry entry = this.entriesById.get(id);
+				if (entry.quantity > 0) {
+					booksByKeywords.add(entry.book);
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return booksByKeywords;
+	}
+
+	/**
+	 * Adds units of a book to the stock, registering the book if it is new.
+	 * Nothing is changed if the stock would be larger than an int holds.
+	 * @param book The book to be added.
+	 * @param quantity The number of units to be added, which may be zero to just register the book.
+	 * @return A boolean value indicating whether the units were added.
+	 */
+	boolean add(Book book, int quantity) {
+		this.lock.writeLock().lock();
+		try {
+			Entry entry = this.entries.get(book);
+			if (entry != null && entry.quantity > Integer.MAX_VALUE - quantity) {
+				return false;
+			}
+			if (entry == null) {
+				entry = new Entry(this.nextId++, this.registry.canonical(book), 0);
+				this.entries.put(entry.book, entry);
+				this.entriesById.put(entry.id, entry);
+				if (this.tokenIndex != null) {
+					this.tokenIndex.add(entry.id, book);
+				}
+				if (this.titleIndex != null) {
+					this.titleIndex.add(entry.id, book.getTitle());
+					this.authorIndex.add(entry.id, book.getAuthor());
+				}
+			}
+			if (entry.quantity == 0 && quantity > 0) {
+				this.generation = newGeneration();
+			}
+			entry.quantity += quantity;
+			return true;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Checks whether units of many books can be added without any stock being
+	 * larger than an int holds.
+	 * @param quantities The number of units to be added to each book.
+	 * @return A boolean value indicating whether every addition fits.
+	 */
+	boolean canAdd(Map<Book, Integer> quantities) {
+		this.lock.readLock().lock();
+		try {
+			for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+				Entry entry = this.entries.get(quantity.getKey());
+				if (entry != null && entry.quantity > Integer.MAX_VALUE - quantity.getValue()) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes units of a book from the stock. If there are not enough units,
+	 * every unit left is removed.
+	 * @param book The book to be removed.
+	 * @param quantity The number of units to be removed.
+	 * @return The number of units actually removed.
+	 */
+	int remove(Book book, int quantity) {
+		this.lock.writeLock().lock();
+		try {
+			Entry entry = this.entries.get(book);
+			if (entry == null) {
+				return 0;
+			}
+			int removed = Math.min(entry.quantity, quantity);
+			entry.quantity -= removed;
+			if (removed > 0 && entry.quantity == 0) {
+				this.generation = newGeneration();
+			}
+			return removed;
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Resolves the availability of every unit of a basket, without changing the
+	 * stock. The units are served in the basket order, so when a book runs short
+	 * the first units get it and the remaining ones are not in stock.
+	 * @param books The units of the basket, one element per unit.
+	 * @param statuses The array filled with the status of each unit.
+	 * @return The number of units to be removed from each book, in the basket order.
+	 */
+	Map<Book, Integer> checkStock(Book[] books, PurchaseStatus[] statuses) {
+		// the cached instances are the keys, so equal books fall in the same entry of the map
+		Map<Book, Integer> demand = new LinkedHashMap<Book, Integer>();
+		this.lock.readLock().lock();
+		try {
+			for (int i = 0; i < books.length; i++) {
+				Entry entry = this.entries.get(books[i]);
+				if (entry == null) {
+					statuses[i] = PurchaseStatus.DOES_NOT_EXIST;
+					continue;
+				}
+				Integer taken = demand.get(entry.book);
+				int units = taken == null ? 0 : taken;
+				if (units < entry.quantity) {
+					demand.put(entry.book, units + 1);
+					statuses[i] = PurchaseStatus.OK;
+				} else {
+					statuses[i] = PurchaseStatus.NOT_IN_STOCK;
+				}
+			}
+		} finally {
+			this.lock.readLock().unlock();
+		}
+		return demand;
+	}
+
+	/**
+	 * Removes units of several books from the stock at once.
+	 * @param quantities The number of units to be removed from each book.
+	 */
+	void removeAll(Map<Book, Integer> quantities) {
+		this.lock.writeLock().lock();
+		try {
+			for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+				this.remove(quantity.getKey(), quantity.getValue());
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the generation of the listings of this catalog.
+	 * @return The generation, which no other catalog has.
+	 */
+	long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Draws a generation never drawn before.
+	 * @return The new generation.
+	 */
+	static long newGeneration() {
+		return GENERATIONS.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of units in stock of a book.
+	 * @param book The book to be checked.
+	 * @return The number of units in stock, or -1 if the book is not registered.
+	 */
+	int stockOf(Book book) {
+		this.lock.readLock().lock();
+		try {
+			Entry entry = this.entries.get(book);
+			return entry == null ? -1 : entry.quantity;
+		} finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * The index is built only when it is first needed, so the catalogs parsed for
+	 * a single operation do not pay for it.
+	 */
+	private void buildTokenIndex() {
+		if (this.tokenIndex != null) {
+			return;
+		}
+		this.lock.writeLock().lock();
+		try {
+			if (this.tokenIndex == null) {
+				TokenIndex newIndex = new TokenIndex();
+				for (Entry entry : this.entries.values()) {
+					newIndex.add(entry.id, entry.book);
+				}
+				this.tokenIndex = newIndex;
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	private void buildTrigramIndexes() {
+		if (this.titleIndex != null) {
+			return;
+		}
+		this.lock.writeLock().lock();
+		try {
+			if (this.titleIndex == null) {
+				TrigramIndex newTitleIndex = new TrigramIndex();
+				TrigramIndex newAuthorIndex = new TrigramIndex();
+				for (Entry entry : this.entries.values()) {
+					newTitleIndex.add(entry.id, entry.book.getTitle());
+					newAuthorIndex.add(entry.id, entry.book.getAuthor());
+				}
+				// the author index is published first, since the title index signals both are ready
+				this.authorIndex = newAuthorIndex;
+				this.titleIndex = newTitleIndex;
+			}
+		} finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	static final class Entry {
+
+		private final int id;
+		private final Book book;
+		private int quantity;
+
+		private Entry(int id, Book book, int quantity) {
+			this.id = id;
+			this.book = book;
+			this.quantity = quantity;
+		}
+
+		Book getBook() {
+			return this.book;
+		}
+
+		int getQuantity() {
+			return this.quantity;
+		}
+	}
+}
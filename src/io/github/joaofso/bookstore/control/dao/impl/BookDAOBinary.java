@@ -0,0 +1,355 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiPredicate;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.Keywords;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.BookRegistry;
+
+/**
+ * This class implements the DAO pattern over a compact binary file, read
+ * through a memory mapped buffer by {@link BinaryBookFile}. Opening the
+ * database maps the file without parsing it, the scans read the records
+ * straight from the page cache, and a book is found by binary search on the
+ * sorted index of the file. The stock is changed in place, so buying books
+ * does not rewrite the file; only registering a new book does.
+ *
+ * An XML book database can be converted with {@link BookDatabaseConverter}.
+ *
+ * @author João Felipe
+ *
+ */
+public class BookDAOBinary implements BookDAO {
+
+	private final static String DEFAULT_BOOK_FILE = "./BookDatabase.bin";
+	private final static String IT_IS_NOT_POSSIBLE_CREATE_FILE = "It is not possible to create the Book storage file in: ";
+
+	private final File bookstoreDBFile;
+	private final FileGeneration fileGeneration;
+
+	private final BookRegistry registry = new BookRegistry();
+
+	private volatile BinaryBookFile mappedFile;
+	private volatile FileStamp mappedStamp;
+	private volatile AtomicReferenceArray<Book> mappedBooks;
+
+	/**
+	 * Constructor of the DAO object. It receives a filepath to be the binary book
+	 * database, which is created empty if it does not exist.
+	 *
+	 * @param filepath The file path to the binary file that contain the books of the
+	 *        bookstore.
+	 * @throws BookstoreException Thrown when the system cannot access the file path due to, for
+	 *         instance lack of permission.
+	 */
+	protected BookDAOBinary(String filepath) throws BookstoreException {
+		this.bookstoreDBFile = new File(filepath);
+		this.fileGeneration = new FileGeneration(this.bookstoreDBFile);
+		if (!this.bookstoreDBFile.exists()) {
+			try {
+				BinaryBookFile.write(this.bookstoreDBFile, new ArrayList<Book>(), new ArrayList<Integer>());
+			} catch (BookstoreException e) {
+				throw new BookstoreException(IT_IS_NOT_POSSIBLE_CREATE_FILE + filepath);
+			}
+		}
+	}
+
+	/**
+	 * Constructor of the DAO object. It uses a default file path to manage the
+	 * books data base.
+	 *
+	 * @throws BookstoreException
+	 *             Thrown when the system cannot access the file path due to, for
+	 *             instance lack of permission.
+	 */
+	public BookDAOBinary() throws BookstoreException {
+		this(DEFAULT_BOOK_FILE);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> listAll() {
+		return this.scan((title, author) -> true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByTitle(String title) {
+		return this.scan((bookTitle, author) -> bookTitle.contains(title));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByAuthor(String authorName) {
+		return this.scan((title, author) -> author.contains(authorName));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByKeywords(Collection<String> keywords) {
+		Set<String> normalized = new HashSet<String>();
+		for (String keyword : keywords) {
+			normalized.addAll(Keywords.tokenize(keyword));
+		}
+		return this.scan((title, author) -> !Collections.disjoint(Keywords.tokenize(title), normalized)
+				|| !Collections.disjoint(Keywords.tokenize(author), normalized));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean insertBook(Book book) {
+		return this.incrementStock(book, 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean deleteBook(Book book) {
+		return this.decrementStock(book, 1) == 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public boolean incrementStock(Book book, int quantity) {
+		if (quantity < 0) {
+			return false;
+		}
+		try {
+			BinaryBookFile current = this.mapFile();
+			int record = current.find(book);
+			if (record >= 0) {
+				current.setQuantity(record, Math.addExact(current.quantityOf(record), quantity));
+				current.force();
+				return true;
+			}
+			// a new book needs a new record, a new string and a new index entry, so the file is rebuilt
+			List<Book> books = new ArrayList<Book>(current.size() + 1);
+			List<Integer> quantities = new ArrayList<Integer>(current.size() + 1);
+			current.readAll(books, quantities);
+			books.add(book);
+			quantities.add(quantity);
+			BinaryBookFile.write(this.bookstoreDBFile, books, quantities);
+			this.mappedFile = null;
+			return true;
+		} catch (ArithmeticException e) {
+			// the stock would be larger than an int holds, and nothing was written
+			return false;
+		} catch (BookstoreException e) {
+			this.mappedFile = null;
+			return false;
+		} finally {
+			this.fileGeneration.changed();
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The stock of the registered books is changed in place, and the
+	 * file is rebuilt once if there are new books.
+	 */
+	synchronized public boolean incrementStock(Map<Book, Integer> quantities) {
+		for (int quantity : quantities.values()) {
+			if (quantity < 0) {
+				return false;
+			}
+		}
+		try {
+			BinaryBookFile current = this.mapFile();
+			List<Book> books = new ArrayList<Book>(current.size() + quantities.size());
+			List<Integer> stock = new ArrayList<Integer>(current.size() + quantities.size());
+			current.readAll(books, stock);
+			boolean newBooks = false;
+			for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+				int record = current.find(quantity.getKey());
+				if (record >= 0) {
+					stock.set(record, Math.addExact(stock.get(record), quantity.getValue()));
+				} else {
+					books.add(quantity.getKey());
+					stock.add(quantity.getValue());
+					newBooks = true;
+				}
+			}
+			if (newBooks) {
+				BinaryBookFile.write(this.bookstoreDBFile, books, stock);
+				this.mappedFile = null;
+			} else {
+				for (int record = 0; record < current.size(); record++) {
+					current.setQuantity(record, stock.get(record));
+				}
+				current.force();
+			}
+			return true;
+		} catch (ArithmeticException e) {
+			// the new stock is computed before anything is written
+			return false;
+		} catch (BookstoreException e) {
+			this.mappedFile = null;
+			return false;
+		} finally {
+			this.fileGeneration.changed();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public int decrementStock(Book book, int quantity) {
+		if (quantity <= 0) {
+			return 0;
+		}
+		try {
+			BinaryBookFile current = this.mapFile();
+			int record = current.find(book);
+			if (record < 0) {
+				return 0;
+			}
+			int stock = current.quantityOf(record);
+			int removed = Math.min(stock, quantity);
+			if (removed > 0) {
+				current.setQuantity(record, stock - removed);
+				current.force();
+			}
+			return removed;
+		} catch (BookstoreException e) {
+			this.mappedFile = null;
+			return 0;
+		} finally {
+			this.fileGeneration.changed();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public PurchaseStatus[] checkout(Book... books) {
+		PurchaseStatus[] statuses = new PurchaseStatus[books.length];
+		try {
+			BinaryBookFile current = this.mapFile();
+			Map<Integer, Integer> demand = new LinkedHashMap<Integer, Integer>();
+			for (int i = 0; i < books.length; i++) {
+				int record = current.find(books[i]);
+				if (record < 0) {
+					statuses[i] = PurchaseStatus.DOES_NOT_EXIST;
+					continue;
+				}
+				Integer taken = demand.get(record);
+				int units = taken == null ? 0 : taken;
+				if (units < current.quantityOf(record)) {
+					demand.put(record, units + 1);
+					statuses[i] = PurchaseStatus.OK;
+				} else {
+					statuses[i] = PurchaseStatus.NOT_IN_STOCK;
+				}
+			}
+			if (!demand.isEmpty()) {
+				for (Map.Entry<Integer, Integer> units : demand.entrySet()) {
+					current.setQuantity(units.getKey(), current.quantityOf(units.getKey()) - units.getValue());
+				}
+				current.force();
+			}
+			return statuses;
+		} catch (BookstoreException e) {
+			this.mappedFile = null;
+			Arrays.fill(statuses, PurchaseStatus.NOT_IN_STOCK);
+			return statuses;
+		} finally {
+			this.fileGeneration.changed();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getStock(Book book) {
+		try {
+			BinaryBookFile current = this.mapFile();
+			int record = current.find(book);
+			return record < 0 ? -1 : current.quantityOf(record);
+		} catch (BookstoreException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * {@inheritDoc} A new generation is drawn after every change made by this
+	 * object and whenever the stamp of the file changes.
+	 */
+	public long getGeneration() {
+		return this.fileGeneration.get();
+	}
+
+	/**
+	 * Returns the mapped file. The file is mapped again only if it was replaced,
+	 * by this object or by someone else, since the changes made in place are
+	 * seen through the mapping.
+	 */
+	private BinaryBookFile mapFile() throws BookstoreException {
+		BinaryBookFile current = this.mappedFile;
+		if (current != null && this.mappedStamp.isSameFile(this.bookstoreDBFile)) {
+			return current;
+		}
+		synchronized (this) {
+			if (this.mappedFile == null || !this.mappedStamp.isSameFile(this.bookstoreDBFile)) {
+				FileStamp newStamp = FileStamp.of(this.bookstoreDBFile);
+				BinaryBookFile newFile = BinaryBookFile.open(this.bookstoreDBFile);
+				this.mappedBooks = new AtomicReferenceArray<Book>(newFile.size());
+				this.mappedFile = newFile;
+				this.mappedStamp = newStamp;
+			}
+			return this.mappedFile;
+		}
+	}
+
+	/**
+	 * Reads the records in stock straight from the mapping. The strings of a
+	 * record are decoded once per mapping, the first time it is read, and its
+	 * book is the one shared by the registry, which survives the new mappings.
+	 */
+	private List<Book> scan(BiPredicate<String, String> matcher) {
+		try {
+			BinaryBookFile current = this.mapFile();
+			AtomicReferenceArray<Book> books = this.mappedBooks;
+			if (books.length() != current.size()) {
+				// the file was mapped again between the two reads
+				return this.scan(matcher);
+			}
+			List<Book> found = new LinkedList<Book>();
+			for (int record = 0; record < current.size(); record++) {
+				if (current.quantityOf(record) > 0) {
+					Book book = books.get(record);
+					if (book == null) {
+						book = this.registry.canonical(current.bookOf(record));
+						books.set(record, book);
+					}
+					if (matcher.test(book.getTitle(), book.getAuthor())) {
+						found.add(book);
+					}
+				}
+			}
+			return found;
+		} catch (BookstoreException e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,415 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.Keywords;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.BookRegistry;
+
+/**
+ * This class implements the DAO pattern over an embedded SQL database, reached
+ * through JDBC by {@link JDBCDatabase}. A book is found by the unique index of
+ * its title, author name and price, and the keyword search is a lookup in the
+ * index of the keywords table, so neither reads the whole catalog. The title
+ * and author searches match any part of the text, which a B-tree index cannot
+ * seek, so the database scans the title or author index instead of the rows.
+ *
+ * A checkout is one transaction. The rows are changed in the order of their
+ * keys, so two checkouts never wait for each other in a cycle, and every change
+ * is a compare and set on the stock read before it, so no unit is sold twice.
+ *
+ * An XML database can be imported with {@link BookDatabaseImporter}.
+ *
+ * @author João Felipe
+ *
+ */
+public class BookDAOJDBC implements BookDAO {
+
+	private final static String SELECT_BOOKS = "SELECT title, author, price FROM books WHERE quantity > 0";
+	private final static String ORDER_BY_ID = " ORDER BY id";
+	private final static String SELECT_STOCK = "SELECT id, quantity FROM books WHERE title = ? AND author = ? AND price = ?";
+	private final static String ADD_STOCK = "UPDATE books SET quantity = quantity + ? WHERE title = ? AND author = ? AND price = ?";
+	private final static String SET_STOCK = "UPDATE books SET quantity = ? WHERE id = ? AND quantity = ?";
+	private final static String INSERT_BOOK = "INSERT INTO books (title, author, price, quantity) VALUES (?, ?, ?, ?)";
+	private final static String INSERT_KEYWORD = "INSERT INTO book_keywords (keyword, book_id) VALUES (?, ?)";
+	private final static Comparator<Book> BOOK_ORDER = Comparator.comparing(Book::getTitle)
+			.thenComparing(Book::getAuthor).thenComparingLong(book -> book.getPriceMoney().getMinorUnits());
+
+	private final JDBCDatabase database;
+	private final BookRegistry registry = new BookRegistry();
+
+	/**
+	 * Constructor of the DAO object over a given database.
+	 *
+	 * @param url The JDBC URL of the database.
+	 * @param user The user of the database.
+	 * @param password The password of the user.
+	 * @throws BookstoreException Thrown when the database cannot be opened.
+	 */
+	public BookDAOJDBC(String url, String user, String password) throws BookstoreException {
+		this(JDBCDatabase.open(url, user, password, 8));
+	}
+
+	/**
+	 * Constructor of the DAO object. It uses the database set by the system
+	 * properties, as described in {@link JDBCDatabase}.
+	 *
+	 * @throws BookstoreException Thrown when the database cannot be opened.
+	 */
+	public BookDAOJDBC() throws BookstoreException {
+		this(JDBCDatabase.configured());
+	}
+
+	BookDAOJDBC(JDBCDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> listAll() {
+		return this.query(SELECT_BOOKS + ORDER_BY_ID);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByTitle(String title) {
+		return this.query(SELECT_BOOKS + " AND title LIKE ? ESCAPE '!'" + ORDER_BY_ID, containing(title));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByAuthor(String authorName) {
+		return this.query(SELECT_BOOKS + " AND author LIKE ? ESCAPE '!'" + ORDER_BY_ID, containing(authorName));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByKeywords(Collection<String> keywords) {
+		Set<String> normalized = new LinkedHashSet<String>();
+		for (String keyword : keywords) {
+			normalized.addAll(Keywords.tokenize(keyword));
+		}
+		if (normalized.isEmpty()) {
+			return new LinkedList<Book>();
+		}
+		StringBuilder placeholders = new StringBuilder("?");
+		for (int i = 1; i < normalized.size(); i++) {
+			placeholders.append(", ?");
+		}
+		return this.query(SELECT_BOOKS + " AND id IN (SELECT book_id FROM book_keywords WHERE keyword IN ("
+				+ placeholders + "))" + ORDER_BY_ID, normalized.toArray(new String[normalized.size()]));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean insertBook(Book book) {
+		return this.incrementStock(book, 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean deleteBook(Book book) {
+		return this.decrementStock(book, 1) == 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean incrementStock(Book book, int quantity) {
+		if (quantity < 0) {
+			return false;
+		}
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			connection.setAutoCommit(false);
+			try {
+				addStock(connection, book, quantity);
+				connection.commit();
+			} catch (SQLException e) {
+				if (!JDBCDatabase.isConstraintViolation(e)) {
+					throw e;
+				}
+				// someone else registered the book meanwhile, so its row can be updated now
+				connection.rollback();
+				addStock(connection, book, quantity);
+				connection.commit();
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		} finally {
+			this.database.booksChanged();
+			this.release(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The books are written in a single transaction.
+	 */
+	public boolean incrementStock(Map<Book, Integer> quantities) {
+		for (int quantity : quantities.values()) {
+			if (quantity < 0) {
+				return false;
+			}
+		}
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			connection.setAutoCommit(false);
+			try {
+				for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+					addStock(connection, quantity.getKey(), quantity.getValue());
+				}
+				connection.commit();
+			} catch (SQLException e) {
+				if (!JDBCDatabase.isConstraintViolation(e)) {
+					throw e;
+				}
+				// someone else registered one of the books meanwhile, so the transaction is tried again
+				connection.rollback();
+				for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+					addStock(connection, quantity.getKey(), quantity.getValue());
+				}
+				connection.commit();
+			}
+			return true;
+		} catch (SQLException e) {
+			return false;
+		} finally {
+			this.database.booksChanged();
+			this.release(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int decrementStock(Book book, int quantity) {
+		if (quantity <= 0) {
+			return 0;
+		}
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			return Math.max(0, takeStock(connection, book, quantity));
+		} catch (SQLException e) {
+			return 0;
+		} finally {
+			this.database.booksChanged();
+			this.release(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PurchaseStatus[] checkout(Book... books) {
+		PurchaseStatus[] statuses = new PurchaseStatus[books.length];
+		// the rows are locked in the same order by every checkout, so two checkouts never wait for each other in a cycle
+		Map<Book, Integer> demand = new TreeMap<Book, Integer>(BOOK_ORDER);
+		for (Book book : books) {
+			demand.merge(book, 1, Integer::sum);
+		}
+
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			connection.setAutoCommit(false);
+			Map<Book, Integer> taken = new HashMap<Book, Integer>();
+			for (Map.Entry<Book, Integer> units : demand.entrySet()) {
+				taken.put(units.getKey(), takeStock(connection, units.getKey(), units.getValue()));
+			}
+			connection.commit();
+
+			for (int i = 0; i < books.length; i++) {
+				int units = taken.get(books[i]);
+				if (units < 0) {
+					statuses[i] = PurchaseStatus.DOES_NOT_EXIST;
+				} else if (units > 0) {
+					statuses[i] = PurchaseStatus.OK;
+					taken.put(books[i], units - 1);
+				} else {
+					statuses[i] = PurchaseStatus.NOT_IN_STOCK;
+				}
+			}
+		} catch (SQLException e) {
+			Arrays.fill(statuses, PurchaseStatus.NOT_IN_STOCK);
+		} finally {
+			this.database.booksChanged();
+			this.release(connection);
+		}
+		return statuses;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getStock(Book book) {
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			try (PreparedStatement select = prepare(connection, SELECT_STOCK, book)) {
+				try (ResultSet result = select.executeQuery()) {
+					return result.next() ? result.getInt(2) : -1;
+				}
+			}
+		} catch (SQLException e) {
+			// nothing is sold meanwhile, and the Inventory reads the stock again on the next purchase short of units
+			return 0;
+		} finally {
+			this.release(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} The changes made by other processes over the same database
+	 * are not noticed.
+	 */
+	public long getGeneration() {
+		return this.database.getGeneration();
+	}
+
+	/**
+	 * Adds units to the stock of a book, registering it if needed, within the
+	 * transaction of the connection, which is not committed. A stock larger than
+	 * the INT column holds is out of range for the database, so the update
+	 * fails and the transaction is rolled back.
+	 */
+	static void addStock(Connection connection, Book book, int quantity) throws SQLException {
+		try (PreparedStatement update = connection.prepareStatement(ADD_STOCK)) {
+			update.setInt(1, quantity);
+			update.setString(2, book.getTitle());
+			update.setString(3, book.getAuthor());
+			update.setString(4, book.getPriceMoney().toString());
+			if (update.executeUpdate() > 0) {
+				return;
+			}
+		}
+		long id;
+		try (PreparedStatement insert = connection.prepareStatement(INSERT_BOOK, Statement.RETURN_GENERATED_KEYS)) {
+			insert.setString(1, book.getTitle());
+			insert.setString(2, book.getAuthor());
+			insert.setString(3, book.getPriceMoney().toString());
+			insert.setInt(4, quantity);
+			insert.executeUpdate();
+			try (ResultSet keys = insert.getGeneratedKeys()) {
+				if (!keys.next()) {
+					throw new SQLException(INSERT_BOOK);
+				}
+				id = keys.getLong(1);
+			}
+		}
+		Set<String> keywords = new LinkedHashSet<String>(Keywords.tokenize(book.getTitle()));
+		keywords.addAll(Keywords.tokenize(book.getAuthor()));
+		try (PreparedStatement insert = connection.prepareStatement(INSERT_KEYWORD)) {
+			for (String keyword : keywords) {
+				insert.setString(1, keyword);
+				insert.setLong(2, id);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		}
+	}
+
+	/**
+	 * Takes up to the given number of units from the stock of a book. The new
+	 * stock is written only if the row still holds the stock read, otherwise it
+	 * is read again.
+	 * @return The number of units taken, or -1 if the book is not registered.
+	 */
+	private static int takeStock(Connection connection, Book book, int quantity) throws SQLException {
+		try (PreparedStatement select = prepare(connection, SELECT_STOCK, book);
+				PreparedStatement update = connection.prepareStatement(SET_STOCK)) {
+			while (true) {
+				long id;
+				int stock;
+				try (ResultSet result = select.executeQuery()) {
+					if (!result.next()) {
+						return -1;
+					}
+					id = result.getLong(1);
+					stock = result.getInt(2);
+				}
+				int taken = Math.min(stock, quantity);
+				if (taken <= 0) {
+					return 0;
+				}
+				update.setInt(1, stock - taken);
+				update.setLong(2, id);
+				update.setInt(3, stock);
+				if (update.executeUpdate() == 1) {
+					return taken;
+				}
+			}
+		}
+	}
+
+	private List<Book> query(String sql, String... parameters) {
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			try (PreparedStatement select = connection.prepareStatement(sql)) {
+				for (int i = 0; i < parameters.length; i++) {
+					select.setString(i + 1, parameters[i]);
+				}
+				List<Book> books = new LinkedList<Book>();
+				try (ResultSet result = select.executeQuery()) {
+					while (result.next()) {
+						books.add(this.registry.canonical(result.getString(1), result.getString(2), result.getString(3)));
+					}
+				}
+				return books;
+			}
+		} catch (SQLException e) {
+			return null;
+		} finally {
+			this.release(connection);
+		}
+	}
+
+	private void release(Connection connection) {
+		if (connection != null) {
+			this.database.release(connection);
+		}
+	}
+
+	private static PreparedStatement prepare(Connection connection, String sql, Book book) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		statement.setString(1, book.getTitle());
+		statement.setString(2, book.getAuthor());
+		statement.setString(3, book.getPriceMoney().toString());
+		return statement;
+	}
+
+	/**
+	 * Turns a text into a LIKE pattern matching any text that contains it.
+	 */
+	private static String containing(String text) {
+		return "%" + text.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+	}
+
+}
@@ -0,0 +1,142 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class implements the DAO pattern just in memory, over the same catalog
+ * the XML DAO keeps as its cache. Nothing is persisted, which makes it useful
+ * for tests and for comparing the cost of the storage engines.
+ * 
+ * @author João Felipe
+ *
+ */
+public class BookDAOMemory implements BookDAO {
+
+	private final BookCatalog catalog;
+
+	/**
+	 * Constructor of an empty DAO.
+	 * @param substringIndexed A boolean value indicating whether the substring searches use trigram indexes.
+	 */
+	public BookDAOMemory(boolean substringIndexed) {
+		this.catalog = new BookCatalog(substringIndexed);
+	}
+
+	/**
+	 * Constructor of an empty DAO, without the trigram indexes.
+	 */
+	public BookDAOMemory() {
+		this(false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> listAll() {
+		return this.catalog.listAll();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByTitle(String title) {
+		return this.catalog.searchByTitle(title);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByAuthor(String authorName) {
+		return this.catalog.searchByAuthor(authorName);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List<Book> searchByKeywords(Collection<String> keywords) {
+		return this.catalog.searchByKeywords(keywords);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean insertBook(Book book) {
+		return this.incrementStock(book, 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean deleteBook(Book book) {
+		return this.decrementStock(book, 1) == 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public boolean incrementStock(Book book, int quantity) {
+		if (quantity < 0) {
+			return false;
+		}
+		return this.catalog.add(book, quantity);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public boolean incrementStock(Map<Book, Integer> quantities) {
+		for (int quantity : quantities.values()) {
+			if (quantity < 0) {
+				return false;
+			}
+		}
+		if (!this.catalog.canAdd(quantities)) {
+			return false;
+		}
+		for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+			this.catalog.add(quantity.getKey(), quantity.getValue());
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public int decrementStock(Book book, int quantity) {
+		if (quantity <= 0) {
+			return 0;
+		}
+		return this.catalog.remove(book, quantity);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	synchronized public PurchaseStatus[] checkout(Book... books) {
+		PurchaseStatus[] statuses = new PurchaseStatus[books.length];
+		Map<Book, Integer> demand = this.catalog.checkStock(books, statuses);
+		this.catalog.removeAll(demand);
+		return statuses;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getStock(Book book) {
+		return this.catalog.stockOf(book);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getGeneration() {
+		return this.catalog.getGeneration();
+	}
+
+}
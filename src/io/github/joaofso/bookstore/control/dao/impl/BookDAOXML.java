@@ -1,21 +1,39 @@
 package io.github.joaofso.bookstore.control.dao.impl;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
-import org.jdom2.JDOMException;
-import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.XMLOutputter;
 
 import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.Keywords;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
 import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.metrics.Counter;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.metrics.OperationMetrics;
 import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.BookRegistry;
+import io.github.joaofso.bookstore.model.Money;
 
 /**
  * This class implements the DAO pattern, in order to encapsulate the logic of
@@ -24,28 +42,101 @@ import io.github.joaofso.bookstore.model.Book;
  * exercise is a small system; however, to use a database or even a tableless
  * system, we just need to plug the correspondent DAO implementation.
  * 
+ * Each book is stored once, with the number of units in stock. In the
+ * journaled mode, the changes in the stock are appended to a journal file
+ * next to the XML file instead of rewriting it. The journal is folded into the
+ * XML file by a background compaction once it grows past a threshold, and it is
+ * replayed over the XML file whenever the catalog is loaded.
+ * 
+ * The changes in the stock lock just the titles involved, through striped
+ * locks, and only the writes to the files take turns. In the journaled mode a
+ * write is a short append, so baskets with different titles wait just for each
+ * other's append. In the default mode every change rewrites the whole XML
+ * file, so the checkouts take turns for the whole rewrite: the parallel
+ * checkout needs the journal.
+ * 
+ * Besides the operations, the {@link Metrics} count the parses and the
+ * rewrites of the XML file and the bytes they read and write.
+ * 
  * @author João Felipe
  *
  */
 public class BookDAOXML implements BookDAO {
 
+	/**
+	 * System property that turns on the journaled mode for the default book database.
+	 */
+	public final static String JOURNAL_PROPERTY = "bookstore.books.journal";
+
+	/**
+	 * System property that turns on the trigram indexes for the default book database.
+	 */
+	public final static String SUBSTRING_INDEX_PROPERTY = "bookstore.books.substringIndex";
+
 	private final static String DEFAULT_BOOK_FILE = "./BookDatabase.xml";
 	private final static String IT_IS_NOT_POSSIBLE_CREATE_FILE = "It is not possible to create the Book storage file in: ";
 	private final static String INVALID_XML_FILE = "The XML file with the book database is invalid";
+	private final static int COMPACTION_THRESHOLD = 1000;
+	private final static int LOCK_STRIPES = 64;
+	private final static OperationMetrics LIST_ALL = Metrics.operation("BookDAOXML", "listAll");
+	private final static OperationMetrics SEARCH_BY_TITLE = Metrics.operation("BookDAOXML", "searchByTitle");
+	private final static OperationMetrics SEARCH_BY_AUTHOR = Metrics.operation("BookDAOXML", "searchByAuthor");
+	private final static OperationMetrics SEARCH_BY_KEYWORDS = Metrics.operation("BookDAOXML", "searchByKeywords");
+	private final static OperationMetrics INCREMENT_STOCK = Metrics.operation("BookDAOXML", "incrementStock");
+	private final static OperationMetrics INCREMENT_STOCK_ALL = Metrics.operation("BookDAOXML", "incrementStockAll");
+	private final static OperationMetrics DECREMENT_STOCK = Metrics.operation("BookDAOXML", "decrementStock");
+	private final static OperationMetrics CHECKOUT = Metrics.operation("BookDAOXML", "checkout");
+	private final static OperationMetrics GET_STOCK = Metrics.operation("BookDAOXML", "getStock");
+	private final static OperationMetrics COMPACT = Metrics.operation("BookDAOXML", "compact");
+	private final static Counter PARSES = Metrics.counter("BookDAOXML", "parses");
+	private final static Counter PARSED_BYTES = Metrics.counter("BookDAOXML", "parsedBytes");
+	private final static Counter REWRITES = Metrics.counter("BookDAOXML", "rewrites");
+	private final static Counter REWRITTEN_BYTES = Metrics.counter("BookDAOXML", "rewrittenBytes");
 
 	private File bookstoreDBFile;
+	private final boolean cacheEnabled;
+	private final boolean substringIndexed;
+	private final BookJournal journal;
+	private final Object compactionLock = new Object();
+	private final ThreadLocal<long[]> threadParses = ThreadLocal.withInitial(() -> new long[1]);
+	private final Object saveLock = new Object();
+	private final ReadWriteLock catalogLock = new ReentrantReadWriteLock();
+	private final StripedLocks stripes = new StripedLocks(LOCK_STRIPES);
+	private final BookRegistry registry = new BookRegistry();
+
+	private final FileGeneration fileGeneration;
+
+	private volatile BookCatalog catalog;
+	private volatile FileStamp catalogStamp;
+	private volatile FileStamp journalStamp;
+	private long lastSequence;
+
+	private ExecutorService compactor;
+	private boolean compactionScheduled;
 
 	/**
 	 * Constructor of the DAO object. It receives a filepath to be the book
-	 * database.
+	 * database, whether the parsed books should be kept in memory between
+	 * operations, whether the changes are journaled and whether the substring
+	 * searches use trigram indexes. When the cache is enabled, the file is read
+	 * again only if it was changed by someone else. The journaled mode always
+	 * keeps the catalog in memory, and the indexes are useful only with it.
 	 * 
 	 * @param filepath The file path to the xml file that contain the books of the
 	 *        bookstore.
+	 * @param cacheEnabled A boolean value indicating whether the parsed catalog is kept in memory.
+	 * @param journaled A boolean value indicating whether changes are appended to a journal.
+	 * @param substringIndexed A boolean value indicating whether the substring searches use trigram indexes.
 	 * @throws BookstoreException Thrown when the system cannot access the file path due to, for
 	 *         instance lack of permission.
 	 */
-	protected BookDAOXML(String filepath) throws BookstoreException {
+	protected BookDAOXML(String filepath, boolean cacheEnabled, boolean journaled, boolean substringIndexed)
+			throws BookstoreException {
+		this.cacheEnabled = cacheEnabled || journaled;
+		this.substringIndexed = substringIndexed;
 		bookstoreDBFile = new File(filepath);
+		this.journal = journaled ? new BookJournal(bookstoreDBFile) : null;
+		this.fileGeneration = new FileGeneration(bookstoreDBFile);
 		try {
 			if (!bookstoreDBFile.exists()) {
 				bookstoreDBFile.createNewFile();
@@ -57,146 +148,581 @@ public class BookDAOXML implements BookDAO {
 		}
 	}
 
+	/**
+	 * Constructor of the DAO object. It receives a filepath to be the book
+	 * database, whether the parsed books should be kept in memory between
+	 * operations and whether the changes are journaled.
+	 * 
+	 * @param filepath The file path to the xml file that contain the books of the
+	 *        bookstore.
+	 * @param cacheEnabled A boolean value indicating whether the parsed catalog is kept in memory.
+	 * @param journaled A boolean value indicating whether changes are appended to a journal.
+	 * @throws BookstoreException Thrown when the system cannot access the file path due to, for
+	 *         instance lack of permission.
+	 */
+	protected BookDAOXML(String filepath, boolean cacheEnabled, boolean journaled) throws BookstoreException {
+		this(filepath, cacheEnabled, journaled, false);
+	}
+
+	/**
+	 * Constructor of the DAO object. It receives a filepath to be the book
+	 * database and whether the parsed books should be kept in memory between
+	 * operations.
+	 * 
+	 * @param filepath The file path to the xml file that contain the books of the
+	 *        bookstore.
+	 * @param cacheEnabled A boolean value indicating whether the parsed catalog is kept in memory.
+	 * @throws BookstoreException Thrown when the system cannot access the file path due to, for
+	 *         instance lack of permission.
+	 */
+	protected BookDAOXML(String filepath, boolean cacheEnabled) throws BookstoreException {
+		this(filepath, cacheEnabled, false);
+	}
+
+	/**
+	 * Constructor of the DAO object. It receives a filepath to be the book
+	 * database.
+	 * 
+	 * @param filepath The file path to the xml file that contain the books of the
+	 *        bookstore.
+	 * @throws BookstoreException Thrown when the system cannot access the file path due to, for
+	 *         instance lack of permission.
+	 */
+	protected BookDAOXML(String filepath) throws BookstoreException {
+		this(filepath, true);
+	}
+
 	/**
 	 * Constructor of the DAO object. It uses a default file path to manage the
-	 * books data base.
+	 * books data base. The journaled mode is used if the system property
+	 * bookstore.books.journal is true, and the trigram indexes if the system
+	 * property bookstore.books.substringIndex is true.
 	 * 
 	 * @throws BookstoreException
 	 *             Thrown when the system cannot access the file path due to, for
 	 *             instance lack of permission.
 	 */
 	public BookDAOXML() throws BookstoreException {
-		this(DEFAULT_BOOK_FILE);
+		this(DEFAULT_BOOK_FILE, true, Boolean.getBoolean(JOURNAL_PROPERTY),
+				Boolean.getBoolean(SUBSTRING_INDEX_PROPERTY));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public List<Book> listAll() {
-		List<Book> allBooks = new LinkedList<Book>();
+		long start = LIST_ALL.start();
 		try {
-			Document dbDoc = this.parseFile();
-			List<Element> books = dbDoc.getRootElement().getChildren("book");
-			for (Element book : books) {
-				allBooks.add(this.getBook(book));
+			try {
+				if (!this.cacheEnabled) {
+					return this.scan((title, author) -> true);
+				}
+				return this.loadCatalog().listAll();
+			} catch (BookstoreException e) {
+				return null;
 			}
-		} catch (BookstoreException e) {
-			return null;
+		} finally {
+			LIST_ALL.end(start);
 		}
-		return allBooks;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public List<Book> searchByTitle(String title) {
-		List<Book> booksByTitle = new LinkedList<Book>();
+		long start = SEARCH_BY_TITLE.start();
 		try {
-			Document dbDoc = this.parseFile();
-			List<Element> books = dbDoc.getRootElement().getChildren("book");
-			for (Element book : books) {
-				if (book.getChildText("title").contains(title)) {
-					booksByTitle.add(this.getBook(book));
+			try {
+				if (!this.cacheEnabled) {
+					return this.scan((bookTitle, author) -> bookTitle.contains(title));
 				}
+				return this.loadCatalog().searchByTitle(title);
+			} catch (BookstoreException e) {
+				return null;
 			}
-		} catch (BookstoreException e) {
-			return null;
+		} finally {
+			SEARCH_BY_TITLE.end(start);
 		}
-		return booksByTitle;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public List<Book> searchByAuthor(String authorName) {
-		List<Book> booksByAuthor = new LinkedList<Book>();
+		long start = SEARCH_BY_AUTHOR.start();
 		try {
-			Document dbDoc = this.parseFile();
-			List<Element> books = dbDoc.getRootElement().getChildren("book");
-			for (Element book : books) {
-				if (book.getChildText("author").contains(authorName)) {
-					booksByAuthor.add(this.getBook(book));
+			try {
+				if (!this.cacheEnabled) {
+					return this.scan((title, author) -> author.contains(authorName));
 				}
+				return this.loadCatalog().searchByAuthor(authorName);
+			} catch (BookstoreException e) {
+				return null;
 			}
-		} catch (BookstoreException e) {
-			return null;
+		} finally {
+			SEARCH_BY_AUTHOR.end(start);
 		}
-		return booksByAuthor;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	synchronized public boolean insertBook(Book book) {
+	public List<Book> searchByKeywords(Collection<String> keywords) {
+		long start = SEARCH_BY_KEYWORDS.start();
 		try {
-			Document dbDoc = this.parseFile();
-			Element newBook = this.getXML(book);
-			dbDoc.getRootElement().addContent(newBook);
-
-			this.saveFile(dbDoc);
-			return true;
-		} catch (BookstoreException e) {
-			return false;
+			try {
+				if (!this.cacheEnabled) {
+					Set<String> normalized = new HashSet<String>();
+					for (String keyword : keywords) {
+						normalized.addAll(Keywords.tokenize(keyword));
+					}
+					return this.scan((title, author) -> !Collections.disjoint(Keywords.tokenize(title), normalized)
+							|| !Collections.disjoint(Keywords.tokenize(author), normalized));
+				}
+				return this.loadCatalog().searchByKeywords(keywords);
+			} catch (BookstoreException e) {
+				return null;
+			}
+		} finally {
+			SEARCH_BY_KEYWORDS.end(start);
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean insertBook(Book book) {
+		return this.incrementStock(book, 1);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public boolean deleteBook(Book book) {
+		return this.decrementStock(book, 1) == 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean incrementStock(Book book, int quantity) {
+		long start = INCREMENT_STOCK.start();
+		try {
+			if (quantity < 0) {
+				return false;
+			}
+			int[] stripes = this.stripes.stripesOf(book);
+			try {
+				BookCatalog current = this.lockCatalog(stripes);
+				try {
+					// the stripes keep the stock of the book, so it still fits after the check
+					Map<Book, Integer> quantities = Collections.singletonMap(book, quantity);
+					if (!current.canAdd(quantities)) {
+						return false;
+					}
+					if (this.journal != null) {
+						this.appendToJournal(BookJournal.INSERT, quantities);
+						current.add(book, quantity);
+					} else {
+						current.add(book, quantity);
+						this.saveCatalog(current);
+					}
+					return true;
+				} finally {
+					this.unlockCatalog(stripes);
+				}
+			} catch (BookstoreException e) {
+				this.catalog = null;
+				return false;
+			}
+		} finally {
+			INCREMENT_STOCK.end(start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} In the journaled mode, the units are appended to the journal
+	 * at once; otherwise the XML file is written once.
+	 */
+	public boolean incrementStock(Map<Book, Integer> quantities) {
+		long start = INCREMENT_STOCK_ALL.start();
 		try {
-			Document dbDoc = this.parseFile();
-			List<Element> books = dbDoc.getRootElement().getChildren("book");
-			for (Element storedBook : books) {
-				if (storedBook.getChildText("author").equals(book.getAuthor())
-						&& storedBook.getChildText("title").equals(book.getTitle())
-						&& storedBook.getChildText("price").equals(book.getPrice().toString())) {
-
-					storedBook.getParent().removeContent(storedBook);
-					this.saveFile(dbDoc);
+			for (int quantity : quantities.values()) {
+				if (quantity < 0) {
+					return false;
+				}
+			}
+			if (quantities.isEmpty()) {
+				return true;
+			}
+			int[] stripes = this.stripes.stripesOf(quantities.keySet().toArray(new Book[quantities.size()]));
+			try {
+				BookCatalog current = this.lockCatalog(stripes);
+				try {
+					if (!current.canAdd(quantities)) {
+						return false;
+					}
+					if (this.journal != null) {
+						this.appendToJournal(BookJournal.INSERT, quantities);
+					}
+					for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+						current.add(quantity.getKey(), quantity.getValue());
+					}
+					if (this.journal == null) {
+						this.saveCatalog(current);
+					}
 					return true;
+				} finally {
+					this.unlockCatalog(stripes);
 				}
+			} catch (BookstoreException e) {
+				this.catalog = null;
+				return false;
 			}
+		} finally {
+			INCREMENT_STOCK_ALL.end(start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int decrementStock(Book book, int quantity) {
+		long start = DECREMENT_STOCK.start();
+		try {
+			if (quantity <= 0) {
+				return 0;
+			}
+			int[] stripes = this.stripes.stripesOf(book);
+			try {
+				BookCatalog current = this.lockCatalog(stripes);
+				try {
+					int removed = Math.max(Math.min(current.stockOf(book), quantity), 0);
+					if (removed > 0) {
+						if (this.journal != null) {
+							this.appendToJournal(BookJournal.DELETE, Collections.singletonMap(book, removed));
+							current.remove(book, removed);
+						} else {
+							current.remove(book, removed);
+							this.saveCatalog(current);
+						}
+					}
+					return removed;
+				} finally {
+					this.unlockCatalog(stripes);
+				}
+			} catch (BookstoreException e) {
+				this.catalog = null;
+				return 0;
+			}
+		} finally {
+			DECREMENT_STOCK.end(start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PurchaseStatus[] checkout(Book... books) {
+		long start = CHECKOUT.start();
+		try {
+			PurchaseStatus[] statuses = new PurchaseStatus[books.length];
+			int[] stripes = this.stripes.stripesOf(books);
+			try {
+				BookCatalog current = this.lockCatalog(stripes);
+				try {
+					Map<Book, Integer> demand = current.checkStock(books, statuses);
+					if (demand.isEmpty()) {
+						return statuses;
+					}
+					if (this.journal != null) {
+						this.appendToJournal(BookJournal.DELETE, demand);
+						current.removeAll(demand);
+					} else {
+						current.removeAll(demand);
+						this.saveCatalog(current);
+					}
+					return statuses;
+				} finally {
+					this.unlockCatalog(stripes);
+				}
+			} catch (BookstoreException e) {
+				this.catalog = null;
+				Arrays.fill(statuses, PurchaseStatus.NOT_IN_STOCK);
+				return statuses;
+			}
+		} finally {
+			CHECKOUT.end(start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getStock(Book book) {
+		long start = GET_STOCK.start();
+		try {
+			try {
+				if (!this.cacheEnabled) {
+					int[] stock = { -1 };
+					long price = book.getPriceMoney().getMinorUnits();
+					this.countParse();
+					BookXMLReader.read(this.bookstoreDBFile, (title, author, bookPrice, quantity) -> {
+						if (title.equals(book.getTitle()) && author.equals(book.getAuthor())
+								&& Money.parseMinorUnits(bookPrice) == price) {
+							stock[0] = Math.max(stock[0], 0) + quantity;
+						}
+					});
+					return stock[0];
+				}
+				return this.loadCatalog().stockOf(book);
+			} catch (BookstoreException e) {
+				return 0;
+			}
+		} finally {
+			GET_STOCK.end(start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} With the cache, it is the generation of the catalog, which is
+	 * read again whenever the files change. Without it, a new generation is
+	 * drawn whenever the XML file changes.
+	 */
+	public long getGeneration() {
+		if (!this.cacheEnabled) {
+			return this.fileGeneration.get();
+		}
+		try {
+			return this.loadCatalog().getGeneration();
 		} catch (BookstoreException e) {
+			return BookCatalog.newGeneration();
 		}
-		return false;
 	}
 
-	private Document parseFile() throws BookstoreException {
-		SAXBuilder builder = new SAXBuilder();
-		Document doc = null;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getThreadParses() {
+		return this.threadParses.get()[0];
+	}
+
+	/**
+	 * Folds the journal into the XML file right away. The changes appended while
+	 * the XML file is written are kept in the journal. Nothing is done if the DAO
+	 * is not in the journaled mode.
+	 * 
+	 * @throws BookstoreException Thrown if the XML file or the journal cannot be written.
+	 */
+	public void compact() throws BookstoreException {
+		long start = COMPACT.start();
 		try {
-			doc = builder.build(this.bookstoreDBFile);
-		} catch (JDOMException | IOException e) {
-			throw new BookstoreException(INVALID_XML_FILE);
+			if (this.journal == null) {
+				return;
+			}
+			synchronized (this.compactionLock) {
+				List<BookCatalog.Entry> snapshot;
+				long sequence;
+				this.catalogLock.writeLock().lock();
+				try {
+					this.compactionScheduled = false;
+					snapshot = this.loadCatalog().snapshot();
+					sequence = this.lastSequence;
+				} finally {
+					this.catalogLock.writeLock().unlock();
+				}
+
+				// the slow part runs without blocking the writers
+				this.saveFile(BookCatalog.toDocument(snapshot, sequence));
+
+				this.catalogLock.writeLock().lock();
+				try {
+					this.catalogStamp = FileStamp.of(this.bookstoreDBFile);
+					this.journal.truncate(sequence);
+					this.journalStamp = FileStamp.of(this.journal.getFile());
+				} finally {
+					this.catalogLock.writeLock().unlock();
+				}
+			}
+		} finally {
+			COMPACT.end(start);
 		}
-		return doc;
 	}
 
-	synchronized private void saveFile(Document dbDoc) throws BookstoreException {
+	/**
+	 * Returns the current catalog. With the cache enabled, the file is parsed
+	 * only if it was never read or if it changed since the last time.
+	 */
+	private BookCatalog loadCatalog() throws BookstoreException {
+		if (!this.cacheEnabled) {
+			this.countParse();
+			return BookCatalog.fromFile(this.bookstoreDBFile, false, this.registry);
+		}
+		BookCatalog current = this.catalog;
+		if (current != null && this.isCatalogFresh()) {
+			return current;
+		}
+		this.catalogLock.writeLock().lock();
 		try {
-			XMLOutputter outputter = new XMLOutputter();
-			FileWriter writer = new FileWriter(this.bookstoreDBFile);
-			outputter.output(dbDoc, writer);
-			writer.close();
-		} catch (IOException e) {
-			throw new BookstoreException(INVALID_XML_FILE);
+			if (this.catalog == null || !this.isCatalogFresh()) {
+				// the stamps are taken before parsing, so a change during the parse is seen next time
+				FileStamp newStamp = FileStamp.of(this.bookstoreDBFile);
+				FileStamp newJournalStamp = this.journal == null ? null : FileStamp.of(this.journal.getFile());
+				this.countParse();
+				BookCatalog newCatalog = BookCatalog.fromFile(this.bookstoreDBFile, this.substringIndexed,
+						this.registry);
+				if (this.journal != null) {
+					this.lastSequence = this.journal.replay(newCatalog, newCatalog.getSequence());
+				}
+				this.catalog = newCatalog;
+				this.catalogStamp = newStamp;
+				this.journalStamp = newJournalStamp;
+			}
+			return this.catalog;
+		} finally {
+			this.catalogLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the current catalog, locked for changing the stock of the books of
+	 * the stripes. The changes of other stripes go on in parallel, while the
+	 * reload of the catalog and the compaction wait for every change to finish.
+	 * Without the cache, every operation works on its own parsed catalog, so the
+	 * changes take turns.
+	 */
+	private BookCatalog lockCatalog(int[] stripes) throws BookstoreException {
+		if (!this.cacheEnabled) {
+			this.catalogLock.writeLock().lock();
+			try {
+				return this.loadCatalog();
+			} catch (BookstoreException e) {
+				this.catalogLock.writeLock().unlock();
+				throw e;
+			}
+		}
+		while (true) {
+			// the catalog is loaded before locking, since the read lock cannot be upgraded to reload it
+			BookCatalog current = this.loadCatalog();
+			this.catalogLock.readLock().lock();
+			if (current == this.catalog) {
+				this.stripes.lock(stripes);
+				return current;
+			}
+			this.catalogLock.readLock().unlock();
 		}
+	}
 
+	private void unlockCatalog(int[] stripes) {
+		if (!this.cacheEnabled) {
+			this.catalogLock.writeLock().unlock();
+			return;
+		}
+		this.stripes.unlock(stripes);
+		this.catalogLock.readLock().unlock();
 	}
 
-	private Book getBook(Element element) {
-		return new Book(element.getChildText("title"), element.getChildText("author"),
-				new BigDecimal(element.getChildText("price")));
+	private boolean isCatalogFresh() {
+		return this.catalogStamp.matches(this.bookstoreDBFile)
+				&& (this.journal == null || this.journalStamp.matches(this.journal.getFile()));
 	}
 
-	private Element getXML(Book book) {
-		Element bookTag = new Element("book");
-		bookTag.addContent(new Element("title").setText(book.getTitle()));
-		bookTag.addContent(new Element("author").setText(book.getAuthor()));
-		bookTag.addContent(new Element("price").setText(book.getPrice().toString()));
+	/**
+	 * The document is built inside the lock, so the last writer always saves the
+	 * changes of the others too.
+	 */
+	private void saveCatalog(BookCatalog newCatalog) throws BookstoreException {
+		synchronized (this.saveLock) {
+			this.saveFile(newCatalog.toDocument(0));
+			if (this.cacheEnabled) {
+				this.catalogStamp = FileStamp.of(this.bookstoreDBFile);
+			} else {
+				this.fileGeneration.changed();
+			}
+		}
+	}
+
+	private void appendToJournal(char operation, Map<Book, Integer> quantities) throws BookstoreException {
+		synchronized (this.journal) {
+			this.journal.append(this.lastSequence + 1, operation, quantities);
+			this.lastSequence += quantities.size();
+			this.journalStamp = FileStamp.of(this.journal.getFile());
 
-		return bookTag;
+			if (this.journal.getRecords() >= COMPACTION_THRESHOLD && !this.compactionScheduled) {
+				this.compactionScheduled = true;
+				this.compactor().execute(() -> {
+					try {
+						this.compact();
+					} catch (BookstoreException e) {
+						// the records stay in the journal, so the next compaction folds them
+					}
+				});
+			}
+		}
+	}
+
+	private ExecutorService compactor() {
+		if (this.compactor == null) {
+			this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "BookDAOXML-compaction");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return this.compactor;
+	}
+
+	/**
+	 * Streams the book database file, creating a Book only for the elements in
+	 * stock that match, so the memory used grows with the result instead of the
+	 * file. The books of the files written before the stock count may be
+	 * repeated, so they are kept once.
+	 */
+	private List<Book> scan(BiPredicate<String, String> matcher) throws BookstoreException {
+		List<Book> books = new LinkedList<Book>();
+		Set<String> found = new HashSet<String>();
+		this.countParse();
+		BookXMLReader.read(this.bookstoreDBFile, (title, author, price, quantity) -> {
+			if (quantity > 0 && matcher.test(title, author) && found.add(title + '\u0000' + author + '\u0000' + price)) {
+				books.add(this.registry.canonical(title, author, price));
+			}
+		});
+		return books;
+	}
+
+	private void countParse() {
+		PARSES.increment();
+		this.threadParses.get()[0]++;
+		PARSED_BYTES.add(this.bookstoreDBFile.length());
+	}
+
+	/**
+	 * Writes the document to a temporary file and moves it over the database
+	 * file, so a reader never sees a file written halfway.
+	 */
+	private void saveFile(Document dbDoc) throws BookstoreException {
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile(this.bookstoreDBFile.getName(), ".tmp",
+					this.bookstoreDBFile.getAbsoluteFile().getParentFile());
+			XMLOutputter outputter = new XMLOutputter();
+			OutputStream output = new FileOutputStream(tempFile);
+			try {
+				outputter.output(dbDoc, output);
+			} finally {
+				output.close();
+			}
+			REWRITES.increment();
+			REWRITTEN_BYTES.add(tempFile.length());
+			Files.move(tempFile.toPath(), this.bookstoreDBFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+			throw new BookstoreException(INVALID_XML_FILE);
+		}
 	}
 
 }
@@ -0,0 +1,60 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class converts an XML book database into the binary format read by
+ * {@link BookDAOBinary}. The journal next to the XML file, if any, is replayed
+ * first, so every change is carried over. The books keep their order, and the
+ * books without stock stay registered.
+ *
+ * Usage: BookDatabaseConverter [xmlFile [binaryFile]]
+ *
+ * @author João Felipe
+ *
+ */
+public class BookDatabaseConverter {
+
+	private final static String DEFAULT_XML_FILE = "./BookDatabase.xml";
+	private final static String DEFAULT_BINARY_FILE = "./BookDatabase.bin";
+
+	public static void main(String[] args) {
+		File xmlFile = new File(args.length > 0 ? args[0] : DEFAULT_XML_FILE);
+		File binaryFile = new File(args.length > 1 ? args[1] : DEFAULT_BINARY_FILE);
+		try {
+			int books = convert(xmlFile, binaryFile);
+			System.out.println(books + " books converted from " + xmlFile.getPath() + " to " + binaryFile.getPath());
+		} catch (BookstoreException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Converts an XML book database into a binary one, replacing the binary file
+	 * if it exists.
+	 * @param xmlFile The XML file of the book database.
+	 * @param binaryFile The binary file to be written.
+	 * @return The number of books converted.
+	 * @throws BookstoreException Thrown if the XML file cannot be read or the binary file cannot be written.
+	 */
+	public static int convert(File xmlFile, File binaryFile) throws BookstoreException {
+		BookCatalog catalog = BookCatalog.fromFile(xmlFile, false);
+		new BookJournal(xmlFile).replay(catalog, catalog.getSequence());
+
+		List<BookCatalog.Entry> entries = catalog.snapshot();
+		List<Book> books = new ArrayList<Book>(entries.size());
+		List<Integer> quantities = new ArrayList<Integer>(entries.size());
+		for (BookCatalog.Entry entry : entries) {
+			books.add(entry.getBook());
+			quantities.add(entry.getQuantity());
+		}
+		BinaryBookFile.write(binaryFile, books, quantities);
+		return books.size();
+	}
+}
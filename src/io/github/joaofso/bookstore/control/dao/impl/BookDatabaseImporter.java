@@ -0,0 +1,123 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class imports the XML databases of books and users into the SQL
+ * database used by {@link BookDAOJDBC} and {@link UserDAOJDBC}, which is set by
+ * the system properties described in {@link JDBCDatabase}. The journal next to
+ * the XML book file, if any, is replayed first. The stock of a book already in
+ * the SQL database is added to, and a user already there is kept.
+ *
+ * Usage: BookDatabaseImporter [bookXmlFile [userXmlFile]]
+ *
+ * @author João Felipe
+ *
+ */
+public class BookDatabaseImporter {
+
+	private final static String DEFAULT_BOOK_FILE = "./BookDatabase.xml";
+	private final static String DEFAULT_USER_FILE = "./UserDatabase.xml";
+	private final static String IT_IS_NOT_POSSIBLE_IMPORT = "It is not possible to import into the database: ";
+	private final static int BATCH_SIZE = 10000;
+
+	private final static String SELECT_USER = "SELECT username FROM users WHERE username = ?";
+	private final static String INSERT_USER = "INSERT INTO users (username, password, admin) VALUES (?, ?, ?)";
+
+	public static void main(String[] args) {
+		File bookFile = new File(args.length > 0 ? args[0] : DEFAULT_BOOK_FILE);
+		File userFile = new File(args.length > 1 ? args[1] : DEFAULT_USER_FILE);
+		try {
+			JDBCDatabase database = JDBCDatabase.configured();
+			int books = importBooks(bookFile, database);
+			System.out.println(books + " books imported from " + bookFile.getPath());
+			if (userFile.exists()) {
+				int users = importUsers(userFile, database);
+				System.out.println(users + " users imported from " + userFile.getPath());
+			}
+		} catch (BookstoreException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Imports an XML book database. The books are written in transactions of
+	 * ten thousand books.
+	 * @param xmlFile The XML file of the book database.
+	 * @param database The SQL database.
+	 * @return The number of books imported.
+	 * @throws BookstoreException Thrown if the XML file cannot be read or the books cannot be written.
+	 */
+	static int importBooks(File xmlFile, JDBCDatabase database) throws BookstoreException {
+		BookCatalog catalog = BookCatalog.fromFile(xmlFile, false);
+		new BookJournal(xmlFile).replay(catalog, catalog.getSequence());
+
+		Connection connection = null;
+		int books = 0;
+		try {
+			connection = database.acquire();
+			connection.setAutoCommit(false);
+			for (BookCatalog.Entry entry : catalog.snapshot()) {
+				BookDAOJDBC.addStock(connection, entry.getBook(), entry.getQuantity());
+				if (++books % BATCH_SIZE == 0) {
+					connection.commit();
+				}
+			}
+			connection.commit();
+			return books;
+		} catch (SQLException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_IMPORT + e.getMessage());
+		} finally {
+			if (connection != null) {
+				database.release(connection);
+			}
+			database.booksChanged();
+		}
+	}
+
+	/**
+	 * Imports an XML user database.
+	 * @param xmlFile The XML file of the user database.
+	 * @param database The SQL database.
+	 * @return The number of users imported.
+	 * @throws BookstoreException Thrown if the XML file cannot be read or the users cannot be written.
+	 */
+	static int importUsers(File xmlFile, JDBCDatabase database) throws BookstoreException {
+		Connection connection = null;
+		int users = 0;
+		try {
+			connection = database.acquire();
+			connection.setAutoCommit(false);
+			try (PreparedStatement select = connection.prepareStatement(SELECT_USER)) {
+				for (User user : new UserDAOXML(xmlFile.getPath()).listAll()) {
+					select.setString(1, user.getUsername());
+					try (ResultSet result = select.executeQuery()) {
+						if (result.next()) {
+							continue;
+						}
+					}
+					try (PreparedStatement insert = UserDAOJDBC.prepare(connection, INSERT_USER, user)) {
+						insert.executeUpdate();
+					}
+					users++;
+				}
+			}
+			connection.commit();
+			return users;
+		} catch (SQLException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_IMPORT + e.getMessage());
+		} finally {
+			if (connection != null) {
+				database.release(connection);
+			}
+		}
+	}
+}
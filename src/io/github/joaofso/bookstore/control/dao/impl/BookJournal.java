@@ -0,0 +1,334 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
+
+/**
+ * This class implements the write-ahead journal of the book database. Each
+ * change in the stock of a book is appended as one line to the journal file,
+ * instead of rewriting the whole XML file. Every record carries a sequence
+ * number, and the XML snapshot stores the sequence number of the last record
+ * folded into it, so replaying the journal over the snapshot is always safe,
+ * even if the system stopped in the middle of a compaction.
+ *
+ * A record has the format: sequence TAB operation TAB title TAB author TAB
+ * price TAB quantity, where the operation is + for units added to the stock
+ * and - for units removed from it. Records without the quantity, written
+ * before the stock count, stand for a single unit.
+ *
+ * A record is forced to the disk before the append returns, so an
+ * acknowledged change survives a crash of the system or of the machine. The
+ * compaction forces the new journal before it replaces the old one, and then
+ * forces the directory, so the rename is not lost either.
+ *
+ * @author João Felipe
+ *
+ */
+final class BookJournal {
+
+	static final char INSERT = '+';
+	static final char DELETE = '-';
+
+	private static final String JOURNAL_EXTENSION = ".journal";
+	private static final String INVALID_JOURNAL_FILE = "The journal of the book database is invalid: ";
+	private static final String IT_IS_NOT_POSSIBLE_WRITE_JOURNAL = "It is not possible to write the journal of the book database: ";
+
+	private final File journalFile;
+	private FileOutputStream stream;
+	private Writer writer;
+	private int records;
+
+	/**
+	 * Constructor of the journal of a book database file. The journal is kept next
+	 * to the database file, with the .journal extension.
+	 * @param databaseFile The XML file of the book database.
+	 */
+	BookJournal(File databaseFile) {
+		this.journalFile = new File(databaseFile.getPath() + JOURNAL_EXTENSION);
+	}
+
+	File getFile() {
+		return this.journalFile;
+	}
+
+	/**
+	 * Returns the number of records currently in the journal file.
+	 * @return The number of records not yet folded into the snapshot.
+	 */
+	int getRecords() {
+		return this.records;
+	}
+
+	/**
+	 * Applies to the catalog every record newer than the snapshot.
+	 * @param catalog The catalog loaded from the snapshot.
+	 * @param snapshotSequence The sequence number of the last record folded into the snapshot.
+	 * @return The sequence number of the last record in the journal, or the snapshot sequence if it is newer.
+	 * @throws BookstoreException Thrown if the journal cannot be read.
+	 */
+	long replay(BookCatalog catalog, long snapshotSequence) throws BookstoreException {
+		long lastSequence = snapshotSequence;
+		this.records = 0;
+		if (!this.journalFile.exists()) {
+			return lastSequence;
+		}
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(this.journalFile), StandardCharsets.UTF_8))) {
+			// a last line without a line break is a record torn by a crash, never acknowledged
+			boolean lastLineComplete = this.endsWithLineBreak();
+			String line = reader.readLine();
+			while (line != null) {
+				String next = reader.readLine();
+				Record record = Record.parse(line);
+				if (next == null && (record == null || !lastLineComplete)) {
+					break;
+				}
+				if (record == null) {
+					throw new BookstoreException(INVALID_JOURNAL_FILE + this.journalFile.getPath());
+				}
+				this.records++;
+				if (record.sequence > snapshotSequence) {
+					if (record.operation == INSERT) {
+						catalog.add(record.book, record.quantity);
+					} else {
+						catalog.remove(record.book, record.quantity);
+					}
+					lastSequence = Math.max(lastSequence, record.sequence);
+				}
+				line = next;
+			}
+		} catch (IOException e) {
+			throw new BookstoreException(INVALID_JOURNAL_FILE + this.journalFile.getPath());
+		}
+		return lastSequence;
+	}
+
+	/**
+	 * Appends one record per book to the journal, with consecutive sequence
+	 * numbers. The records are flushed and forced to the disk together before
+	 * the method returns.
+	 * @param firstSequence The sequence number of the first record.
+	 * @param operation The operation, INSERT or DELETE.
+	 * @param quantities The number of units added or removed of each book.
+	 * @throws BookstoreException Thrown if the records cannot be written.
+	 */
+	void append(long firstSequence, char operation, Map<Book, Integer> quantities) throws BookstoreException {
+		try {
+			if (this.writer == null) {
+				this.endLastRecord();
+				this.stream = new FileOutputStream(this.journalFile, true);
+				this.writer = new BufferedWriter(new OutputStreamWriter(this.stream, StandardCharsets.UTF_8));
+			}
+			long sequence = firstSequence;
+			for (Map.Entry<Book, Integer> quantity : quantities.entrySet()) {
+				this.writer.write(format(sequence++, operation, quantity.getKey(), quantity.getValue()));
+			}
+			this.writer.flush();
+			// the length of the file is metadata, so it is forced too
+			this.stream.getChannel().force(true);
+			this.records += quantities.size();
+		} catch (IOException e) {
+			this.close();
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_WRITE_JOURNAL + this.journalFile.getPath());
+		}
+	}
+
+	/**
+	 * Drops the records already folded into the snapshot, keeping the ones
+	 * appended while the snapshot was being written.
+	 * @param snapshotSequence The sequence number of the last record folded into the snapshot.
+	 * @throws BookstoreException Thrown if the journal cannot be rewritten.
+	 */
+	void truncate(long snapshotSequence) throws BookstoreException {
+		this.close();
+		if (!this.journalFile.exists()) {
+			this.records = 0;
+			return;
+		}
+		try {
+			List<String> remaining = new ArrayList<String>();
+			for (String line : Files.readAllLines(this.journalFile.toPath(), StandardCharsets.UTF_8)) {
+				Record record = Record.parse(line);
+				if (record != null && record.sequence > snapshotSequence) {
+					remaining.add(line);
+				}
+			}
+			File newJournal = new File(this.journalFile.getPath() + ".tmp");
+			try (FileOutputStream output = new FileOutputStream(newJournal);
+					Writer newWriter = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+				for (String line : remaining) {
+					newWriter.write(line);
+					newWriter.write('\n');
+				}
+				newWriter.flush();
+				output.getChannel().force(true);
+			}
+			Files.move(newJournal.toPath(), this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			forceDirectory(this.journalFile.getAbsoluteFile().getParentFile().toPath());
+			this.records = remaining.size();
+		} catch (IOException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_WRITE_JOURNAL + this.journalFile.getPath());
+		}
+	}
+
+	/**
+	 * Closes the file opened for appending records, if any.
+	 */
+	void close() {
+		if (this.writer != null) {
+			try {
+				this.writer.close();
+			} catch (IOException e) {
+				// nothing else to be done, the next append opens the file again
+			}
+			this.writer = null;
+			this.stream = null;
+		}
+	}
+
+	/**
+	 * A torn record left by a crash does not end with a line break. It is cut off
+	 * before appending, otherwise the next record would be glued to it.
+	 */
+	private void endLastRecord() throws IOException {
+		if (!this.journalFile.exists() || this.endsWithLineBreak()) {
+			return;
+		}
+		try (RandomAccessFile file = new RandomAccessFile(this.journalFile, "rw")) {
+			long end = file.length();
+			while (end > 0) {
+				file.seek(end - 1);
+				if (file.read() == '\n') {
+					break;
+				}
+				end--;
+			}
+			file.setLength(end);
+		}
+	}
+
+	/**
+	 * Forces the entries of the directory, so a file moved into it survives a
+	 * crash. Some systems cannot open a directory for this, and there the
+	 * rename is as durable as the file system makes it.
+	 */
+	private static void forceDirectory(Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// the directory cannot be forced on this system
+		}
+	}
+
+	private boolean endsWithLineBreak() throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(this.journalFile, "r")) {
+			if (file.length() == 0) {
+				return true;
+			}
+			file.seek(file.length() - 1);
+			return file.read() == '\n';
+		}
+	}
+
+	private static String format(long sequence, char operation, Book book, int quantity) {
+		return sequence + "\t" + operation + "\t" + escape(book.getTitle()) + "\t" + escape(book.getAuthor()) + "\t"
+				+ book.getPriceMoney().toString() + "\t" + quantity + "\n";
+	}
+
+	private static String escape(String value) {
+		StringBuilder escaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\':
+				escaped.append("\\\\");
+				break;
+			case '\t':
+				escaped.append("\\t");
+				break;
+			case '\n':
+				escaped.append("\\n");
+				break;
+			case '\r':
+				escaped.append("\\r");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private static String unescape(String value) {
+		StringBuilder unescaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char next = value.charAt(++i);
+				unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	/**
+	 * A record read from the journal file.
+	 */
+	private static final class Record {
+
+		private final long sequence;
+		private final char operation;
+		private final Book book;
+		private final int quantity;
+
+		private Record(long sequence, char operation, Book book, int quantity) {
+			this.sequence = sequence;
+			this.operation = operation;
+			this.book = book;
+			this.quantity = quantity;
+		}
+
+		/**
+		 * Parses a line of the journal.
+		 * @return The record, or null if the line is not a complete record.
+		 */
+		private static Record parse(String line) {
+			String[] fields = line.split("\t", -1);
+			if (fields.length < 5 || fields.length > 6 || fields[1].length() != 1
+					|| (fields[1].charAt(0) != INSERT && fields[1].charAt(0) != DELETE)) {
+				return null;
+			}
+			try {
+				int quantity = fields.length == 6 ? Integer.parseInt(fields[5]) : 1;
+				return new Record(Long.parseLong(fields[0]), fields[1].charAt(0),
+						new Book(unescape(fields[2]), unescape(fields[3]), Money.parse(fields[4])), quantity);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+}
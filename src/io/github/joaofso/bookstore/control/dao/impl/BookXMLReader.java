@@ -0,0 +1,113 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+
+/**
+ * This class reads the book database file with a pull parser, handing the
+ * fields of each book element to a visitor as soon as the element ends. No
+ * tree of the file is built, so a scan keeps in memory only what the visitor
+ * decides to keep. The visitor gets the raw texts of the fields, so a Book is
+ * created only for the records it wants.
+ *
+ * @author João Felipe
+ *
+ */
+final class BookXMLReader {
+
+	private static final String INVALID_XML_FILE = "The XML file with the book database is invalid";
+	private static final XMLInputFactory FACTORY = createFactory();
+
+	private BookXMLReader() {
+	}
+
+	/**
+	 * Reads every book element of the file.
+	 * @param dbFile The XML file of the book database.
+	 * @param visitor The visitor of the books.
+	 * @return The sequence number of the last journal record folded in the file, or 0 if there is none.
+	 * @throws BookstoreException Thrown if the file cannot be read or is not a valid book database.
+	 */
+	static long read(File dbFile, Visitor visitor) throws BookstoreException {
+		try (InputStream input = new BufferedInputStream(new FileInputStream(dbFile))) {
+			XMLStreamReader reader = FACTORY.createXMLStreamReader(input);
+			try {
+				return read(reader, visitor);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException | NumberFormatException e) {
+			throw new BookstoreException(INVALID_XML_FILE);
+		}
+	}
+
+	private static long read(XMLStreamReader reader, Visitor visitor) throws XMLStreamException {
+		long sequence = 0;
+		String title = null;
+		String author = null;
+		String price = null;
+		String quantity = null;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+				if (name.equals("books")) {
+					String value = reader.getAttributeValue(null, "sequence");
+					sequence = value == null ? 0 : Long.parseLong(value);
+				} else if (name.equals("book")) {
+					title = null;
+					author = null;
+					price = null;
+					quantity = null;
+				} else if (name.equals("title")) {
+					title = reader.getElementText();
+				} else if (name.equals("author")) {
+					author = reader.getElementText();
+				} else if (name.equals("price")) {
+					price = reader.getElementText();
+				} else if (name.equals("quantity")) {
+					quantity = reader.getElementText();
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("book")) {
+				if (title == null || author == null || price == null) {
+					throw new XMLStreamException(INVALID_XML_FILE);
+				}
+				// a book element without quantity was written before the stock count, and stands for one unit
+				visitor.visit(title, author, price, quantity == null ? 1 : Integer.parseInt(quantity.trim()));
+			}
+		}
+		return sequence;
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	/**
+	 * The receiver of the fields of each book element.
+	 */
+	interface Visitor {
+
+		/**
+		 * Receives the fields of a book element.
+		 * @param title The title of the book.
+		 * @param author The author of the book.
+		 * @param price The price of the book, as written in the file.
+		 * @param quantity The number of units of the element.
+		 */
+		void visit(String title, String author, String price, int quantity);
+	}
+}
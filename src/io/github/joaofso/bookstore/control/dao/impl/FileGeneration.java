@@ -0,0 +1,63 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+
+/**
+ * This class keeps the generation of the listings of a storage file whose
+ * books are not kept in memory. A new generation is drawn whenever the
+ * {@link FileStamp} of the file changes, which tells the changes made by
+ * others, and after every change made by the DAO itself, which may not change
+ * the stamp when the file is written in place.
+ *
+ * @author João Felipe
+ *
+ */
+final class FileGeneration {
+
+	private final File file;
+	private volatile Stamped current;
+
+	/**
+	 * Constructor of the generation of a storage file.
+	 * @param file The storage file.
+	 */
+	FileGeneration(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the generation of the file, drawing a new one if the file changed.
+	 * @return The generation of the listings.
+	 */
+	long get() {
+		FileStamp stamp = FileStamp.of(this.file);
+		Stamped stamped = this.current;
+		if (stamped == null || !stamped.stamp.equals(stamp)) {
+			stamped = new Stamped(stamp, BookCatalog.newGeneration());
+			this.current = stamped;
+		}
+		return stamped.generation;
+	}
+
+	/**
+	 * Tells that the DAO changed the file, so the next generation is a new one.
+	 */
+	void changed() {
+		this.current = null;
+	}
+
+	/**
+	 * A generation together with the stamp of the file it was drawn for, so
+	 * both are published at once.
+	 */
+	private static final class Stamped {
+
+		private final FileStamp stamp;
+		private final long generation;
+
+		private Stamped(FileStamp stamp, long generation) {
+			this.stamp = stamp;
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * This class captures the identity of a storage file at a given moment: its
+ * size, its last modification time and, when the file system provides one, its
+ * file key. The DAOs keep a stamp next to the data they hold in memory, so
+ * they can tell whether the file was changed by someone else and has to be read
+ * again.
+ *
+ * @author João Felipe
+ *
+ */
+final class FileStamp {
+
+	private static final FileStamp MISSING = new FileStamp(-1, null, null);
+
+	private final long size;
+	private final FileTime lastModified;
+	private final Object fileKey;
+
+	private FileStamp(long size, FileTime lastModified, Object fileKey) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.fileKey = fileKey;
+	}
+
+	/**
+	 * Reads the current stamp of a file.
+	 * @param file The file to be stamped.
+	 * @return The stamp of the file, or a stamp representing a missing file if its
+	 *         attributes cannot be read.
+	 */
+	static FileStamp of(File file) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			return new FileStamp(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+		} catch (IOException e) {
+			return MISSING;
+		}
+	}
+
+	/**
+	 * Checks whether the file still has the same stamp.
+	 * @param file The file to be checked.
+	 * @return A boolean value indicating whether the file was not changed since this stamp was taken.
+	 */
+	boolean matches(File file) {
+		return this.equals(of(file));
+	}
+
+	/**
+	 * Checks whether the path still leads to the same file, with the same size,
+	 * no matter whether its contents were changed in place. Without a file key,
+	 * the modification time is compared too.
+	 * @param file The file to be checked.
+	 * @return A boolean value indicating whether the file was not replaced since this stamp was taken.
+	 */
+	boolean isSameFile(File file) {
+		FileStamp current = of(file);
+		if (this.fileKey == null || current.fileKey == null) {
+			return this.equals(current);
+		}
+		return this.size == current.size && this.fileKey.equals(current.fileKey);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || !(obj instanceof FileStamp)) {
+			return false;
+		}
+		FileStamp other = (FileStamp) obj;
+		return this.size == other.size && equalsOrNull(this.lastModified, other.lastModified)
+				&& equalsOrNull(this.fileKey, other.fileKey);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(this.size) * 31 + (this.lastModified == null ? 0 : this.lastModified.hashCode());
+	}
+
+	private static boolean equalsOrNull(Object first, Object second) {
+		return first == null ? second == null : first.equals(second);
+	}
+}
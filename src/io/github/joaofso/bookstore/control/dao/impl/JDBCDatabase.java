@@ -0,0 +1,241 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+
+/**
+ * This class gives access to a SQL database through JDBC, keeping a small pool
+ * of connections, so the DAOs do not pay the cost of opening a connection on
+ * every call. The database is meant to be an embedded, file based engine
+ * running in the same process, such as H2, HSQLDB or Derby, whose driver has
+ * to be in the classpath. The tables and indexes are created the first time
+ * the database is opened:
+ *
+ * books, with the title, the author name, the price, written with two decimal
+ * places, and the number of units in stock, indexed by title and by author
+ * name, and unique by title, author name and price;
+ * book_keywords, with the keywords of the title and of the author name of
+ * every book, indexed by keyword;
+ * users, with the user name as primary key.
+ *
+ * The database used by the storage engine is set by the system properties
+ * bookstore.jdbc.url, bookstore.jdbc.user, bookstore.jdbc.password and
+ * bookstore.jdbc.poolSize. Every DAO of the same URL shares the same pool.
+ *
+ * The database also counts the changes in the books made through it, as the
+ * generation of the listings. The changes made by other processes are not
+ * counted.
+ *
+ * @author João Felipe
+ *
+ */
+final class JDBCDatabase {
+
+	static final String URL_PROPERTY = "bookstore.jdbc.url";
+	static final String USER_PROPERTY = "bookstore.jdbc.user";
+	static final String PASSWORD_PROPERTY = "bookstore.jdbc.password";
+	static final String POOL_SIZE_PROPERTY = "bookstore.jdbc.poolSize";
+
+	private static final String DEFAULT_URL = "jdbc:h2:./BookstoreDatabase";
+	private static final int DEFAULT_POOL_SIZE = 8;
+	private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+	private static final String IT_IS_NOT_POSSIBLE_OPEN_DATABASE = "It is not possible to open the database: ";
+	private static final String NO_CONNECTION_AVAILABLE = "No connection to the database became available";
+
+	private static final String[] SCHEMA = {
+			"CREATE TABLE books (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+					+ "title VARCHAR(255) NOT NULL, author VARCHAR(255) NOT NULL, price VARCHAR(64) NOT NULL, "
+					+ "quantity INT NOT NULL, CONSTRAINT books_key UNIQUE (title, author, price))",
+			"CREATE INDEX books_title ON books (title)",
+			"CREATE INDEX books_author ON books (author)",
+			"CREATE TABLE book_keywords (keyword VARCHAR(255) NOT NULL, book_id BIGINT NOT NULL, "
+					+ "PRIMARY KEY (keyword, book_id))",
+			"CREATE TABLE users (username VARCHAR(255) NOT NULL PRIMARY KEY, password VARCHAR(255) NOT NULL, "
+					+ "admin BOOLEAN NOT NULL)" };
+
+	private static final Map<String, JDBCDatabase> DATABASES = new HashMap<String, JDBCDatabase>();
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final BlockingQueue<Connection> idleConnections = new LinkedBlockingQueue<Connection>();
+	private final Semaphore permits;
+	private volatile long generation = BookCatalog.newGeneration();
+
+	private JDBCDatabase(String url, String user, String password, int poolSize) {
+		this.url = url;
+		this.user = user;
+		this.password = password;
+		this.permits = new Semaphore(poolSize, true);
+	}
+
+	/**
+	 * Opens the database set by the system properties.
+	 * @return The database.
+	 * @throws BookstoreException Thrown if the database cannot be opened.
+	 */
+	static JDBCDatabase configured() throws BookstoreException {
+		int poolSize = DEFAULT_POOL_SIZE;
+		String poolSizeProperty = System.getProperty(POOL_SIZE_PROPERTY);
+		if (poolSizeProperty != null) {
+			try {
+				poolSize = Math.max(1, Integer.parseInt(poolSizeProperty.trim()));
+			} catch (NumberFormatException e) {
+				poolSize = DEFAULT_POOL_SIZE;
+			}
+		}
+		return open(System.getProperty(URL_PROPERTY, DEFAULT_URL), System.getProperty(USER_PROPERTY, ""),
+				System.getProperty(PASSWORD_PROPERTY, ""), poolSize);
+	}
+
+	/**
+	 * Opens a database, creating its tables if they do not exist. A database
+	 * already opened is shared, with the pool it got when it was opened first.
+	 * @param url The JDBC URL of the database.
+	 * @param user The user of the database.
+	 * @param password The password of the user.
+	 * @param poolSize The maximum number of connections kept open.
+	 * @return The database.
+	 * @throws BookstoreException Thrown if the database cannot be opened.
+	 */
+	static synchronized JDBCDatabase open(String url, String user, String password, int poolSize)
+			throws BookstoreException {
+		JDBCDatabase database = DATABASES.get(url);
+		if (database == null) {
+			database = new JDBCDatabase(url, user, password, poolSize);
+			database.createSchema();
+			DATABASES.put(url, database);
+		}
+		return database;
+	}
+
+	/**
+	 * Takes a connection from the pool, opening a new one if the pool is not
+	 * full. The connection is in auto commit mode, and has to be given back with
+	 * {@link #release(Connection)}.
+	 * @return A connection to the database.
+	 * @throws SQLException Thrown if no connection can be opened.
+	 */
+	Connection acquire() throws SQLException {
+		try {
+			if (!this.permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new SQLException(NO_CONNECTION_AVAILABLE);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(NO_CONNECTION_AVAILABLE);
+		}
+		try {
+			Connection connection = this.idleConnections.poll();
+			if (connection == null) {
+				connection = DriverManager.getConnection(this.url, this.user, this.password);
+			}
+			return connection;
+		} catch (SQLException | RuntimeException e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Tells that the books may have been changed, after the transaction that
+	 * changed them ended.
+	 */
+	void booksChanged() {
+		this.generation = BookCatalog.newGeneration();
+	}
+
+	/**
+	 * Returns the generation of the listings of the books.
+	 * @return The generation, which is new after every change in the books made through this database.
+	 */
+	long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Gives a connection back to the pool. A transaction left open is rolled
+	 * back, and a broken connection is closed instead of being kept.
+	 * @param connection The connection taken from the pool.
+	 */
+	void release(Connection connection) {
+		try {
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+			this.idleConnections.offer(connection);
+		} catch (SQLException e) {
+			try {
+				connection.close();
+			} catch (SQLException closeError) {
+				// the connection is dropped anyway
+			}
+		} finally {
+			this.permits.release();
+		}
+	}
+
+	/**
+	 * Closes the idle connections and forgets the database, so it is opened
+	 * again on the next use.
+	 */
+	void close() {
+		synchronized (JDBCDatabase.class) {
+			DATABASES.remove(this.url);
+		}
+		Connection connection;
+		while ((connection = this.idleConnections.poll()) != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				// the connection is dropped anyway
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the SQL state of an error says a constraint was violated,
+	 * like a second row with the same key.
+	 */
+	static boolean isConstraintViolation(SQLException e) {
+		return e.getSQLState() != null && e.getSQLState().startsWith("23");
+	}
+
+	private void createSchema() throws BookstoreException {
+		Connection connection = null;
+		try {
+			connection = this.acquire();
+			try (Statement statement = connection.createStatement()) {
+				statement.executeQuery("SELECT COUNT(*) FROM books WHERE 1 = 0").close();
+				return;
+			} catch (SQLException e) {
+				// the tables do not exist yet
+			}
+			connection.setAutoCommit(false);
+			try (Statement statement = connection.createStatement()) {
+				for (String command : SCHEMA) {
+					statement.executeUpdate(command);
+				}
+			}
+			connection.commit();
+		} catch (SQLException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_OPEN_DATABASE + this.url);
+		} finally {
+			if (connection != null) {
+				this.release(connection);
+			}
+		}
+	}
+}
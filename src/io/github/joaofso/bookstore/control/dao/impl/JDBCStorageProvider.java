@@ -0,0 +1,40 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+
+/**
+ * This class is the storage engine that keeps books and users in an embedded
+ * SQL database, chosen by the name jdbc. The database is set by the system
+ * properties described in {@link JDBCDatabase}, and its driver has to be in
+ * the classpath.
+ * 
+ * @author João Felipe
+ *
+ */
+public class JDBCStorageProvider implements StorageProvider {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getName() {
+		return "jdbc";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BookDAO createBookDAO() throws BookstoreException {
+		return new BookDAOJDBC();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public UserDAO createUserDAO() throws BookstoreException {
+		return new UserDAOJDBC();
+	}
+
+}
@@ -0,0 +1,42 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+
+/**
+ * This class is the storage engine that keeps books and users just in memory,
+ * chosen by the name memory. Nothing is persisted, so the data lasts while the
+ * engine object lives. Every DAO created by the same engine object shares the
+ * same data.
+ * 
+ * @author João Felipe
+ *
+ */
+public class MemoryStorageProvider implements StorageProvider {
+
+	private final BookDAOMemory bookDAO = new BookDAOMemory();
+	private final UserDAOMemory userDAO = new UserDAOMemory();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getName() {
+		return "memory";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BookDAO createBookDAO() {
+		return this.bookDAO;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public UserDAO createUserDAO() {
+		return this.userDAO;
+	}
+
+}
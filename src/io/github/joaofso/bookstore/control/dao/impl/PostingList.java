@@ -0,0 +1,124 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps a sorted set of catalog entry identifiers in a plain int
+ * array. Entries get increasing identifiers, so adding the identifier of a new
+ * entry is an append. The union of several lists is computed by merging them,
+ * which keeps the result sorted, that is, in the catalog order, and so is the
+ * intersection.
+ *
+ * @author João Felipe
+ *
+ */
+final class PostingList {
+
+	private static final int[] EMPTY = new int[0];
+
+	private int[] ids = new int[2];
+	private int size;
+
+	/**
+	 * Adds an identifier to the list.
+	 * @param id The identifier to be added.
+	 */
+	void add(int id) {
+		if (this.size > 0 && this.ids[this.size - 1] >= id) {
+			int index = Arrays.binarySearch(this.ids, 0, this.size, id);
+			if (index >= 0) {
+				return;
+			}
+			this.insertAt(-index - 1, id);
+		} else {
+			this.insertAt(this.size, id);
+		}
+	}
+
+	/**
+	 * Merges the lists into one sorted array without repeated identifiers.
+	 * @param lists The lists to be merged.
+	 * @return The sorted identifiers present in at least one of the lists.
+	 */
+	static int[] union(List<PostingList> lists) {
+		if (lists.isEmpty()) {
+			return EMPTY;
+		}
+		if (lists.size() == 1) {
+			PostingList list = lists.get(0);
+			return Arrays.copyOf(list.ids, list.size);
+		}
+		int total = 0;
+		for (PostingList list : lists) {
+			total += list.size;
+		}
+		int[] merged = new int[total];
+		int[] positions = new int[lists.size()];
+		int mergedSize = 0;
+		while (true) {
+			// the lists are few (one per keyword), so the smallest head is found by a scan
+			int smallest = Integer.MAX_VALUE;
+			for (int i = 0; i < positions.length; i++) {
+				PostingList list = lists.get(i);
+				if (positions[i] < list.size && list.ids[positions[i]] < smallest) {
+					smallest = list.ids[positions[i]];
+				}
+			}
+			if (smallest == Integer.MAX_VALUE) {
+				break;
+			}
+			merged[mergedSize++] = smallest;
+			for (int i = 0; i < positions.length; i++) {
+				PostingList list = lists.get(i);
+				if (positions[i] < list.size && list.ids[positions[i]] == smallest) {
+					positions[i]++;
+				}
+			}
+		}
+		return Arrays.copyOf(merged, mergedSize);
+	}
+
+	/**
+	 * Intersects the lists, walking the shortest one and looking its identifiers
+	 * up in the others.
+	 * @param lists The lists to be intersected.
+	 * @return The sorted identifiers present in every list.
+	 */
+	static int[] intersection(List<PostingList> lists) {
+		if (lists.isEmpty()) {
+			return EMPTY;
+		}
+		PostingList shortest = lists.get(0);
+		for (PostingList list : lists) {
+			if (list.size < shortest.size) {
+				shortest = list;
+			}
+		}
+		int[] intersected = new int[shortest.size];
+		int intersectedSize = 0;
+		for (int i = 0; i < shortest.size; i++) {
+			int id = shortest.ids[i];
+			boolean everywhere = true;
+			for (PostingList list : lists) {
+				if (list != shortest && Arrays.binarySearch(list.ids, 0, list.size, id) < 0) {
+					everywhere = false;
+					break;
+				}
+			}
+			if (everywhere) {
+				intersected[intersectedSize++] = id;
+			}
+		}
+		return Arrays.copyOf(intersected, intersectedSize);
+	}
+
+	private void insertAt(int index, int id) {
+		if (this.size == this.ids.length) {
+			this.ids = Arrays.copyOf(this.ids, this.size * 2);
+		}
+		System.arraycopy(this.ids, index, this.ids, index + 1, this.size - index);
+		this.ids[index] = id;
+		this.size++;
+	}
+}
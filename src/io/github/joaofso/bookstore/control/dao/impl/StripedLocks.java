@@ -0,0 +1,75 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class keeps a fixed set of locks shared by the book titles, so the
+ * changes in the stock of different titles may run in parallel while the
+ * changes of the same title take turns. Every title falls in one stripe, given
+ * by the hash of the title. A basket with several titles takes the locks of all
+ * its stripes, always in increasing order, so two baskets never wait for each
+ * other in a cycle.
+ *
+ * @author João Felipe
+ *
+ */
+final class StripedLocks {
+
+	private final ReentrantLock[] locks;
+
+	/**
+	 * Constructor of the set of locks.
+	 * @param stripes The number of stripes.
+	 */
+	StripedLocks(int stripes) {
+		this.locks = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Finds the stripes of the books.
+	 * @param books The books to be locked.
+	 * @return The stripes of the books, sorted and without repetitions.
+	 */
+	int[] stripesOf(Book... books) {
+		int[] stripes = new int[books.length];
+		for (int i = 0; i < books.length; i++) {
+			int hash = books[i].getTitle().hashCode();
+			// the high bits are mixed in, as titles often differ only at the end
+			stripes[i] = Math.floorMod(hash ^ (hash >>> 16), this.locks.length);
+		}
+		Arrays.sort(stripes);
+		int size = 0;
+		for (int i = 0; i < stripes.length; i++) {
+			if (size == 0 || stripes[size - 1] != stripes[i]) {
+				stripes[size++] = stripes[i];
+			}
+		}
+		return Arrays.copyOf(stripes, size);
+	}
+
+	/**
+	 * Takes the locks of the stripes, in increasing order.
+	 * @param stripes The sorted stripes given by stripesOf.
+	 */
+	void lock(int[] stripes) {
+		for (int stripe : stripes) {
+			this.locks[stripe].lock();
+		}
+	}
+
+	/**
+	 * Releases the locks of the stripes.
+	 * @param stripes The stripes given to lock.
+	 */
+	void unlock(int[] stripes) {
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			this.locks[stripes[i]].unlock();
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.joaofso.bookstore.aux.Keywords;
+import io.github.joaofso.bookstore.model.Book;
+
+/**
+ * This class is an inverted index from the keywords of titles and author names
+ * to the identifiers of the catalog entries where they appear. It is not thread
+ * safe; the catalog guards it with its own lock.
+ *
+ * @author João Felipe
+ *
+ */
+final class TokenIndex {
+
+	private final Map<String, PostingList> postings = new HashMap<String, PostingList>();
+
+	/**
+	 * Indexes the keywords of a book.
+	 * @param id The identifier of the catalog entry of the book.
+	 * @param book The book to be indexed.
+	 */
+	void add(int id, Book book) {
+		for (String keyword : keywordsOf(book)) {
+			PostingList list = this.postings.get(keyword);
+			if (list == null) {
+				list = new PostingList();
+				this.postings.put(keyword, list);
+			}
+			list.add(id);
+		}
+	}
+
+	/**
+	 * Finds the entries that have at least one of the keywords. The keywords go
+	 * through the same normalization as the indexed texts.
+	 * @param keywords The keywords to be searched.
+	 * @return The sorted identifiers of the matching entries.
+	 */
+	int[] search(Collection<String> keywords) {
+		List<PostingList> lists = new ArrayList<PostingList>(keywords.size());
+		Set<String> normalized = new LinkedHashSet<String>();
+		for (String keyword : keywords) {
+			normalized.addAll(Keywords.tokenize(keyword));
+		}
+		for (String keyword : normalized) {
+			PostingList list = this.postings.get(keyword);
+			if (list != null) {
+				lists.add(list);
+			}
+		}
+		return PostingList.union(lists);
+	}
+
+	private static Set<String> keywordsOf(Book book) {
+		Set<String> keywords = new LinkedHashSet<String>(Keywords.tokenize(book.getTitle()));
+		keywords.addAll(Keywords.tokenize(book.getAuthor()));
+		return keywords;
+	}
+}
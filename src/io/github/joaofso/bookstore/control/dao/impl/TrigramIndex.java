@@ -0,0 +1,73 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class is an index from every sequence of three characters of a text to
+ * the identifiers of the catalog entries where it appears. A text contains a
+ * query of three or more characters only if it has every trigram of the query,
+ * so the intersection of their lists gives the candidates, which still have to
+ * be checked with String.contains. It is not thread safe; the catalog guards it
+ * with its own lock.
+ *
+ * @author João Felipe
+ *
+ */
+final class TrigramIndex {
+
+	static final int GRAM_LENGTH = 3;
+
+	private final Map<Long, PostingList> postings = new HashMap<Long, PostingList>();
+
+	/**
+	 * Indexes the trigrams of a text.
+	 * @param id The identifier of the catalog entry of the text.
+	 * @param text The text to be indexed.
+	 */
+	void add(int id, String text) {
+		for (Long trigram : trigramsOf(text)) {
+			PostingList list = this.postings.get(trigram);
+			if (list == null) {
+				list = new PostingList();
+				this.postings.put(trigram, list);
+			}
+			list.add(id);
+		}
+	}
+
+	/**
+	 * Finds the entries that may contain the query.
+	 * @param query The query, with at least three characters.
+	 * @return The sorted identifiers of the candidate entries.
+	 */
+	int[] candidates(String query) {
+		Set<Long> trigrams = trigramsOf(query);
+		List<PostingList> lists = new ArrayList<PostingList>(trigrams.size());
+		for (Long trigram : trigrams) {
+			PostingList list = this.postings.get(trigram);
+			if (list == null) {
+				return new int[0];
+			}
+			lists.add(list);
+		}
+		return PostingList.intersection(lists);
+	}
+
+	/**
+	 * The three UTF-16 characters of a trigram are packed in a long, the same
+	 * units String.contains compares.
+	 */
+	private static Set<Long> trigramsOf(String text) {
+		Set<Long> trigrams = new HashSet<Long>();
+		for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+			long trigram = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+			trigrams.add(trigram);
+		}
+		return trigrams;
+	}
+}
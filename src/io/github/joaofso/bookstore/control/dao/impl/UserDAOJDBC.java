@@ -0,0 +1,123 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class implements the DAO pattern over an embedded SQL database, reached
+ * through JDBC by {@link JDBCDatabase}. The users are kept by user name, which
+ * is the primary key, so a login is a lookup in its index.
+ *
+ * @author João Felipe
+ *
+ */
+public class UserDAOJDBC implements UserDAO {
+
+	private final static String INSERT_USER = "INSERT INTO users (username, password, admin) VALUES (?, ?, ?)";
+	private final static String SELECT_USER = "SELECT username, password, admin FROM users WHERE username = ?";
+	private final static String DELETE_USER = "DELETE FROM users WHERE username = ? AND password = ? AND admin = ?";
+
+	private final JDBCDatabase database;
+
+	/**
+	 * Constructor of the DAO object over a given database.
+	 *
+	 * @param url The JDBC URL of the database.
+	 * @param user The user of the database.
+	 * @param password The password of the user.
+	 * @throws BookstoreException Thrown when the database cannot be opened.
+	 */
+	public UserDAOJDBC(String url, String user, String password) throws BookstoreException {
+		this(JDBCDatabase.open(url, user, password, 8));
+	}
+
+	/**
+	 * Constructor of the DAO object. It uses the database set by the system
+	 * properties, as described in {@link JDBCDatabase}.
+	 *
+	 * @throws BookstoreException Thrown when the database cannot be opened.
+	 */
+	public UserDAOJDBC() throws BookstoreException {
+		this(JDBCDatabase.configured());
+	}
+
+	UserDAOJDBC(JDBCDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean addUser(User newUser) {
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			try (PreparedStatement insert = prepare(connection, INSERT_USER, newUser)) {
+				return insert.executeUpdate() == 1;
+			}
+		} catch (SQLException e) {
+			// a violated primary key means the user name is taken
+			return false;
+		} finally {
+			this.release(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public User retrieveUser(String username) {
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			try (PreparedStatement select = connection.prepareStatement(SELECT_USER)) {
+				select.setString(1, username);
+				try (ResultSet result = select.executeQuery()) {
+					return result.next() ? new User(result.getString(1), result.getString(2), result.getBoolean(3)) : null;
+				}
+			}
+		} catch (SQLException e) {
+			return null;
+		} finally {
+			this.release(connection);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean removeUser(User user) {
+		Connection connection = null;
+		try {
+			connection = this.database.acquire();
+			try (PreparedStatement delete = prepare(connection, DELETE_USER, user)) {
+				return delete.executeUpdate() == 1;
+			}
+		} catch (SQLException e) {
+			return false;
+		} finally {
+			this.release(connection);
+		}
+	}
+
+	private void release(Connection connection) {
+		if (connection != null) {
+			this.database.release(connection);
+		}
+	}
+
+	static PreparedStatement prepare(Connection connection, String sql, User user) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql);
+		statement.setString(1, user.getUsername());
+		statement.setString(2, user.getPassword());
+		statement.setBoolean(3, user.isAdmin());
+		return statement;
+	}
+
+}
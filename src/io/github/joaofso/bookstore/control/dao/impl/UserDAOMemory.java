@@ -0,0 +1,47 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class implements the DAO pattern just in memory, keeping the users by
+ * user name. The users are copied in and out, as the other DAOs return a new
+ * instance on every retrieval.
+ * 
+ * @author João Felipe
+ *
+ */
+public class UserDAOMemory implements UserDAO {
+
+	private final ConcurrentMap<String, User> users = new ConcurrentHashMap<String, User>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean addUser(User newUser) {
+		return this.users.putIfAbsent(newUser.getUsername(), copyOf(newUser)) == null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public User retrieveUser(String username) {
+		User user = this.users.get(username);
+		return user == null ? null : copyOf(user);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean removeUser(User user) {
+		return this.users.remove(user.getUsername(), user);
+	}
+
+	private static User copyOf(User user) {
+		return new User(user.getUsername(), user.getPassword(), user.isAdmin());
+	}
+
+}
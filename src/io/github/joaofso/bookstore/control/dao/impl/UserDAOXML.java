@@ -1,9 +1,16 @@
 package io.github.joaofso.bookstore.control.dao.impl;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -13,6 +20,9 @@ import org.jdom2.output.XMLOutputter;
 
 import io.github.joaofso.bookstore.aux.BookstoreException;
 import io.github.joaofso.bookstore.control.dao.UserDAO;
+import io.github.joaofso.bookstore.metrics.Counter;
+import io.github.joaofso.bookstore.metrics.Metrics;
+import io.github.joaofso.bookstore.metrics.OperationMetrics;
 import io.github.joaofso.bookstore.model.User;
 
 /**
@@ -22,6 +32,15 @@ import io.github.joaofso.bookstore.model.User;
  * exercise is a small system; however, to use a database or even a tableless
  * system, we just need to plug the correspondent DAO implementation.
  * 
+ * The users are kept in memory too, in a directory indexed by user name, so a
+ * login does not parse the file. The file is parsed again only when it was
+ * changed by someone else, which is told by its {@link FileStamp}. The changes
+ * are written through to the file, and the directory is replaced as a whole, so
+ * the readers never wait for a writer.
+ * 
+ * Besides the operations, the {@link Metrics} count the parses and the
+ * rewrites of the XML file and the bytes they read and write.
+ * 
  * @author João Felipe
  *
  */
@@ -31,9 +50,18 @@ public class UserDAOXML implements UserDAO {
 
 	private final static String IT_IS_NOT_POSSIBLE_CREATE_FILE = "It is not possible to create the User storage file in: ";
 	private final static String INVALID_XML_FILE = "The XML file with the user database is invalid";
+	private final static OperationMetrics ADD_USER = Metrics.operation("UserDAOXML", "addUser");
+	private final static OperationMetrics RETRIEVE_USER = Metrics.operation("UserDAOXML", "retrieveUser");
+	private final static OperationMetrics REMOVE_USER = Metrics.operation("UserDAOXML", "removeUser");
+	private final static Counter PARSES = Metrics.counter("UserDAOXML", "parses");
+	private final static Counter PARSED_BYTES = Metrics.counter("UserDAOXML", "parsedBytes");
+	private final static Counter REWRITES = Metrics.counter("UserDAOXML", "rewrites");
+	private final static Counter REWRITTEN_BYTES = Metrics.counter("UserDAOXML", "rewrittenBytes");
 
 	private File userDBFile;
 
+	private volatile Directory directory;
+
 	/**
 	 * Constructor of the DAO object. It receives a filepath to be the book
 	 * database.
@@ -73,19 +101,22 @@ public class UserDAOXML implements UserDAO {
 	 * {@inheritDoc}
 	 */
 	synchronized public boolean addUser(User newUser) {
+		long start = ADD_USER.start();
 		try {
-			if(this.retrieveUser(newUser.getUsername()) != null) {
+			try {
+				Map<String, User> current = this.loadDirectory();
+				if (current.containsKey(newUser.getUsername())) {
+					return false;
+				}
+				Map<String, User> newDirectory = new LinkedHashMap<String, User>(current);
+				newDirectory.put(newUser.getUsername(), copyOf(newUser));
+				this.saveDirectory(newDirectory);
+				return true;
+			} catch (BookstoreException e) {
 				return false;
 			}
-			Element userxml = this.getXML(newUser);
-			
-			Document dbDoc = this.parseFile();
-			dbDoc.getRootElement().addContent(userxml);
-
-			this.saveFile(dbDoc);
-			return true;
-		} catch (BookstoreException e) {
-			return false;
+		} finally {
+			ADD_USER.end(start);
 		}
 	}
 
@@ -93,47 +124,98 @@ public class UserDAOXML implements UserDAO {
 	 * {@inheritDoc}
 	 */
 	public User retrieveUser(String username) {
+		long start = RETRIEVE_USER.start();
 		try {
-			Document dbDoc = this.parseFile();
-			List<Element> users = dbDoc.getRootElement().getChildren("user");
-			for (Element user : users) {
-				if(user.getChildText("username").equals(username)){
-					return this.getUser(user);
-				}
+			try {
+				User user = this.loadDirectory().get(username);
+				return user == null ? null : copyOf(user);
+			} catch (BookstoreException e) {
+				return null;
 			}
-		} catch (BookstoreException e) {
-			return null;
+		} finally {
+			RETRIEVE_USER.end(start);
 		}
-		return null;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
-	public boolean removeUser(User user) {
+	synchronized public boolean removeUser(User user) {
+		long start = REMOVE_USER.start();
 		try {
-			Document dbDoc = this.parseFile();
-			List<Element> users = dbDoc.getRootElement().getChildren("user");
-			for (Element storedUser : users) {
-				if (storedUser.getChildText("username").equals(user.getUsername())
-						&& storedUser.getChildText("password").equals(user.getPassword())
-						&& storedUser.getChildText("admin").equals(Boolean.toString(user.isAdmin()))) {
-
-					storedUser.getParent().removeContent(storedUser);
-					this.saveFile(dbDoc);
-					return true;
+			try {
+				Map<String, User> current = this.loadDirectory();
+				if (!user.equals(current.get(user.getUsername()))) {
+					return false;
 				}
+				Map<String, User> newDirectory = new LinkedHashMap<String, User>(current);
+				newDirectory.remove(user.getUsername());
+				this.saveDirectory(newDirectory);
+				return true;
+			} catch (BookstoreException e) {
+				return false;
 			}
-		} catch (BookstoreException e) {
+		} finally {
+			REMOVE_USER.end(start);
 		}
-		return false;
 	}
-	
+
+	/**
+	 * Lists every user of the file, to import them into another storage.
+	 * @return The users, in the order they were registered.
+	 * @throws BookstoreException Thrown if the file cannot be read.
+	 */
+	List<User> listAll() throws BookstoreException {
+		List<User> users = new ArrayList<User>();
+		for (User user : this.loadDirectory().values()) {
+			users.add(copyOf(user));
+		}
+		return users;
+	}
+
+	/**
+	 * Returns the current directory. The file is parsed only if it was never
+	 * read or if it changed since the last time.
+	 */
+	private Map<String, User> loadDirectory() throws BookstoreException {
+		Directory current = this.directory;
+		if (current != null && current.stamp.matches(this.userDBFile)) {
+			return current.users;
+		}
+		synchronized (this) {
+			current = this.directory;
+			if (current == null || !current.stamp.matches(this.userDBFile)) {
+				// the stamp is taken before parsing, so a change during the parse is seen next time
+				FileStamp newStamp = FileStamp.of(this.userDBFile);
+				Map<String, User> newDirectory = new LinkedHashMap<String, User>();
+				for (Element user : this.parseFile().getRootElement().getChildren("user")) {
+					// the first of two users with the same name is the one a login has always found
+					if (!newDirectory.containsKey(user.getChildText("username"))) {
+						newDirectory.put(user.getChildText("username"), this.getUser(user));
+					}
+				}
+				current = new Directory(newDirectory, newStamp);
+				this.directory = current;
+			}
+			return current.users;
+		}
+	}
+
+	private void saveDirectory(Map<String, User> newDirectory) throws BookstoreException {
+		Element root = new Element("users");
+		for (User user : newDirectory.values()) {
+			root.addContent(this.getXML(user));
+		}
+		this.saveFile(new Document(root));
+		this.directory = new Directory(newDirectory, FileStamp.of(this.userDBFile));
+	}
 	
 	private Document parseFile() throws BookstoreException {
 		SAXBuilder builder = new SAXBuilder();
 		Document doc = null;
 		try {
+			PARSES.increment();
+			PARSED_BYTES.add(this.userDBFile.length());
 			doc = builder.build(this.userDBFile);
 		} catch (JDOMException | IOException e) {
 			throw new BookstoreException(INVALID_XML_FILE);
@@ -141,16 +223,32 @@ public class UserDAOXML implements UserDAO {
 		return doc;
 	}
 	
+	/**
+	 * Writes the document to a temporary file and moves it over the database
+	 * file, so a reader never sees a file written halfway.
+	 */
 	synchronized private void saveFile(Document dbDoc) throws BookstoreException {
+		File tempFile = null;
 		try {
+			tempFile = File.createTempFile(this.userDBFile.getName(), ".tmp",
+					this.userDBFile.getAbsoluteFile().getParentFile());
 			XMLOutputter outputter = new XMLOutputter();
-			FileWriter writer = new FileWriter(this.userDBFile);
-			outputter.output(dbDoc, writer);
-			writer.close();
+			OutputStream output = new FileOutputStream(tempFile);
+			try {
+				outputter.output(dbDoc, output);
+			} finally {
+				output.close();
+			}
+			REWRITES.increment();
+			REWRITTEN_BYTES.add(tempFile.length());
+			Files.move(tempFile.toPath(), this.userDBFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
 		} catch (IOException e) {
+			if (tempFile != null) {
+				tempFile.delete();
+			}
 			throw new BookstoreException(INVALID_XML_FILE);
 		}
-
 	}
 	
 	private User getUser(Element element) {
@@ -166,4 +264,24 @@ public class UserDAOXML implements UserDAO {
 		return userTag;
 	}
 
+	private static User copyOf(User user) {
+		return new User(user.getUsername(), user.getPassword(), user.isAdmin());
+	}
+
+	/**
+	 * The users together with the stamp of the file they were read from. Both
+	 * are published at once, so a reader never pairs the users of one version
+	 * of the file with the stamp of another.
+	 */
+	private static final class Directory {
+
+		private final Map<String, User> users;
+		private final FileStamp stamp;
+
+		private Directory(Map<String, User> users, FileStamp stamp) {
+			this.users = Collections.unmodifiableMap(users);
+			this.stamp = stamp;
+		}
+	}
+
 }
@@ -0,0 +1,38 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+
+/**
+ * This class is the storage engine that keeps books and users in XML files,
+ * chosen by the name xml. It is the default engine.
+ * 
+ * @author João Felipe
+ *
+ */
+public class XMLStorageProvider implements StorageProvider {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getName() {
+		return "xml";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public BookDAO createBookDAO() throws BookstoreException {
+		return new BookDAOXML();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public UserDAO createUserDAO() throws BookstoreException {
+		return new UserDAOXML();
+	}
+
+}
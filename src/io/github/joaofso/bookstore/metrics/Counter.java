@@ -0,0 +1,60 @@
+package io.github.joaofso.bookstore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts events or amounts, such as the files parsed and their
+ * bytes. The threads that count at the same time do not wait for each other.
+ *
+ * @author João Felipe
+ *
+ */
+public class Counter implements CounterMXBean {
+
+	private final String name;
+	private final LongAdder value = new LongAdder();
+
+	Counter(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Counts one event.
+	 */
+	public void increment() {
+		if (Metrics.ENABLED) {
+			this.value.increment();
+		}
+	}
+
+	/**
+	 * Counts an amount.
+	 * @param amount The amount to be added.
+	 */
+	public void add(long amount) {
+		if (Metrics.ENABLED) {
+			this.value.add(amount);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getValue() {
+		return this.value.sum();
+	}
+
+	/**
+	 * Returns the name of the counter, as component.counter.
+	 * @return The name of the counter.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public String toString() {
+		return this.name + " " + this.getValue();
+	}
+
+}
@@ -0,0 +1,17 @@
+package io.github.joaofso.bookstore.metrics;
+
+/**
+ * This interface defines the attribute of a counter published through JMX.
+ *
+ * @author João Felipe
+ *
+ */
+public interface CounterMXBean {
+
+	/**
+	 * Returns the value counted so far.
+	 * @return The value of the counter.
+	 */
+	long getValue();
+
+}
@@ -0,0 +1,182 @@
+package io.github.joaofso.bookstore.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts latencies, in nanoseconds, in buckets of logarithmic
+ * width, so a percentile is known within 1/64 of its value whatever the range
+ * of the latencies, from a few nanoseconds to hours, in a fixed amount of
+ * memory. The values up to 127 have buckets of their own, and every power of
+ * two above is split into 64 buckets.
+ *
+ * Recording is lock-free: a value increments one bucket, so many threads may
+ * record at once, and reading the percentiles while they record gives a
+ * consistent enough picture without stopping them.
+ *
+ * A closed-loop client that waits for each answer before asking again sends
+ * fewer requests while the system stalls, and so records just one long latency
+ * where many requests would have waited. Recording with the expected interval
+ * between requests fills in the latencies of those missing requests, which is
+ * known as the correction of the coordinated omission.
+ *
+ * @author João Felipe
+ *
+ */
+public class LatencyHistogram {
+
+	private final static int SUB_BUCKET_BITS = 6;
+	private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// the values below 2 * SUB_BUCKETS have buckets of their own; the highest bit of a positive long is the 62nd
+	private final static int BUCKETS = (62 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS * 2;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 * @param nanos The latency, in nanoseconds. A negative latency is counted as zero.
+	 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		this.counts.incrementAndGet(bucket(value));
+		this.total.add(value);
+		long current = this.max.get();
+		while (value > current && !this.max.compareAndSet(current, value)) {
+			current = this.max.get();
+		}
+	}
+
+	/**
+	 * Records a latency of a client that sends a request every interval,
+	 * adding the latencies the requests not sent during a longer latency would
+	 * have had: the latency less one interval, less two intervals and so on.
+	 * @param nanos The latency, in nanoseconds.
+	 * @param expectedIntervalNanos The interval between the requests, in
+	 *        nanoseconds, or zero for no correction.
+	 */
+	public void record(long nanos, long expectedIntervalNanos) {
+		this.record(nanos);
+		if (expectedIntervalNanos <= 0) {
+			return;
+		}
+		for (long missing = nanos - expectedIntervalNanos; missing >= expectedIntervalNanos; missing -= expectedIntervalNanos) {
+			this.record(missing);
+		}
+	}
+
+	/**
+	 * Adds the latencies of another histogram to this one.
+	 * @param other The histogram to be added.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			long count = other.counts.get(i);
+			if (count > 0) {
+				this.counts.addAndGet(i, count);
+			}
+		}
+		this.total.add(other.total.sum());
+		long otherMax = other.max.get();
+		long current = this.max.get();
+		while (otherMax > current && !this.max.compareAndSet(current, otherMax)) {
+			current = this.max.get();
+		}
+	}
+
+	/**
+	 * Forgets every latency recorded. The latencies recorded at the same time
+	 * may be partly kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			this.counts.set(i, 0);
+		}
+		this.total.reset();
+		this.max.set(0);
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 * @return The number of latencies.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += this.counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the highest latency recorded.
+	 * @return The highest latency, in nanoseconds, or zero if there is none.
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the mean of the latencies recorded.
+	 * @return The mean latency, in nanoseconds, or zero if there is none.
+	 */
+	public double getMean() {
+		long count = this.getCount();
+		return count == 0 ? 0 : (double) this.total.sum() / count;
+	}
+
+	/**
+	 * Returns the latency below which a percentage of the latencies recorded
+	 * are, as the highest value of its bucket.
+	 * @param percentile The percentage, from 0 to 100.
+	 * @return The latency, in nanoseconds, or zero if there is none.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), this.max.get());
+			}
+		}
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the bucket of a value. Below 2 * SUB_BUCKETS the bucket is the
+	 * value itself; above, it is found by the position of the highest bit and
+	 * the SUB_BUCKET_BITS bits that follow it.
+	 */
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS * 2) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * Returns the highest value counted in a bucket.
+	 */
+	static long highestValue(int bucket) {
+		if (bucket < SUB_BUCKETS * 2) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket - shift * SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
@@ -0,0 +1,154 @@
+package io.github.joaofso.bookstore.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * This class keeps the metrics of the bookstore, one per operation or counter
+ * of each component, and publishes them as platform MBeans, under the domain
+ * io.github.joaofso.bookstore, so they can be watched with jconsole or any
+ * other JMX client. The metrics are created once, by the classes they measure,
+ * and kept in static fields there, so recording does not look them up.
+ *
+ * The metrics can also be written as text, periodically, by setting the
+ * system property bookstore.metrics.dump to the period in seconds; the text
+ * goes to the standard error. Setting the system property
+ * bookstore.metrics.enabled to false turns the recording off.
+ *
+ * @author João Felipe
+ *
+ */
+public final class Metrics {
+
+	/**
+	 * System property that turns the recording of the metrics on or off.
+	 */
+	public final static String ENABLED_PROPERTY = "bookstore.metrics.enabled";
+
+	/**
+	 * System property with the period, in seconds, of the text dump of the metrics.
+	 */
+	public final static String DUMP_PROPERTY = "bookstore.metrics.dump";
+
+	/**
+	 * Domain of the MBeans of the metrics.
+	 */
+	public final static String DOMAIN = "io.github.joaofso.bookstore";
+
+	final static boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+	private final static ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+	private final static ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+	private static ScheduledExecutorService dumper;
+	private static ScheduledFuture<?> dump;
+
+	static {
+		long period = Long.getLong(DUMP_PROPERTY, 0);
+		if (period > 0) {
+			startDump(period, TimeUnit.SECONDS, System.err);
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Returns the metrics of an operation, creating and publishing them the
+	 * first time.
+	 * @param component The class or part of the system that runs the operation.
+	 * @param operation The name of the operation.
+	 * @return The metrics of the operation.
+	 */
+	public static OperationMetrics operation(String component, String operation) {
+		return operations.computeIfAbsent(component + "." + operation, name -> {
+			OperationMetrics metrics = new OperationMetrics(name);
+			register(metrics, "Operation", component, operation);
+			return metrics;
+		});
+	}
+
+	/**
+	 * Returns a counter, creating and publishing it the first time.
+	 * @param component The class or part of the system that counts.
+	 * @param counter The name of the counter.
+	 * @return The counter.
+	 */
+	public static Counter counter(String component, String counter) {
+		return counters.computeIfAbsent(component + "." + counter, name -> {
+			Counter metrics = new Counter(name);
+			register(metrics, "Counter", component, counter);
+			return metrics;
+		});
+	}
+
+	/**
+	 * Writes every metric as text, one per line, sorted by name.
+	 * @return The text of the metrics.
+	 */
+	public static String dump() {
+		Map<String, Object> sorted = new TreeMap<String, Object>(operations);
+		sorted.putAll(counters);
+		StringBuilder text = new StringBuilder();
+		for (Object metrics : sorted.values()) {
+			text.append(metrics).append(System.lineSeparator());
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Starts writing the metrics periodically, replacing the dump already
+	 * running. The dump runs in a daemon thread, so it does not keep the
+	 * program running.
+	 * @param period The time between two dumps.
+	 * @param unit The unit of the period.
+	 * @param out The stream where the metrics are written.
+	 */
+	public static synchronized void startDump(long period, TimeUnit unit, PrintStream out) {
+		stopDump();
+		if (dumper == null) {
+			dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "Metrics-dump");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		dump = dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+	}
+
+	/**
+	 * Stops writing the metrics periodically.
+	 */
+	public static synchronized void stopDump() {
+		if (dump != null) {
+			dump.cancel(false);
+			dump = null;
+		}
+	}
+
+	/**
+	 * Publishes a metric as a platform MBean. A metric that cannot be published,
+	 * because another copy of these classes published it first, is still
+	 * recorded and dumped.
+	 */
+	private static void register(Object metrics, String type, String component, String name) {
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",component=" + component + ",name=" + name);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+		} catch (JMException e) {
+			// the metric is kept in the registry anyway
+		}
+	}
+
+}
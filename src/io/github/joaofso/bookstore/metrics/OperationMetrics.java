@@ -0,0 +1,143 @@
+package io.github.joaofso.bookstore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class measures the calls of an operation: it counts the calls running
+ * and records the latency of each one when it finishes. A call is measured by
+ * taking the value returned by {@link #start()} and giving it back to
+ * {@link #end(long)} in a finally block, so the calls that throw are measured
+ * too.
+ *
+ * Nothing is locked: the calls running are kept by a LongAdder and the
+ * latencies by a {@link LatencyHistogram}, so measuring costs two readings of
+ * the clock and a few uncontended atomic additions per call.
+ *
+ * @author João Felipe
+ *
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+
+	private final String name;
+	private final LongAdder inFlight = new LongAdder();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	OperationMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Marks the start of a call.
+	 * @return The start of the call, to be given to {@link #end(long)}.
+	 */
+	public long start() {
+		if (!Metrics.ENABLED) {
+			return 0;
+		}
+		this.inFlight.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Marks the end of a call, recording its latency.
+	 * @param start The value returned by {@link #start()} for this call.
+	 */
+	public void end(long start) {
+		if (!Metrics.ENABLED) {
+			return;
+		}
+		this.latencies.record(System.nanoTime() - start);
+		this.inFlight.decrement();
+	}
+
+	/**
+	 * Records the latency of a call measured elsewhere, such as a phase of a
+	 * longer operation.
+	 * @param nanos The latency, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (Metrics.ENABLED) {
+			this.latencies.record(nanos);
+		}
+	}
+
+	/**
+	 * Returns the name of the operation, as component.operation.
+	 * @return The name of the operation.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the latencies of the calls finished.
+	 * @return The histogram of the latencies, in nanoseconds.
+	 */
+	public LatencyHistogram getLatencies() {
+		return this.latencies;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getCount() {
+		return this.latencies.getCount();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getInFlight() {
+		return this.inFlight.sum();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getMeanMicros() {
+		return this.latencies.getMean() / 1000;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double get50thPercentileMicros() {
+		return this.latencies.getValueAtPercentile(50) / 1000.0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double get99thPercentileMicros() {
+		return this.latencies.getValueAtPercentile(99) / 1000.0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double get999thPercentileMicros() {
+		return this.latencies.getValueAtPercentile(99.9) / 1000.0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getMaxMicros() {
+		return this.latencies.getMax() / 1000.0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		this.latencies.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s count=%d inFlight=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+				this.name, this.getCount(), this.getInFlight(), this.getMeanMicros(), this.get50thPercentileMicros(),
+				this.get99thPercentileMicros(), this.get999thPercentileMicros(), this.getMaxMicros());
+	}
+
+}
@@ -0,0 +1,59 @@
+package io.github.joaofso.bookstore.metrics;
+
+/**
+ * This interface defines the attributes of an operation published through
+ * JMX: how many times it ran, how many calls are running and their latencies.
+ *
+ * @author João Felipe
+ *
+ */
+public interface OperationMetricsMXBean {
+
+	/**
+	 * Returns the number of calls finished.
+	 * @return The number of calls.
+	 */
+	long getCount();
+
+	/**
+	 * Returns the number of calls running.
+	 * @return The number of calls running.
+	 */
+	long getInFlight();
+
+	/**
+	 * Returns the mean latency of the calls.
+	 * @return The mean latency, in microseconds.
+	 */
+	double getMeanMicros();
+
+	/**
+	 * Returns the median latency of the calls.
+	 * @return The median latency, in microseconds.
+	 */
+	double get50thPercentileMicros();
+
+	/**
+	 * Returns the latency below which 99% of the calls finished.
+	 * @return The latency, in microseconds.
+	 */
+	double get99thPercentileMicros();
+
+	/**
+	 * Returns the latency below which 99.9% of the calls finished.
+	 * @return The latency, in microseconds.
+	 */
+	double get999thPercentileMicros();
+
+	/**
+	 * Returns the highest latency of the calls.
+	 * @return The highest latency, in microseconds.
+	 */
+	double getMaxMicros();
+
+	/**
+	 * Forgets the calls finished.
+	 */
+	void reset();
+
+}
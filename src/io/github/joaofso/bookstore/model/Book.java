@@ -4,45 +4,61 @@ import java.math.BigDecimal;
 
 /**
  * This class represents the book entity, with title, author and price, as
- * proposed in the exercise.
+ * proposed in the exercise. Two books are equal when the three fields are
+ * equal. The price is kept as {@link Money}, so two prices are equal when
+ * they have the same number of cents, whatever their scale. The books read from the
+ * storage are shared through a {@link BookRegistry}.
+ * 
+ * A book cannot be changed once created, since the same instance is shared by
+ * every session and is a key of the hash maps of the shopping baskets and the
+ * stock; a book with another title, author or price is another book.
  * 
  * @author João Felipe
  *
  */
 public class Book {
 
-	private String title;
-	private String author;
-	private BigDecimal price;
+	private final String title;
+	private final String author;
+	private final Money price;
 
+	/**
+	 * Constructor of the book.
+	 * @param title The title of the book.
+	 * @param author The author of the book.
+	 * @param price The price of the book.
+	 * @throws ArithmeticException Thrown if the price has a fraction of a cent.
+	 */
 	public Book(String title, String author, BigDecimal price) {
-		this.setTitle(title);
-		this.setAuthor(author);
-		this.setPrice(price);
+		this(title, author, Money.valueOf(price));
 	}
 
-	public String getTitle() {
-		return title;
+	public Book(String title, String author, Money price) {
+		this.title = title;
+		this.author = author;
+		this.price = price;
 	}
 
-	public void setTitle(String title) {
-		this.title = title;
+	public String getTitle() {
+		return title;
 	}
 
 	public String getAuthor() {
 		return author;
 	}
 
-	public void setAuthor(String author) {
-		this.author = author;
-	}
-
+	/**
+	 * Returns the price as a decimal number with two decimal places. It is
+	 * created on every call, so the code that only compares or sums prices uses
+	 * {@link #getPriceMoney()}.
+	 * @return The price of the book.
+	 */
 	public BigDecimal getPrice() {
-		return price;
+		return price.toBigDecimal();
 	}
 
-	public void setPrice(BigDecimal price) {
-		this.price = price;
+	public Money getPriceMoney() {
+		return price;
 	}
 
 	public boolean equals(Object obj) {
@@ -52,6 +68,10 @@ public class Book {
 		Book toCompare = (Book) obj;
 		return 	this.getTitle().equals(toCompare.getTitle()) &&
 				this.getAuthor().equals(toCompare.getAuthor()) &&
-				this.getPrice().equals(toCompare.getPrice());
+				this.getPriceMoney().equals(toCompare.getPriceMoney());
+	}
+
+	public int hashCode() {
+		return (this.getTitle().hashCode() * 31 + this.getAuthor().hashCode()) * 31 + this.getPriceMoney().hashCode();
 	}
 }
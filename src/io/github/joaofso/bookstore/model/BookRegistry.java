@@ -0,0 +1,102 @@
+package io.github.joaofso.bookstore.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps one shared instance of each book read from a storage, so a
+ * book listed a thousand times is created once, and the equal books returned by
+ * the same DAO are the same object. The titles and author names are
+ * deduplicated too, since the authors repeat a lot in a large catalog.
+ *
+ * The books are kept by title, next to the other books of the same title, and
+ * are found by comparing the author name and the number of cents of the price,
+ * so a book read again from the storage creates neither a book nor its price,
+ * and the titles and author names it holds are not kept.
+ *
+ * @author João Felipe
+ *
+ */
+public final class BookRegistry {
+
+	private final ConcurrentMap<String, Book[]> booksByTitle = new ConcurrentHashMap<String, Book[]>();
+	private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<String, String>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Returns the shared instance of a book.
+	 * @param title The title of the book.
+	 * @param author The author of the book.
+	 * @param price The price of the book, as written in the storage.
+	 * @return The shared instance of the book.
+	 * @throws NumberFormatException Thrown if the price is not a valid amount.
+	 */
+	public Book canonical(String title, String author, String price) {
+		long minorUnits = Money.parseMinorUnits(price);
+		Book shared = this.find(title, author, minorUnits);
+		return shared != null ? shared : this.register(title, author, Money.ofMinorUnits(minorUnits));
+	}
+
+	/**
+	 * Returns the shared instance of a book equal to the given one. The given
+	 * book itself is never shared, since it belongs to the caller.
+	 * @param book The book.
+	 * @return The shared instance of the book.
+	 */
+	public Book canonical(Book book) {
+		Book shared = this.find(book.getTitle(), book.getAuthor(), book.getPriceMoney().getMinorUnits());
+		return shared != null ? shared : this.register(book.getTitle(), book.getAuthor(), book.getPriceMoney());
+	}
+
+	/**
+	 * Returns the shared instance of a string.
+	 * @param value The string.
+	 * @return The shared instance of the string.
+	 */
+	public String intern(String value) {
+		String shared = this.strings.putIfAbsent(value, value);
+		return shared != null ? shared : value;
+	}
+
+	/**
+	 * Returns the number of books registered.
+	 * @return The number of books.
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	private Book find(String title, String author, long minorUnits) {
+		Book[] books = this.booksByTitle.get(title);
+		return books == null ? null : find(books, author, minorUnits);
+	}
+
+	private static Book find(Book[] books, String author, long minorUnits) {
+		for (Book book : books) {
+			if (book.getPriceMoney().getMinorUnits() == minorUnits && book.getAuthor().equals(author)) {
+				return book;
+			}
+		}
+		return null;
+	}
+
+	private Book register(String title, String author, Money price) {
+		Book book = new Book(this.intern(title), this.intern(author), price);
+		// the books of a title are replaced as a whole, so a lookup never sees a half written array
+		Book[] books = this.booksByTitle.merge(book.getTitle(), new Book[] { book }, (kept, added) -> {
+			if (find(kept, author, price.getMinorUnits()) != null) {
+				return kept;
+			}
+			Book[] grown = Arrays.copyOf(kept, kept.length + 1);
+			grown[kept.length] = book;
+			return grown;
+		});
+		Book shared = find(books, author, price.getMinorUnits());
+		if (shared == book) {
+			this.size.incrementAndGet();
+		}
+		return shared;
+	}
+}
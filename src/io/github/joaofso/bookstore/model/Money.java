@@ -0,0 +1,223 @@
+package io.github.joaofso.bookstore.model;
+
+import java.math.BigDecimal;
+
+/**
+ * This class represents an amount of money as a number of minor units, the
+ * cents, kept in a long. It is immutable, and the amounts are compared and
+ * summed as plain longs, so the prices of the books and the totals of the
+ * baskets do not allocate anything on the way.
+ *
+ * Two amounts are equal when they have the same number of minor units, so
+ * "10.5" and "10.50" are the same price.
+ *
+ * @author João Felipe
+ *
+ */
+public final class Money implements Comparable<Money> {
+
+	/**
+	 * The number of decimal places of the minor units.
+	 */
+	public static final int SCALE = 2;
+
+	public static final Money ZERO = new Money(0);
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L };
+	private static final String INVALID_AMOUNT = "Invalid amount of money: ";
+
+	private final long minorUnits;
+
+	private Money(long minorUnits) {
+		this.minorUnits = minorUnits;
+	}
+
+	/**
+	 * Returns the amount with a given number of minor units.
+	 * @param minorUnits The number of cents.
+	 * @return The amount.
+	 */
+	public static Money ofMinorUnits(long minorUnits) {
+		return minorUnits == 0 ? ZERO : new Money(minorUnits);
+	}
+
+	/**
+	 * Returns the amount of a decimal number.
+	 * @param amount The amount, with at most two decimal places other than zeros.
+	 * @return The amount.
+	 * @throws ArithmeticException Thrown if the amount has a fraction of a cent
+	 *         or does not fit in a long.
+	 */
+	public static Money valueOf(BigDecimal amount) {
+		return ofMinorUnits(amount.setScale(SCALE).unscaledValue().longValueExact());
+	}
+
+	/**
+	 * Parses an amount written like "1,000,000.00", as in the files of the
+	 * bookstore. The commas separating the thousands and the blanks around the
+	 * amount are ignored.
+	 * @param text The amount.
+	 * @return The amount.
+	 * @throws NumberFormatException Thrown if the text is not a valid amount.
+	 */
+	public static Money parse(CharSequence text) {
+		return ofMinorUnits(parseMinorUnits(text));
+	}
+
+	/**
+	 * Parses an amount as {@link #parse(CharSequence)} does, without creating
+	 * any object.
+	 * @param text The amount.
+	 * @return The number of minor units of the amount.
+	 * @throws NumberFormatException Thrown if the text is not a valid amount.
+	 */
+	public static long parseMinorUnits(CharSequence text) {
+		int start = 0;
+		int end = text.length();
+		while (start < end && text.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && text.charAt(end - 1) <= ' ') {
+			end--;
+		}
+
+		boolean negative = false;
+		if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+			negative = text.charAt(start) == '-';
+			start++;
+		}
+
+		long units = 0;
+		int digits = 0;
+		int decimals = -1;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (decimals >= SCALE) {
+					// only zeros may follow the cents
+					if (c != '0') {
+						throw invalid(text);
+					}
+					continue;
+				}
+				if (units > (Long.MAX_VALUE - (c - '0')) / 10) {
+					throw invalid(text);
+				}
+				units = units * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0) {
+					decimals++;
+				}
+			} else if (c == ',' && decimals < 0 && digits > 0) {
+				continue;
+			} else if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				throw invalid(text);
+			}
+		}
+		if (digits == 0) {
+			throw invalid(text);
+		}
+
+		int missing = SCALE - Math.max(decimals, 0);
+		if (units > Long.MAX_VALUE / POWERS_OF_TEN[missing]) {
+			throw invalid(text);
+		}
+		units *= POWERS_OF_TEN[missing];
+		return negative ? -units : units;
+	}
+
+	/**
+	 * Converts a decimal number given by its unscaled value and its scale, as
+	 * {@link BigDecimal} keeps it, without creating any object.
+	 * @param unscaledValue The digits of the number.
+	 * @param scale The number of decimal places.
+	 * @return The number of minor units of the amount.
+	 * @throws ArithmeticException Thrown if the amount has a fraction of a cent
+	 *         or does not fit in a long.
+	 */
+	public static long toMinorUnits(long unscaledValue, int scale) {
+		long units = unscaledValue;
+		for (int i = scale; i < SCALE; i++) {
+			units = Math.multiplyExact(units, 10);
+		}
+		for (int i = scale; i > SCALE; i--) {
+			if (units % 10 != 0) {
+				throw new ArithmeticException("Rounding necessary");
+			}
+			units /= 10;
+		}
+		return units;
+	}
+
+	public long getMinorUnits() {
+		return this.minorUnits;
+	}
+
+	public Money add(Money other) {
+		return ofMinorUnits(Math.addExact(this.minorUnits, other.minorUnits));
+	}
+
+	public Money subtract(Money other) {
+		return ofMinorUnits(Math.subtractExact(this.minorUnits, other.minorUnits));
+	}
+
+	public Money multiply(int quantity) {
+		return ofMinorUnits(Math.multiplyExact(this.minorUnits, quantity));
+	}
+
+	/**
+	 * Returns the amount as a decimal number with two decimal places.
+	 * @return The amount.
+	 */
+	public BigDecimal toBigDecimal() {
+		return BigDecimal.valueOf(this.minorUnits, SCALE);
+	}
+
+	public int compareTo(Money other) {
+		return Long.compare(this.minorUnits, other.minorUnits);
+	}
+
+	public boolean equals(Object obj) {
+		if (obj == null || !(obj instanceof Money)) {
+			return false;
+		}
+		return this.minorUnits == ((Money) obj).minorUnits;
+	}
+
+	public int hashCode() {
+		return Long.hashCode(this.minorUnits);
+	}
+
+	/**
+	 * Returns the amount with two decimal places and no separators, like
+	 * "1000000.00", which is how the storages write it.
+	 */
+	public String toString() {
+		return toString(this.minorUnits);
+	}
+
+	/**
+	 * Writes an amount given by its minor units as {@link #toString()} does.
+	 * @param minorUnits The number of cents.
+	 * @return The amount, like "1000000.00".
+	 */
+	public static String toString(long minorUnits) {
+		long whole = Math.abs(minorUnits / 100);
+		int cents = (int) Math.abs(minorUnits % 100);
+		StringBuilder text = new StringBuilder(24);
+		if (minorUnits < 0) {
+			text.append('-');
+		}
+		text.append(whole).append('.');
+		if (cents < 10) {
+			text.append('0');
+		}
+		return text.append(cents).toString();
+	}
+
+	private static NumberFormatException invalid(CharSequence text) {
+		return new NumberFormatException(INVALID_AMOUNT + text);
+	}
+}
@@ -1,26 +1,37 @@
 package io.github.joaofso.bookstore.model;
 
 import java.math.BigDecimal;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class represents the behavior of the shopping basket. It stores the
  * items, their quantities and the purchase total. Here, one can add and remove
  * items.
  * 
+ * The items are found by their book in a hash map, which keeps them in the
+ * order they were added, so the index of an item does not change while it is
+ * in the basket. The number of units and the total are kept up to date, so
+ * adding or removing any number of units of a book takes the same time. The
+ * total is kept in cents, so it is updated without creating any object.
+ * 
  * @author João Felipe
  *
  */
 public class ShoppingBasket {
 
 	private User buyer;
-	private List<ShoppingBasketItem> items;
-	private BigDecimal total;
+	private Map<Book, ShoppingBasketItem> items;
+	private long total;
+	private int units;
 
 	public ShoppingBasket() {
-		this.items = new LinkedList<ShoppingBasketItem>();
-		this.total = new BigDecimal("0");
+		this.items = new LinkedHashMap<Book, ShoppingBasketItem>();
+		this.total = 0;
+		this.units = 0;
 	}
 
 	/**
@@ -31,18 +42,38 @@ public class ShoppingBasket {
 	 * @return A boolean value indicating whether the book was added successfully.
 	 */
 	public boolean addItem(Book book) {
-		if (this.basketLimit()) {
+		return this.addItem(book, 1);
+	}
+
+	/**
+	 * Add units of a book to the shopping basket.
+	 * 
+	 * @param book
+	 *            The book to be added.
+	 * @param quantity
+	 *            The number of units to be added.
+	 * @return A boolean value indicating whether the units were added successfully.
+	 * @throws ArithmeticException Thrown if the units or the total would overflow,
+	 *         in which case the basket is left as it was.
+	 */
+	public boolean addItem(Book book, int quantity) {
+		if (quantity <= 0 || this.basketLimit()) {
 			return false;
 		}
 
-		ShoppingBasketItem item = this.getItem(book);
+		// every new value is computed before the basket is changed, so an overflow changes nothing
+		ShoppingBasketItem item = this.items.get(book);
+		int itemQuantity = Math.addExact(item == null ? 0 : item.getQuantity(), quantity);
+		int newUnits = Math.addExact(this.units, quantity);
+		long newTotal = Math.addExact(this.total, Math.multiplyExact(book.getPriceMoney().getMinorUnits(), quantity));
+
 		if (item == null) {
 			item = new ShoppingBasketItem(book, 0);
-			this.items.add(item);
+			this.items.put(book, item);
 		}
-
-		item.setQuantity(item.getQuantity() + 1);
-		this.total = this.total.add(book.getPrice());
+		item.setQuantity(itemQuantity);
+		this.units = newUnits;
+		this.total = newTotal;
 		return true;
 	}
 
@@ -53,7 +84,16 @@ public class ShoppingBasket {
 	 *         basket.
 	 */
 	public BigDecimal getTotal() {
-		return total;
+		return this.getTotalMoney().toBigDecimal();
+	}
+
+	/**
+	 * Returns the current total of the shopping basket.
+	 * 
+	 * @return The sum of all items in the shopping basket.
+	 */
+	public Money getTotalMoney() {
+		return Money.ofMinorUnits(this.total);
 	}
 
 	/**
@@ -65,32 +105,43 @@ public class ShoppingBasket {
 	 *         shopping basket in the first place.
 	 */
 	public boolean removeItem(Book book) {
-		ShoppingBasketItem item = this.getItem(book);
-		if (item == null) {
-			return false;
+		return this.removeItem(book, 1) == 1;
+	}
+
+	/**
+	 * Removes units of a book from the shopping basket. If there are not so many
+	 * units in the basket, every unit of the book is removed.
+	 * 
+	 * @param book The book to be removed from the basket.
+	 * @param quantity The number of units to be removed.
+	 * @return The number of units actually removed.
+	 */
+	public int removeItem(Book book, int quantity) {
+		ShoppingBasketItem item = this.items.get(book);
+		if (item == null || quantity <= 0) {
+			return 0;
 		}
 
-		if (item.getQuantity() == 1) {
-			this.items.remove(item);
+		int removed = Math.min(item.getQuantity(), quantity);
+		long newTotal = Math.subtractExact(this.total,
+				Math.multiplyExact(item.getItem().getPriceMoney().getMinorUnits(), removed));
+		if (removed == item.getQuantity()) {
+			this.items.remove(book);
 		} else {
-			item.setQuantity(item.getQuantity() - 1);
+			item.setQuantity(item.getQuantity() - removed);
 		}
-		this.total = this.total.subtract(book.getPrice());
-		return true;
+		this.units -= removed;
+		this.total = newTotal;
+		return removed;
 	}
 	
+	/**
+	 * Returns the items of the basket, in the order they were added.
+	 * 
+	 * @return A list with the items, which does not change with the basket.
+	 */
 	public List<ShoppingBasketItem> getItems(){
-		return this.items;
-	}
-
-	private ShoppingBasketItem getItem(Book book) {
-		for (ShoppingBasketItem shoppingBasketItem : items) {
-			if (shoppingBasketItem.contains(book)) {
-				return shoppingBasketItem;
-			}
-		}
-
-		return null;
+		return Collections.unmodifiableList(new ArrayList<ShoppingBasketItem>(this.items.values()));
 	}
 
 	/**
@@ -103,10 +154,6 @@ public class ShoppingBasket {
 	}
 
 	public int size() {
-		int size = 0;
-		for (ShoppingBasketItem shoppingBasketItem : items) {
-			size += shoppingBasketItem.getQuantity();
-		}
-		return size;
+		return this.units;
 	}
 }
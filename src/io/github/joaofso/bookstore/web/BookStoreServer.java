@@ -0,0 +1,429 @@
+package io.github.joaofso.bookstore.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.BookController;
+import io.github.joaofso.bookstore.control.BookStore;
+import io.github.joaofso.bookstore.control.SessionManager;
+import io.github.joaofso.bookstore.control.UserController;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.StorageProviders;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
+import io.github.joaofso.bookstore.model.ShoppingBasket;
+import io.github.joaofso.bookstore.model.ShoppingBasketItem;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * This class exposes the bookstore through HTTP, on the server built into the
+ * JDK, so it runs without a servlet container. Every request builds a
+ * {@link BookStore} over the same {@link SessionManager}, resuming the session
+ * of the token sent in the X-Session-Token header, so every shopper shares the
+ * same catalog and users.
+ *
+ * The parameters are sent in the query string or, for POST, as a form in the
+ * body, and the answers are JSON:
+ *
+ * POST /login (username, password): starts a session and returns its token;
+ * POST /logout: ends the session;
+ * GET /books (search): lists the books in stock, or searches them by keywords;
+ * GET /basket: returns the shopping basket;
+ * POST /basket/add and POST /basket/remove (title, author, price, quantity):
+ * changes the shopping basket;
+ * POST /buy: buys every book of the shopping basket and returns the status of
+ * each unit;
+ * POST /users (username, password, admin): creates a user; admins are created
+ * by admins only;
+ * POST /users/remove (username, password): removes an account, as in
+ * {@link BookStore#removeUser(String, String)};
+ * POST /admin/books (title, author, price, quantity): registers books, for
+ * admins only.
+ *
+ * A shopping basket holds at most 10000 units, since a purchase sends one
+ * element per unit, and a form in the body has at most 16 kilobytes; larger
+ * ones are refused with 413.
+ *
+ * Each request runs in its own virtual thread when the JDK has them, so a slow
+ * request never holds a pooled thread; on older JDKs a cached thread pool is
+ * used instead.
+ *
+ * Usage: BookStoreServer [port]
+ *
+ * @author João Felipe
+ *
+ */
+public class BookStoreServer {
+
+	/**
+	 * Header with the token of the session.
+	 */
+	public final static String SESSION_HEADER = "X-Session-Token";
+
+	/**
+	 * Maximum number of units in the shopping basket of a session.
+	 */
+	public final static int MAX_BASKET_UNITS = 10000;
+
+	/**
+	 * Maximum size, in bytes, of the body of a request.
+	 */
+	public final static int MAX_BODY_BYTES = 16 * 1024;
+
+	private final static int DEFAULT_PORT = 8080;
+	private final static String JSON_TYPE = "application/json; charset=utf-8";
+
+	private final static String IT_IS_NOT_POSSIBLE_START_SERVER = "It is not possible to start the server on port: ";
+	private final static String NOT_LOGGED_IN = "The user is not logged in";
+	private final static String NOT_ADMIN = "The user is not an admin";
+	private final static String NOT_FOUND = "There is no such resource";
+	private final static String WRONG_METHOD = "The method is not allowed for this resource";
+	private final static String MISSING_PARAMETER = "Missing parameter: ";
+	private final static String INVALID_PARAMETER = "Invalid parameter: ";
+	private final static String OPERATION_FAILED = "The operation could not be performed";
+	private final static String BASKET_FULL = "The shopping basket cannot hold more than " + MAX_BASKET_UNITS + " units";
+	private final static String BODY_TOO_LARGE = "The request body cannot be larger than " + MAX_BODY_BYTES + " bytes";
+
+	private final SessionManager sessionManager;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * Constructor of the server, which is not started yet.
+	 * @param sessionManager The session manager shared by the requests.
+	 * @param port The port to listen to, or 0 for any free port.
+	 * @throws BookstoreException Thrown if the port cannot be bound.
+	 */
+	public BookStoreServer(SessionManager sessionManager, int port) throws BookstoreException {
+		this.sessionManager = sessionManager;
+		try {
+			this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		} catch (IOException e) {
+			throw new BookstoreException(IT_IS_NOT_POSSIBLE_START_SERVER + port);
+		}
+		this.executor = newRequestExecutor();
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/", this::handle);
+	}
+
+	public static void main(String[] args) {
+		try {
+			int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+			StorageProvider provider = StorageProviders.get();
+			SessionManager sessionManager = new SessionManager(new BookController(provider.createBookDAO()),
+					new UserController(provider.createUserDAO()));
+			BookStoreServer server = new BookStoreServer(sessionManager, port);
+			server.start();
+			System.out.println("The bookstore is listening on port " + server.getPort());
+		} catch (BookstoreException | NumberFormatException e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	public void start() {
+		this.server.start();
+	}
+
+	/**
+	 * Stops the server, waiting at most a second for the requests being handled.
+	 */
+	public void stop() {
+		this.server.stop(1);
+		this.executor.shutdown();
+	}
+
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			Map<String, String> parameters = parameters(exchange);
+			BookStore bookStore = new BookStore(this.sessionManager,
+					exchange.getRequestHeaders().getFirst(SESSION_HEADER));
+			String answer = this.dispatch(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), parameters,
+					bookStore);
+			respond(exchange, 200, answer);
+		} catch (RequestException e) {
+			respond(exchange, e.status, Json.field("error", e.getMessage()));
+		} catch (RuntimeException e) {
+			respond(exchange, 500, Json.field("error", OPERATION_FAILED));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private String dispatch(String method, String path, Map<String, String> parameters, BookStore bookStore)
+			throws RequestException {
+		switch (path) {
+		case "/login":
+			requirePost(method);
+			try {
+				bookStore.loginUser(required(parameters, "username"), required(parameters, "password"));
+			} catch (BookstoreException e) {
+				throw new RequestException(401, e.getMessage());
+			}
+			return Json.field("token", bookStore.getSessionToken());
+
+		case "/logout":
+			requirePost(method);
+			bookStore.logoutUser();
+			return "{}";
+
+		case "/books":
+			requireGet(method);
+			requireUser(bookStore);
+			String search = parameters.get("search");
+			return Json.books(bookStore.list(search == null ? "" : search));
+
+		case "/basket":
+			requireGet(method);
+			requireUser(bookStore);
+			return Json.basket(bookStore.getShoppingBasket());
+
+		case "/basket/add":
+			requirePost(method);
+			requireUser(bookStore);
+			Book book = book(parameters);
+			int quantity = quantity(parameters);
+			if (quantity > MAX_BASKET_UNITS - bookStore.getShoppingBasket().size()) {
+				throw new RequestException(400, BASKET_FULL);
+			}
+			try {
+				if (!bookStore.add(book, quantity)) {
+					throw new RequestException(400, OPERATION_FAILED);
+				}
+			} catch (BookstoreException e) {
+				throw new RequestException(400, e.getMessage());
+			}
+			return Json.basket(bookStore.getShoppingBasket());
+
+		case "/basket/remove":
+			requirePost(method);
+			requireUser(bookStore);
+			try {
+				bookStore.remove(book(parameters), quantity(parameters));
+			} catch (BookstoreException e) {
+				throw new RequestException(400, e.getMessage());
+			}
+			return Json.basket(bookStore.getShoppingBasket());
+
+		case "/buy":
+			requirePost(method);
+			requireUser(bookStore);
+			Book[] books = units(bookStore.getShoppingBasket());
+			return Json.purchase(books, bookStore.buy(books));
+
+		case "/users":
+			requirePost(method);
+			if (!bookStore.addNewUser(required(parameters, "username"), required(parameters, "password"),
+					Boolean.parseBoolean(parameters.get("admin")))) {
+				throw new RequestException(409, OPERATION_FAILED);
+			}
+			return "{}";
+
+		case "/users/remove":
+			requirePost(method);
+			requireUser(bookStore);
+			if (!bookStore.removeUser(required(parameters, "username"), required(parameters, "password"))) {
+				throw new RequestException(403, OPERATION_FAILED);
+			}
+			return "{}";
+
+		case "/admin/books":
+			requirePost(method);
+			if (!requireUser(bookStore).isAdmin()) {
+				throw new RequestException(403, NOT_ADMIN);
+			}
+			if (!bookStore.addNewBook(required(parameters, "title"), required(parameters, "author"),
+					required(parameters, "price"), quantity(parameters))) {
+				throw new RequestException(400, OPERATION_FAILED);
+			}
+			return "{}";
+
+		default:
+			throw new RequestException(404, NOT_FOUND);
+		}
+	}
+
+	/**
+	 * Uses a virtual thread per request if the JDK has them. They are reached by
+	 * reflection, since the project is still built for Java 8.
+	 */
+	private static ExecutorService newRequestExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "BookStoreServer-request");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private static User requireUser(BookStore bookStore) throws RequestException {
+		User user = bookStore.getLoggedUser();
+		if (user == null) {
+			throw new RequestException(401, NOT_LOGGED_IN);
+		}
+		return user;
+	}
+
+	private static void requireGet(String method) throws RequestException {
+		if (!method.equals("GET")) {
+			throw new RequestException(405, WRONG_METHOD);
+		}
+	}
+
+	private static void requirePost(String method) throws RequestException {
+		if (!method.equals("POST")) {
+			throw new RequestException(405, WRONG_METHOD);
+		}
+	}
+
+	private static String required(Map<String, String> parameters, String name) throws RequestException {
+		String value = parameters.get(name);
+		if (value == null) {
+			throw new RequestException(400, MISSING_PARAMETER + name);
+		}
+		return value;
+	}
+
+	private static Book book(Map<String, String> parameters) throws RequestException {
+		try {
+			return new Book(required(parameters, "title"), required(parameters, "author"),
+					Money.parse(required(parameters, "price")));
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, INVALID_PARAMETER + "price");
+		}
+	}
+
+	private static int quantity(Map<String, String> parameters) throws RequestException {
+		String value = parameters.get("quantity");
+		try {
+			int quantity = value == null ? 1 : Integer.parseInt(value);
+			if (quantity <= 0) {
+				throw new RequestException(400, INVALID_PARAMETER + "quantity");
+			}
+			return quantity;
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, INVALID_PARAMETER + "quantity");
+		}
+	}
+
+	/**
+	 * Lists one element per unit of the basket, as the purchase takes them.
+	 */
+	private static Book[] units(ShoppingBasket basket) throws RequestException {
+		List<ShoppingBasketItem> items = basket.getItems();
+		long units = 0;
+		for (ShoppingBasketItem item : items) {
+			units += item.getQuantity();
+		}
+		// the baskets filled outside this server are checked too
+		if (units > MAX_BASKET_UNITS) {
+			throw new RequestException(400, BASKET_FULL);
+		}
+		List<Book> books = new ArrayList<Book>((int) units);
+		for (ShoppingBasketItem item : items) {
+			for (int i = 0; i < item.getQuantity(); i++) {
+				books.add(item.getItem());
+			}
+		}
+		return books.toArray(new Book[books.size()]);
+	}
+
+	private static Map<String, String> parameters(HttpExchange exchange) throws IOException, RequestException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+		if (exchange.getRequestMethod().equals("POST")) {
+			parseForm(new String(readBody(exchange), StandardCharsets.UTF_8), parameters);
+		}
+		return parameters;
+	}
+
+	private static void parseForm(String form, Map<String, String> parameters) throws RequestException {
+		if (form == null || form.isEmpty()) {
+			return;
+		}
+		try {
+			for (String pair : form.split("&")) {
+				int separator = pair.indexOf('=');
+				String name = separator < 0 ? pair : pair.substring(0, separator);
+				String value = separator < 0 ? "" : pair.substring(separator + 1);
+				parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			}
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new RequestException(400, INVALID_PARAMETER + form);
+		}
+	}
+
+	/**
+	 * Reads the body of a request, refusing it as soon as it is known to be too
+	 * large: by its Content-Length or, without one, by the bytes read so far.
+	 */
+	private static byte[] readBody(HttpExchange exchange) throws IOException, RequestException {
+		String length = exchange.getRequestHeaders().getFirst("Content-Length");
+		try {
+			if (length != null && Long.parseLong(length.trim()) > MAX_BODY_BYTES) {
+				throw new RequestException(413, BODY_TOO_LARGE);
+			}
+		} catch (NumberFormatException e) {
+			throw new RequestException(400, INVALID_PARAMETER + "Content-Length");
+		}
+		InputStream input = exchange.getRequestBody();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = input.read(buffer)) > 0) {
+			if (bytes.size() + read > MAX_BODY_BYTES) {
+				throw new RequestException(413, BODY_TOO_LARGE);
+			}
+			bytes.write(buffer, 0, read);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	/**
+	 * A request that cannot be answered, with the HTTP status of the answer.
+	 */
+	private static class RequestException extends Exception {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int status;
+
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package io.github.joaofso.bookstore.web;
+
+import java.util.List;
+
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
+import io.github.joaofso.bookstore.model.ShoppingBasket;
+import io.github.joaofso.bookstore.model.ShoppingBasketItem;
+
+/**
+ * This class writes the JSON answers of the HTTP server. The answers are small
+ * and have a fixed shape, so they are written by hand instead of through a
+ * library. The prices are written as strings with two decimal places, as
+ * {@link Money} writes them, so they are sent back without losing a cent.
+ *
+ * @author João Felipe
+ *
+ */
+final class Json {
+
+	private Json() {
+	}
+
+	static String string(String value) {
+		StringBuilder json = new StringBuilder(value.length() + 2);
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	static String field(String name, String value) {
+		return "{" + string(name) + ":" + string(value) + "}";
+	}
+
+	static String book(Book book) {
+		return "{\"title\":" + string(book.getTitle()) + ",\"author\":" + string(book.getAuthor()) + ",\"price\":"
+				+ string(book.getPriceMoney().toString()) + "}";
+	}
+
+	static String books(Book[] books) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < books.length; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append(book(books[i]));
+		}
+		return json.append(']').toString();
+	}
+
+	static String basket(ShoppingBasket basket) {
+		StringBuilder json = new StringBuilder("{\"items\":[");
+		List<ShoppingBasketItem> items = basket.getItems();
+		for (int i = 0; i < items.size(); i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			String book = book(items.get(i).getItem());
+			json.append(book, 0, book.length() - 1).append(",\"quantity\":").append(items.get(i).getQuantity())
+					.append('}');
+		}
+		return json.append("],\"total\":").append(string(basket.getTotalMoney().toString())).append('}').toString();
+	}
+
+	static String purchase(Book[] books, int[] statuses) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < books.length; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			String book = book(books[i]);
+			json.append(book, 0, book.length() - 1).append(",\"status\":").append(statuses[i]).append('}');
+		}
+		return json.append(']').toString();
+	}
+}
@@ -10,8 +10,22 @@ import org.junit.runner.notification.Failure;
 @RunWith(JUnitPlatform.class)
 @SelectClasses({
 	io.github.joaofso.bookstore.control.dao.impl.BookDAOXMLTest.class,
+	io.github.joaofso.bookstore.control.dao.impl.BookDAOBinaryTest.class,
+	io.github.joaofso.bookstore.control.dao.impl.BookDAOJDBCTest.class,
 	io.github.joaofso.bookstore.control.dao.impl.UserDAOXMLTest.class,
-	io.github.joaofso.bookstore.control.BookStoreTest.class
+	io.github.joaofso.bookstore.control.dao.impl.MemoryStorageProviderTest.class,
+	io.github.joaofso.bookstore.control.BookStoreTest.class,
+	io.github.joaofso.bookstore.control.InventoryTest.class,
+	io.github.joaofso.bookstore.control.SessionManagerTest.class,
+	io.github.joaofso.bookstore.control.QueryCacheTest.class,
+	io.github.joaofso.bookstore.control.BulkBookLoaderTest.class,
+	io.github.joaofso.bookstore.control.ListProfilerTest.class,
+	io.github.joaofso.bookstore.model.MoneyTest.class,
+	io.github.joaofso.bookstore.model.BookRegistryTest.class,
+	io.github.joaofso.bookstore.model.ShoppingBasketTest.class,
+	io.github.joaofso.bookstore.metrics.LatencyHistogramTest.class,
+	io.github.joaofso.bookstore.metrics.MetricsTest.class,
+	io.github.joaofso.bookstore.web.BookStoreServerTest.class
 })
 public class AllTests {
 
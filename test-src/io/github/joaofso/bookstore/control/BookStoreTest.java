@@ -21,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import io.github.joaofso.bookstore.aux.BookstoreException;
 import io.github.joaofso.bookstore.aux.PurchaseStatus;
 import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.Money;
 import io.github.joaofso.bookstore.model.ShoppingBasket;
 import io.github.joaofso.bookstore.model.ShoppingBasketItem;
 
@@ -122,6 +123,9 @@ public class BookStoreTest {
 			String username = "regularuser";
 			String password = "regularpassword";
 			store.addNewUser(username, password, false);
+			
+//			without a session no user is removed
+			assertFalse(store.removeUser(username, password));
 			store.loginUser(username, password);
 			
 			username = "regularuser2";
@@ -306,7 +310,7 @@ public class BookStoreTest {
 		store.loginUser(username, password);
 		
 		ShoppingBasket basket = store.getShoppingBasket();
-		assertEquals(BigDecimal.valueOf(0), basket.getTotal());
+		assertEquals(Money.ZERO, basket.getTotalMoney());
 		assertEquals(0, basket.getItems().size());
 		
 //		adding a book to the shopping basket
@@ -329,6 +333,40 @@ public class BookStoreTest {
 		
 	}
 	
+	@Test
+	void testBulkBasketQuantities() {
+
+	try {
+		BookStore store = new BookStore();
+		populateBooksDatabase();
+		store.loginUser("adm", "admpass");
+		
+		ShoppingBasket basket = store.getShoppingBasket();
+		Book mastering = store.list("Mastering")[0];
+		Book money = store.list("Money")[0];
+		
+//		many units of a book are one item, added and removed at once
+		store.add(mastering, 1000);
+		store.add(money, 2);
+		store.add(mastering, 500);
+		assertEquals(2, basket.getItems().size());
+		assertEquals(1502, basket.size());
+		assertTrue(new BigDecimal("3143000.00").compareTo(basket.getTotal()) == 0);
+		assertEquals(mastering, basket.getItems().get(0).getItem());
+		
+		assertEquals(1400, basket.removeItem(mastering, 1400));
+		assertEquals(102, basket.size());
+		assertEquals(2, basket.removeItem(money, 5));
+		assertEquals(0, basket.removeItem(money, 1));
+		assertEquals(1, basket.getItems().size());
+		assertTrue(new BigDecimal("76200.00").compareTo(basket.getTotal()) == 0);
+		
+	} catch (BookstoreException e) {
+		fail("It should not reach this line!");
+	}
+		
+	}
+	
 	@Test
 	void testRemoveBasketBook() {
 		try {
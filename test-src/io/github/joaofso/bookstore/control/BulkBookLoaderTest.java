@@ -0,0 +1,98 @@
+package io.github.joaofso.bookstore.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.impl.MemoryStorageProvider;
+import io.github.joaofso.bookstore.model.Book;
+
+public class BulkBookLoaderTest {
+
+	private final static String INITIAL_FILE_SET = "./ContribeExerciseData.txt";
+
+	private BookDAO bookDAO;
+
+	@BeforeEach
+	void createStorage() {
+		this.bookDAO = new MemoryStorageProvider().createBookDAO();
+	}
+
+	@Test
+	void testExerciseFile() {
+		try {
+			BulkBookLoader.Report report = new BulkBookLoader(this.bookDAO).load(new File(INITIAL_FILE_SET));
+
+			//The values tested here come from the example file provided in the exercise page
+			assertEquals(7, report.getLines());
+			assertEquals(7, report.getBooks());
+			assertEquals(47, report.getUnits());
+			assertEquals(0, report.getRejectedLines().size());
+			assertEquals(6, this.bookDAO.listAll().size());
+			assertEquals(1, this.bookDAO.getStock(new Book("How To Spend Money", "Rich Bloke", new BigDecimal("1000000"))));
+			assertEquals(0, this.bookDAO.getStock(new Book("Desired", "Rich Bloke", new BigDecimal("564.50"))));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testMalformedLinesAndMergedQuantities() {
+		String inventory = "Generic Title;First Author;185.50;5\n"
+				+ "Generic Title;First Author\n"
+				+ "\n"
+				+ "Generic Title;First Author;185.5;2\n"
+				+ ";First Author;10.00;1\n"
+				+ "Cheap Title;Second Author;ten;1\n"
+				+ "Cheap Title;Second Author;10.00;-1\n"
+				+ "Cheap Title;Second Author;10.00;1;extra\n"
+				+ "Cheap Title;Second Author;1,000.00;3";
+		try {
+			BulkBookLoader.Report report = new BulkBookLoader(this.bookDAO).load(new StringReader(inventory));
+
+			assertEquals(9, report.getLines());
+			assertEquals(2, report.getBooks());
+			assertEquals(10, report.getUnits());
+			assertEquals(Arrays.asList("Line 2: expected title;author;price;quantity", "Line 5: empty title or author",
+					"Line 6: invalid price", "Line 7: invalid quantity", "Line 8: expected title;author;price;quantity"),
+					report.getRejectedLines());
+			assertEquals(7, this.bookDAO.getStock(new Book("Generic Title", "First Author", new BigDecimal("185.50"))));
+			assertEquals(3, this.bookDAO.getStock(new Book("Cheap Title", "Second Author", new BigDecimal("1000"))));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testManyChunks() {
+		StringBuilder inventory = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			inventory.append("Title ").append(i % 1000).append(";Author ").append(i % 1000 % 7).append(";").append(i % 1000)
+					.append(".50;1\n");
+		}
+		try {
+			BulkBookLoader.Report report = new BulkBookLoader(this.bookDAO).load(new StringReader(inventory.toString()));
+
+			//Each book repeats fifty times, in lines parsed in different chunks
+			assertEquals(50000, report.getLines());
+			assertEquals(1000, report.getBooks());
+			assertEquals(1000, this.bookDAO.listAll().size());
+			assertEquals(50, this.bookDAO.getStock(new Book("Title 999", "Author 5", new BigDecimal("999.50"))));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+package io.github.joaofso.bookstore.control;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.impl.BookDAOXML;
+import io.github.joaofso.bookstore.model.Book;
+
+public class InventoryTest {
+
+	private final static String DEFAULT_BOOK_FILE = "./BookDatabase.xml";
+
+	private final Book randomSales = new Book("Random Sales", "Cunning Bastard", new BigDecimal("999.00"));
+	private final Book richBloke = new Book("How To Spend Money", "Rich Bloke", new BigDecimal("1000000.00"));
+	private final Book inexistent = new Book("Inexistent Title", "Nobody", BigDecimal.ONE);
+
+	private BookDAO bookDAO;
+
+	@BeforeEach
+	void populateBooksDatabase() throws BookstoreException {
+		this.cleanBooksDatabase();
+		this.bookDAO = new BookDAOXML();
+		this.bookDAO.incrementStock(this.randomSales, 20);
+		this.bookDAO.incrementStock(this.richBloke, 1);
+	}
+
+	@Test
+	void testCheckout() {
+		Inventory inventory = new Inventory(this.bookDAO, false);
+
+		PurchaseStatus[] statuses = inventory.checkout(this.richBloke, this.inexistent, this.richBloke,
+				this.randomSales);
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK, PurchaseStatus.DOES_NOT_EXIST,
+				PurchaseStatus.NOT_IN_STOCK, PurchaseStatus.OK }, statuses);
+		assertEquals(0, inventory.getStock(this.richBloke));
+		assertEquals(-1, inventory.getStock(this.inexistent));
+
+		//Without the write behind, the DAO is updated before the purchase returns
+		assertEquals(0, this.bookDAO.getStock(this.richBloke));
+		assertEquals(19, this.bookDAO.getStock(this.randomSales));
+
+		//Restocking registers the book in the counter and in the DAO
+		assertEquals(true, inventory.add(this.inexistent, 2));
+		assertEquals(2, inventory.remove(this.inexistent, 5));
+		assertEquals(0, this.bookDAO.getStock(this.inexistent));
+	}
+
+	@Test
+	void testStockChangedOutsideTheInventory() {
+		Inventory inventory = new Inventory(this.bookDAO, false);
+		assertEquals(20, inventory.getStock(this.randomSales));
+
+		//The DAO has the last word, and the counter is read again
+		this.bookDAO.decrementStock(this.randomSales, 19);
+		assertEquals(1, inventory.remove(this.randomSales, 2));
+		assertEquals(0, inventory.getStock(this.randomSales));
+	}
+
+	@Test
+	void testStockAddedOutsideTheInventory() {
+		Inventory inventory = new Inventory(this.bookDAO, false);
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.DOES_NOT_EXIST }, inventory.checkout(this.inexistent));
+		assertEquals(1, inventory.remove(this.richBloke, Integer.MAX_VALUE));
+		assertEquals(0, inventory.getStock(this.richBloke));
+
+		//The books not registered keep no counter
+		assertEquals(1, inventory.size());
+
+		//The counters that cannot serve a purchase are read again from the DAO
+		this.bookDAO.incrementStock(this.inexistent, 5);
+		this.bookDAO.incrementStock(this.richBloke, 2);
+		assertEquals(5, inventory.getStock(this.inexistent));
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK, PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK },
+				inventory.checkout(this.richBloke, this.richBloke, this.richBloke));
+		assertEquals(0, this.bookDAO.getStock(this.richBloke));
+	}
+
+	@Test
+	void testStockOverflow() {
+		Inventory inventory = new Inventory(this.bookDAO, false);
+		assertEquals(true, inventory.add(this.inexistent, Integer.MAX_VALUE));
+
+		//The counter agrees with the DAO, which refuses a stock larger than an int holds
+		assertEquals(false, inventory.add(this.inexistent, 2));
+		assertEquals(Integer.MAX_VALUE, inventory.getStock(this.inexistent));
+		assertEquals(Integer.MAX_VALUE, this.bookDAO.getStock(this.inexistent));
+	}
+
+	@Test
+	void testRefusedWriteBehindCheckouts() {
+		Inventory inventory = new Inventory(this.bookDAO, true);
+		assertEquals(20, inventory.getStock(this.randomSales));
+
+		//The purchase is answered by the counter, and then refused by the DAO
+		this.bookDAO.decrementStock(this.randomSales, 20);
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK }, inventory.checkout(this.randomSales));
+		inventory.flush();
+		assertEquals(1, inventory.getRefusedWrites());
+		assertEquals(0, inventory.getStock(this.randomSales));
+		inventory.close();
+
+		//After closing, the purchases are persisted before they return
+		this.bookDAO.incrementStock(this.randomSales, 1);
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK }, inventory.checkout(this.randomSales));
+		assertEquals(0, this.bookDAO.getStock(this.randomSales));
+	}
+
+	@Test
+	void testConcurrentWriteBehindCheckouts() throws Exception {
+		Inventory inventory = new Inventory(this.bookDAO, true);
+		AtomicInteger bought = new AtomicInteger();
+
+		//Several shoppers fight for the 20 units of the same book
+		Thread[] shoppers = new Thread[8];
+		for (int i = 0; i < shoppers.length; i++) {
+			shoppers[i] = new Thread(() -> {
+				for (int j = 0; j < 5; j++) {
+					if (inventory.checkout(this.randomSales)[0] == PurchaseStatus.OK) {
+						bought.incrementAndGet();
+					}
+				}
+			});
+			shoppers[i].start();
+		}
+		for (Thread shopper : shoppers) {
+			shopper.join();
+		}
+
+		//No unit is sold twice, and the sold out book leaves the listings right away
+		assertEquals(20, bought.get());
+		assertEquals(0, inventory.getStock(this.randomSales));
+		assertEquals(1, inventory.inStock(this.bookDAO.listAll()).size());
+
+		inventory.flush();
+		assertEquals(0, this.bookDAO.getStock(this.randomSales));
+		assertEquals(1, this.bookDAO.listAll().size());
+	}
+
+	@AfterEach
+	void cleanBooksDatabase() {
+		File bookDbFile = new File(DEFAULT_BOOK_FILE);
+		if (bookDbFile.exists()) {
+			bookDbFile.delete();
+		}
+	}
+
+}
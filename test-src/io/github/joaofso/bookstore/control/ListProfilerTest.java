@@ -0,0 +1,98 @@
+package io.github.joaofso.bookstore.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.control.dao.impl.MemoryStorageProvider;
+
+public class ListProfilerTest {
+
+	private File logFile;
+
+	@BeforeEach
+	void createLogFile() throws Exception {
+		this.logFile = File.createTempFile("ListProfilerTest", ".log");
+	}
+
+	@AfterEach
+	void deleteLogFiles() {
+		for (String suffix : new String[] { "", ".1", ".2", ".3" }) {
+			new File(this.logFile.getPath() + suffix).delete();
+		}
+	}
+
+	@Test
+	void testSlowQueries() throws Exception {
+		MemoryStorageProvider provider = new MemoryStorageProvider();
+		BookController bookController = new BookController(provider.createBookDAO());
+		UserController userController = new UserController(provider.createUserDAO());
+		bookController.add("Mastering åäö", "Average Swede", "762.00", 2);
+		bookController.add("How To Spend Money", "Rich Bloke", "1000000.00", 1);
+		userController.createUser("first", "password", false);
+
+		SessionManager sessionManager = new SessionManager(bookController, userController);
+		SlowQueryLog log = new SlowQueryLog(this.logFile);
+		//Every listing is slower than no time at all, so every one is logged
+		sessionManager.setListProfiler(new ListProfiler(0, TimeUnit.MILLISECONDS, log));
+		String token = sessionManager.login("first", "password").getToken();
+
+		assertEquals(1, sessionManager.list(token, "Swede").length);
+		assertEquals(1, sessionManager.list(token, "Swede Swede").length);
+		assertEquals(1, sessionManager.list(token, "Spend \"Money\"").length);
+		assertEquals(0, sessionManager.list("no session", "Swede").length);
+		log.close();
+
+		List<String> lines = Files.readAllLines(this.logFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals(4, lines.size());
+		assertEquals(4, log.getWritten());
+		assertTrue(lines.get(0).startsWith("{\"time\":\""));
+		assertTrue(lines.get(0).contains("\"search\":\"Swede\""));
+		assertTrue(lines.get(0).contains("\"cacheHit\":false,\"xmlParses\":0,\"examined\":1,\"returned\":1}"));
+		//The same keywords are answered by the query cache, without searching the storage
+		assertTrue(lines.get(1).contains("\"searchMicros\":0,\"stockFilterMicros\":0,\"cacheHit\":true"));
+		//The search is escaped in the JSON line
+		assertTrue(lines.get(2).contains("\"search\":\"Spend \\\"Money\\\"\""));
+		assertTrue(lines.get(2).contains("\"cacheHit\":false,\"xmlParses\":0,\"examined\":1,\"returned\":1}"));
+		//Without a session, neither the cache nor the storage is looked up
+		assertTrue(lines.get(3).contains("\"cacheHit\":false,\"xmlParses\":0,\"examined\":0,\"returned\":0}"));
+
+		//Without a profiler, nothing is logged
+		sessionManager.setListProfiler(null);
+		assertEquals(1, sessionManager.list(token, "Money").length);
+		assertFalse(log.write("closed"));
+	}
+
+	@Test
+	void testRotation() throws Exception {
+		SlowQueryLog log = new SlowQueryLog(this.logFile, 100, 2);
+		for (int i = 0; i < 50; i++) {
+			log.write("{\"line\":" + i + ",\"padding\":\"åäö\"}");
+			if (i % 10 == 0) {
+				//Lets the queue drain, so no line is dropped
+				Thread.sleep(10);
+			}
+		}
+		log.close();
+
+		//Only the current file and two rotated ones are kept, each one just past the limit
+		assertTrue(new File(this.logFile.getPath() + ".1").exists());
+		assertTrue(new File(this.logFile.getPath() + ".2").exists());
+		assertFalse(new File(this.logFile.getPath() + ".3").exists());
+		assertTrue(this.logFile.length() < 200);
+		List<String> lines = Files.readAllLines(this.logFile.toPath(), StandardCharsets.UTF_8);
+		assertEquals("{\"line\":49,\"padding\":\"åäö\"}", lines.get(lines.size() - 1));
+		assertEquals(50, log.getWritten() + log.getDropped());
+	}
+
+}
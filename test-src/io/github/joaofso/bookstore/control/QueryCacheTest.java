@@ -0,0 +1,147 @@
+package io.github.joaofso.bookstore.control;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.impl.MemoryStorageProvider;
+import io.github.joaofso.bookstore.model.Book;
+
+public class QueryCacheTest {
+
+	private BookController bookController;
+	private SessionManager sessionManager;
+	private String token;
+
+	@BeforeEach
+	void populateStorage() {
+		try {
+			MemoryStorageProvider provider = new MemoryStorageProvider();
+			this.bookController = new BookController(provider.createBookDAO());
+			UserController userController = new UserController(provider.createUserDAO());
+			this.bookController.add("Mastering åäö", "Average Swede", "762.00", 1);
+			this.bookController.add("How To Spend Money", "Rich Bloke", "1000000.00", 2);
+			this.bookController.add("Generic Title", "First Author", "185.50", 5);
+			userController.createUser("shopper", "password", false);
+
+			this.sessionManager = new SessionManager(this.bookController, userController);
+			this.token = this.sessionManager.login("shopper", "password").getToken();
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testHitsAndMisses() {
+		QueryCache queryCache = this.sessionManager.getQueryCache();
+
+		assertEquals(2, this.sessionManager.list(this.token, "Swede Money").length);
+		assertEquals(2, this.sessionManager.list(this.token, "Money Swede Swede").length);
+		assertEquals(0, this.sessionManager.list(this.token, "Desired").length);
+		assertEquals(0, this.sessionManager.list(this.token, "Desired").length);
+		assertEquals(3, this.sessionManager.list(this.token, "").length);
+		assertEquals(3, this.sessionManager.list(this.token, "").length);
+
+		//The same keywords in another order, and the empty results, are found in the cache
+		assertEquals(3, queryCache.getHits());
+		assertEquals(3, queryCache.getMisses());
+		assertEquals(3, queryCache.size());
+	}
+
+	@Test
+	void testInvalidation() {
+		QueryCache queryCache = this.sessionManager.getQueryCache();
+		Book swede = this.sessionManager.list(this.token, "Swede")[0];
+		Book money = this.sessionManager.list(this.token, "Money")[0];
+		this.sessionManager.list(this.token, "Title");
+		this.sessionManager.list(this.token, "Anoth");
+		this.sessionManager.list(this.token, "");
+
+		//A book still in stock stays in the results
+		this.sessionManager.buy(this.token, money);
+		assertEquals(0, queryCache.getInvalidations());
+
+		//A book sold out leaves the results of its terms and the list of all books
+		this.sessionManager.buy(this.token, swede);
+		assertEquals(2, queryCache.getInvalidations());
+		assertEquals(0, this.sessionManager.list(this.token, "Swede").length);
+		assertEquals(2, this.sessionManager.list(this.token, "").length);
+		assertEquals(1, this.sessionManager.list(this.token, "Money").length);
+
+		//A new book enters the results of the terms that are parts of its title or author name
+		try {
+			this.bookController.add("Another Title", "Rich Bloke", "10.00");
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+		assertEquals(2, this.sessionManager.list(this.token, "Title").length);
+		assertEquals(1, this.sessionManager.list(this.token, "Anoth").length);
+		assertEquals(3, this.sessionManager.list(this.token, "").length);
+		assertEquals(1, this.sessionManager.list(this.token, "Money").length);
+
+		//Every book entering or leaving the listings of the storage makes the results be read again
+		assertEquals(0, queryCache.getHits());
+	}
+
+	@Test
+	void testChangesThroughAnotherStore() {
+		try {
+			MemoryStorageProvider provider = new MemoryStorageProvider();
+			BookStore admin = new BookStore(provider);
+			BookStore shopper = new BookStore(provider);
+			admin.addNewUser("shopper", "password", false);
+			shopper.loginUser("shopper", "password");
+			assertEquals(0, shopper.list("Dune").length);
+
+			//The results follow the storage, even if the change was made by another controller
+			assertEquals(true, admin.addNewBook("Dune", "Frank Herbert", "20.00"));
+			assertEquals(1, shopper.list("Dune").length);
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testGenerationAndTimeToLive() {
+		AtomicLong generation = new AtomicLong();
+		QueryCache queryCache = new QueryCache(10, generation::get, 60000);
+		TreeSet<String> terms = new TreeSet<String>(Arrays.asList("first"));
+		queryCache.get(terms, () -> new Book[0]);
+		queryCache.get(terms, () -> new Book[0]);
+		assertEquals(1, queryCache.getHits());
+
+		//A result read under another generation of the storage is read again
+		generation.incrementAndGet();
+		queryCache.get(terms, () -> new Book[0]);
+		assertEquals(1, queryCache.getHits());
+		assertEquals(2, queryCache.getMisses());
+
+		//A result older than the time to live is read again
+		QueryCache expiring = new QueryCache(10, generation::get, -1);
+		expiring.get(terms, () -> new Book[0]);
+		expiring.get(terms, () -> new Book[0]);
+		assertEquals(0, expiring.getHits());
+	}
+
+	@Test
+	void testEvictions() {
+		QueryCache queryCache = new QueryCache(2);
+		for (String keyword : Arrays.asList("first", "second", "first", "third")) {
+			queryCache.get(new TreeSet<String>(Arrays.asList(keyword)), () -> new Book[0]);
+		}
+
+		//The least recently used result is dropped
+		assertEquals(1, queryCache.getEvictions());
+		assertEquals(2, queryCache.size());
+		queryCache.get(new TreeSet<String>(Arrays.asList("first")), () -> new Book[0]);
+		assertEquals(2, queryCache.getHits());
+	}
+
+}
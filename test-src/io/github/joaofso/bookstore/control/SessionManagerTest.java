@@ -0,0 +1,114 @@
+package io.github.joaofso.bookstore.control;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.dao.impl.MemoryStorageProvider;
+import io.github.joaofso.bookstore.model.Book;
+
+public class SessionManagerTest {
+
+	private BookController bookController;
+	private UserController userController;
+
+	@BeforeEach
+	void populateStorage() {
+		try {
+			MemoryStorageProvider provider = new MemoryStorageProvider();
+			this.bookController = new BookController(provider.createBookDAO());
+			this.userController = new UserController(provider.createUserDAO());
+			this.bookController.add("Mastering åäö", "Average Swede", "762.00", 2);
+			this.bookController.add("How To Spend Money", "Rich Bloke", "1000000.00", 1);
+			this.userController.createUser("first", "password", false);
+			this.userController.createUser("second", "password", false);
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testSessionsShareTheCatalog() {
+		try {
+			SessionManager sessionManager = new SessionManager(this.bookController, this.userController);
+			Session first = sessionManager.login("first", "password");
+			Session second = sessionManager.login("second", "password");
+			assertNotEquals(first.getToken(), second.getToken());
+			assertEquals(2, sessionManager.size());
+
+			Book book = sessionManager.list(first.getToken(), "Swede")[0];
+			assertTrue(sessionManager.add(first.getToken(), book, 2));
+			assertTrue(sessionManager.add(second.getToken(), book, 1));
+			assertEquals(2, first.getShoppingBasket().size());
+			assertEquals(1, second.getShoppingBasket().size());
+
+			//Both sessions buy from the same stock
+			assertArrayEquals(new int[] { 0, 0 }, sessionManager.buy(first.getToken(), book, book));
+			assertArrayEquals(new int[] { 1 }, sessionManager.buy(second.getToken(), book));
+			assertEquals(0, first.getShoppingBasket().size());
+			assertEquals(1, sessionManager.list(second.getToken(), "").length);
+
+			sessionManager.logout(first.getToken());
+			assertNull(sessionManager.getSession(first.getToken()));
+			assertEquals(0, sessionManager.list(first.getToken(), "").length);
+			assertEquals(false, sessionManager.add("unknown token", book, 1));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testExpiredSessions() {
+		try {
+			SessionManager sessionManager = new SessionManager(this.bookController, this.userController, -1, 10);
+			Session session = sessionManager.login("first", "password");
+			assertNull(sessionManager.getSession(session.getToken()));
+			assertEquals(0, sessionManager.size());
+
+			sessionManager.login("first", "password");
+			sessionManager.evictExpired();
+			assertEquals(0, sessionManager.size());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testLeastRecentlyUsedSessions() {
+		try {
+			SessionManager sessionManager = new SessionManager(this.bookController, this.userController,
+					SessionManager.DEFAULT_TIME_TO_LIVE, 10);
+			Session oldest = sessionManager.login("first", "password");
+			Session used = sessionManager.login("first", "password");
+			Thread.sleep(5);
+			for (int i = 0; i < 8; i++) {
+				sessionManager.login("second", "password");
+			}
+			Thread.sleep(5);
+			assertNotNull(sessionManager.getSession(used.getToken()));
+			Thread.sleep(5);
+
+			//The limit is exceeded, so the least recently used sessions are dropped
+			sessionManager.login("second", "password");
+			assertTrue(sessionManager.size() <= 9);
+			assertNull(sessionManager.getSession(oldest.getToken()));
+			assertNotNull(sessionManager.getSession(used.getToken()));
+
+		} catch (BookstoreException | InterruptedException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+}
@@ -0,0 +1,207 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.model.Book;
+
+public class BookDAOBinaryTest {
+
+	private final static String TEST_BOOK_FILE = "./TEST_BookDatabase.bin";
+	private final static String TEST_XML_FILE = "./TEST_BookDatabase.xml";
+	private final static String INITIAL_FILE_SET = "./ContribeExerciseData.txt";
+
+	@BeforeEach
+	void populateBooksDatabase() {
+		try {
+			BookDAO bookDAO = new BookDAOBinary(TEST_BOOK_FILE);
+
+			Scanner scanner = new Scanner(new File(INITIAL_FILE_SET));
+
+			while (scanner.hasNextLine()) {
+				String[] tokens = scanner.nextLine().split(";");
+				String title = tokens[0];
+				String author = tokens[1];
+				String priceString = tokens[2].replaceAll(",", "");
+				BigDecimal price = new BigDecimal(priceString);
+				int quantity = Integer.valueOf(tokens[3]);
+
+				Book newBook = new Book(title, author, price);
+				bookDAO.incrementStock(newBook, quantity);
+			}
+			scanner.close();
+		} catch (BookstoreException | FileNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	void testSearches() {
+		try {
+			BookDAO bookDAO = new BookDAOBinary(TEST_BOOK_FILE);
+
+			//The values tested here come from the example file provided in the exercise page
+			assertEquals(6, bookDAO.listAll().size());
+			assertEquals(1, bookDAO.searchByTitle("Mastering åäö").size());
+			assertEquals(2, bookDAO.searchByTitle("Generic Title").size());
+			assertEquals(0, bookDAO.searchByTitle("Desired").size());
+			assertEquals(1, bookDAO.searchByAuthor("Rich Bloke").size());
+			assertEquals(2, bookDAO.searchByAuthor("Cunning Bastard").size());
+			assertEquals(2, bookDAO.searchByKeywords(Arrays.asList("Swede", "Money")).size());
+			assertEquals(0, bookDAO.searchByKeywords(Arrays.asList("Mast")).size());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testStockCounters() {
+		try {
+			BookDAO bookDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+			Book newBook = new Book("A New Bök", "Rich Bloke", new BigDecimal("10.50"));
+
+			assertEquals(15, bookDAO.getStock(book));
+			assertEquals(-1, bookDAO.getStock(newBook));
+			assertEquals(true, bookDAO.insertBook(newBook));
+			assertEquals(true, bookDAO.incrementStock(newBook, 2));
+			assertEquals(3, bookDAO.getStock(newBook));
+			assertEquals(7, bookDAO.listAll().size());
+
+			//Just the units in stock can be removed
+			assertEquals(15, bookDAO.decrementStock(book, 20));
+			assertEquals(false, bookDAO.deleteBook(book));
+			assertEquals(6, bookDAO.listAll().size());
+
+			//The prices are compared by their cents, whatever their scale
+			assertEquals(3, bookDAO.getStock(new Book("A New Bök", "Rich Bloke", new BigDecimal("10.5"))));
+
+			//Another object sees the changes made in place and the new records
+			BookDAO otherDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			assertEquals(0, otherDAO.getStock(book));
+			assertEquals(3, otherDAO.getStock(newBook));
+			bookDAO.insertBook(new Book("Desired", "New Author", new BigDecimal("20")));
+			assertEquals(1, otherDAO.searchByTitle("Desired").size());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testStockOverflow() {
+		try {
+			BookDAO bookDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			Book newBook = new Book("Desired", "New Author", new BigDecimal("20"));
+			Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+			int stock = bookDAO.getStock(book);
+			assertEquals(true, bookDAO.incrementStock(newBook, Integer.MAX_VALUE));
+
+			//A stock larger than an int holds is refused, and nothing is changed
+			assertEquals(false, bookDAO.incrementStock(newBook, 2));
+			Map<Book, Integer> quantities = new LinkedHashMap<Book, Integer>();
+			quantities.put(book, 1);
+			quantities.put(newBook, 1);
+			assertEquals(false, bookDAO.incrementStock(quantities));
+			assertEquals(Integer.MAX_VALUE, bookDAO.getStock(newBook));
+			assertEquals(stock, bookDAO.getStock(book));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testCheckout() {
+		try {
+			BookDAO bookDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			Book richBloke = bookDAO.searchByAuthor("Rich Bloke").get(0);
+			Book secondAuthor = bookDAO.searchByAuthor("Second Author").get(0);
+			Book inexistent = new Book("Inexistent Title", "Nobody", BigDecimal.ONE);
+
+			PurchaseStatus[] statuses = bookDAO.checkout(secondAuthor, richBloke, inexistent, secondAuthor,
+					richBloke, secondAuthor, secondAuthor);
+			assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK, PurchaseStatus.OK,
+					PurchaseStatus.DOES_NOT_EXIST, PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK,
+					PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK }, statuses);
+			assertEquals(0, bookDAO.getStock(secondAuthor));
+			assertEquals(4, bookDAO.listAll().size());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testBulkIncrement() {
+		try {
+			BookDAO bookDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+			Map<Book, Integer> quantities = new LinkedHashMap<Book, Integer>();
+			quantities.put(book, 5);
+
+			//The registered books are changed in place, and the new ones rebuild the file once
+			assertEquals(true, bookDAO.incrementStock(quantities));
+			assertEquals(20, bookDAO.getStock(book));
+			quantities.put(new Book("Desired", "New Author", new BigDecimal("20")), 2);
+			assertEquals(true, bookDAO.incrementStock(quantities));
+
+			BookDAO otherDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			assertEquals(25, otherDAO.getStock(book));
+			assertEquals(2, otherDAO.getStock(new Book("Desired", "New Author", new BigDecimal("20"))));
+			assertEquals(7, otherDAO.listAll().size());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testConversionFromXML() {
+		try {
+			BookDAO xmlDAO = new BookDAOXML(TEST_XML_FILE, true, true);
+			for (Book book : new BookDAOBinary(TEST_BOOK_FILE).listAll()) {
+				xmlDAO.incrementStock(book, 2);
+			}
+			xmlDAO.incrementStock(new Book("Desired", "Rich Bloke", new BigDecimal("564.50")), 0);
+			xmlDAO.deleteBook(xmlDAO.searchByAuthor("Rich Bloke").get(0));
+
+			//The journal is replayed, and the books without stock stay registered
+			assertEquals(7, BookDatabaseConverter.convert(new File(TEST_XML_FILE), new File(TEST_BOOK_FILE)));
+			BookDAO binaryDAO = new BookDAOBinary(TEST_BOOK_FILE);
+			assertEquals(xmlDAO.listAll(), binaryDAO.listAll());
+			for (Book book : xmlDAO.listAll()) {
+				assertEquals(xmlDAO.getStock(book), binaryDAO.getStock(book));
+			}
+			assertEquals(0, binaryDAO.getStock(new Book("Desired", "Rich Bloke", new BigDecimal("564.50"))));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@AfterEach
+	void cleanBooksDatabase() {
+		new File(TEST_BOOK_FILE).delete();
+		new File(TEST_XML_FILE).delete();
+		new File(TEST_XML_FILE + ".journal").delete();
+	}
+
+}
@@ -0,0 +1,190 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.math.BigDecimal;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.User;
+
+/**
+ * These tests need a JDBC driver for the test URL in the classpath. The H2
+ * driver of the default URL is fetched by the fetch-h2 target of the build.
+ */
+public class BookDAOJDBCTest {
+
+	private final static String TEST_DATABASE = "./TEST_BookstoreDatabase";
+	private final static String TEST_URL = System.getProperty("bookstore.jdbc.testUrl", "jdbc:h2:" + TEST_DATABASE);
+	private final static String TEST_BOOK_FILE = "./TEST_BookDatabase.xml";
+	private final static String TEST_USER_FILE = "./TEST_UserDatabase.xml";
+	private final static String INITIAL_FILE_SET = "./ContribeExerciseData.txt";
+
+	private JDBCDatabase database;
+
+	@BeforeEach
+	void populateBooksDatabase() throws SQLException, BookstoreException, FileNotFoundException {
+		//Without the driver the tests fail, so the JDBC storage is never left untested
+		DriverManager.getDriver(TEST_URL);
+		this.database = JDBCDatabase.open(TEST_URL, "", "", 4);
+		BookDAO bookDAO = new BookDAOJDBC(this.database);
+
+		Scanner scanner = new Scanner(new File(INITIAL_FILE_SET));
+
+		while (scanner.hasNextLine()) {
+			String[] tokens = scanner.nextLine().split(";");
+			String title = tokens[0];
+			String author = tokens[1];
+			String priceString = tokens[2].replaceAll(",", "");
+			BigDecimal price = new BigDecimal(priceString);
+			int quantity = Integer.valueOf(tokens[3]);
+
+			Book newBook = new Book(title, author, price);
+			assertTrue(bookDAO.incrementStock(newBook, quantity));
+		}
+		scanner.close();
+	}
+
+	@Test
+	void testSearches() {
+		BookDAO bookDAO = new BookDAOJDBC(this.database);
+
+		//The values tested here come from the example file provided in the exercise page
+		assertEquals(6, bookDAO.listAll().size());
+		assertEquals("Mastering åäö", bookDAO.listAll().get(0).getTitle());
+		assertEquals(1, bookDAO.searchByTitle("Mastering åäö").size());
+		assertEquals(2, bookDAO.searchByTitle("Generic Title").size());
+		assertEquals(0, bookDAO.searchByTitle("Desired").size());
+		assertEquals(0, bookDAO.searchByTitle("%").size());
+		assertEquals(1, bookDAO.searchByAuthor("Rich Bloke").size());
+		assertEquals(2, bookDAO.searchByAuthor("Cunning Bastard").size());
+		assertEquals(2, bookDAO.searchByKeywords(Arrays.asList("Swede", "Money")).size());
+		assertEquals(0, bookDAO.searchByKeywords(Arrays.asList("Mast")).size());
+	}
+
+	@Test
+	void testStockCounters() {
+		BookDAO bookDAO = new BookDAOJDBC(this.database);
+		Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+		Book newBook = new Book("A New Bök", "Rich Bloke", new BigDecimal("10.50"));
+
+		assertEquals(15, bookDAO.getStock(book));
+		assertEquals(-1, bookDAO.getStock(newBook));
+		assertEquals(true, bookDAO.insertBook(newBook));
+		assertEquals(true, bookDAO.incrementStock(newBook, 2));
+		assertEquals(3, bookDAO.getStock(newBook));
+		assertEquals(7, bookDAO.listAll().size());
+		assertEquals(1, bookDAO.searchByKeywords(Arrays.asList("Bök")).size());
+
+		//Just the units in stock can be removed
+		assertEquals(15, bookDAO.decrementStock(book, 20));
+		assertEquals(false, bookDAO.deleteBook(book));
+		assertEquals(6, bookDAO.listAll().size());
+
+		//The prices are compared by their cents, whatever their scale
+		assertEquals(3, bookDAO.getStock(new Book("A New Bök", "Rich Bloke", new BigDecimal("10.5"))));
+	}
+
+	@Test
+	void testStockOverflow() {
+		BookDAO bookDAO = new BookDAOJDBC(this.database);
+		Book newBook = new Book("Desired", "New Author", new BigDecimal("20"));
+		Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+		int stock = bookDAO.getStock(book);
+		assertEquals(true, bookDAO.incrementStock(newBook, Integer.MAX_VALUE));
+
+		//A stock larger than an int holds is refused, and nothing is changed
+		assertEquals(false, bookDAO.incrementStock(newBook, 2));
+		Map<Book, Integer> quantities = new LinkedHashMap<Book, Integer>();
+		quantities.put(book, 1);
+		quantities.put(newBook, 1);
+		assertEquals(false, bookDAO.incrementStock(quantities));
+		assertEquals(Integer.MAX_VALUE, bookDAO.getStock(newBook));
+		assertEquals(stock, bookDAO.getStock(book));
+	}
+
+	@Test
+	void testCheckout() {
+		BookDAO bookDAO = new BookDAOJDBC(this.database);
+		Book richBloke = bookDAO.searchByAuthor("Rich Bloke").get(0);
+		Book secondAuthor = bookDAO.searchByAuthor("Second Author").get(0);
+		Book inexistent = new Book("Inexistent Title", "Nobody", BigDecimal.ONE);
+
+		PurchaseStatus[] statuses = bookDAO.checkout(secondAuthor, richBloke, inexistent, secondAuthor, richBloke,
+				secondAuthor, secondAuthor);
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK, PurchaseStatus.OK, PurchaseStatus.DOES_NOT_EXIST,
+				PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK, PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK },
+				statuses);
+		assertEquals(0, bookDAO.getStock(secondAuthor));
+		assertEquals(4, bookDAO.listAll().size());
+	}
+
+	@Test
+	void testUsers() {
+		UserDAO userDAO = new UserDAOJDBC(this.database);
+		User user = new User("user hårdçäöàèã", "hardPasswordStillPlainText", true);
+
+		assertNull(userDAO.retrieveUser(user.getUsername()));
+		assertEquals(true, userDAO.addUser(user));
+		assertEquals(false, userDAO.addUser(new User(user.getUsername(), "other", false)));
+		assertEquals(user, userDAO.retrieveUser(user.getUsername()));
+		assertEquals(false, userDAO.removeUser(new User(user.getUsername(), "other", true)));
+		assertEquals(true, userDAO.removeUser(user));
+		assertNull(userDAO.retrieveUser(user.getUsername()));
+	}
+
+	@Test
+	void testImportFromXML() {
+		try {
+			BookDAO xmlDAO = new BookDAOXML(TEST_BOOK_FILE, true, true);
+			xmlDAO.incrementStock(new Book("Mastering åäö", "Average Swede", new BigDecimal("762.00")), 5);
+			xmlDAO.incrementStock(new Book("Desired", "Rich Bloke", new BigDecimal("564.50")), 2);
+			UserDAO xmlUserDAO = new UserDAOXML(TEST_USER_FILE);
+			xmlUserDAO.addUser(new User("imported", "secret", false));
+
+			assertEquals(2, BookDatabaseImporter.importBooks(new File(TEST_BOOK_FILE), this.database));
+			assertEquals(1, BookDatabaseImporter.importUsers(new File(TEST_USER_FILE), this.database));
+
+			BookDAO bookDAO = new BookDAOJDBC(this.database);
+			assertEquals(20, bookDAO.getStock(new Book("Mastering åäö", "Average Swede", new BigDecimal("762.00"))));
+			assertEquals(1, bookDAO.searchByKeywords(Arrays.asList("Desired")).size());
+			assertEquals("secret", new UserDAOJDBC(this.database).retrieveUser("imported").getPassword());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@AfterEach
+	void cleanDatabase() {
+		if (this.database != null) {
+			this.database.close();
+		}
+		for (String suffix : new String[] { ".mv.db", ".trace.db", ".h2.db" }) {
+			new File(TEST_DATABASE + suffix).delete();
+		}
+		new File(TEST_BOOK_FILE).delete();
+		new File(TEST_BOOK_FILE + ".journal").delete();
+		new File(TEST_USER_FILE).delete();
+	}
+
+}
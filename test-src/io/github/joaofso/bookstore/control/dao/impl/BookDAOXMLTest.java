@@ -1,18 +1,28 @@
 package io.github.joaofso.bookstore.control.dao.impl;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
 import io.github.joaofso.bookstore.control.dao.BookDAO;
 import io.github.joaofso.bookstore.model.Book;
 
@@ -37,10 +47,8 @@ public class BookDAOXMLTest {
 				BigDecimal price = new BigDecimal(priceString);
 				int quantity = Integer.valueOf(tokens[3]);
 				
-				for (int i = 0; i < quantity; i++) {
-					Book newBook = new Book(title, author, price);
-					bookDAO.insertBook(newBook);
-				}
+				Book newBook = new Book(title, author, price);
+				bookDAO.incrementStock(newBook, quantity);
 			}
 			scanner.close();
 		} catch (BookstoreException | FileNotFoundException e) {
@@ -55,7 +63,8 @@ public class BookDAOXMLTest {
 			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE);
 			List<Book> allBooks = bookDAO.listAll();
 			
-			assertEquals(47, allBooks.size());
+			//Each book appears once, no matter how many copies there are
+			assertEquals(6, allBooks.size());
 		} catch (BookstoreException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -70,10 +79,10 @@ public class BookDAOXMLTest {
 			assertEquals(0, bookDAO.searchByTitle("Inexistent Title").size());
 			
 			//The values tested here come from the example file provided in the exercise page
-			assertEquals(15, bookDAO.searchByTitle("Mastering åäö").size());
+			assertEquals(1, bookDAO.searchByTitle("Mastering åäö").size());
 			assertEquals(1, bookDAO.searchByTitle("How To Spend Money").size());
-			assertEquals(8, bookDAO.searchByTitle("Generic Title").size());
-			assertEquals(23, bookDAO.searchByTitle("Random Sales").size());
+			assertEquals(2, bookDAO.searchByTitle("Generic Title").size());
+			assertEquals(2, bookDAO.searchByTitle("Random Sales").size());
 			assertEquals(0, bookDAO.searchByTitle("Desired").size());
 			
 			
@@ -91,11 +100,11 @@ public class BookDAOXMLTest {
 			assertEquals(0, bookDAO.searchByAuthor("Inexistent author").size());
 			
 			//The values tested here come from the example file provided in the exercise page
-			assertEquals(15, bookDAO.searchByAuthor("Average Swede").size());
+			assertEquals(1, bookDAO.searchByAuthor("Average Swede").size());
 			assertEquals(1, bookDAO.searchByAuthor("Rich Bloke").size());
-			assertEquals(5, bookDAO.searchByAuthor("First Author").size());
-			assertEquals(3, bookDAO.searchByAuthor("Second Author").size());
-			assertEquals(23, bookDAO.searchByAuthor("Cunning Bastard").size());
+			assertEquals(1, bookDAO.searchByAuthor("First Author").size());
+			assertEquals(1, bookDAO.searchByAuthor("Second Author").size());
+			assertEquals(2, bookDAO.searchByAuthor("Cunning Bastard").size());
 			
 			
 		} catch (BookstoreException e) {
@@ -104,25 +113,166 @@ public class BookDAOXMLTest {
 		}
 	}
 
+	@Test
+	void testSearchByKeywords() {
+		try {
+			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE);
+			
+			assertEquals(2, bookDAO.searchByKeywords(Arrays.asList("Bastard")).size());
+			assertEquals(2, bookDAO.searchByKeywords(Arrays.asList("Swede", "Money")).size());
+			assertEquals(3, bookDAO.searchByKeywords(Arrays.asList("Generic", "First", "Rich")).size());
+			
+			//Just whole words match
+			assertEquals(0, bookDAO.searchByKeywords(Arrays.asList("Mast")).size());
+			assertEquals(1, bookDAO.searchByKeywords(Arrays.asList("åäö")).size());
+			
+			//The index follows the changes in the catalog
+			bookDAO.insertBook(new Book("Desired", "New Author", new BigDecimal("20")));
+			assertEquals(1, bookDAO.searchByKeywords(Arrays.asList("Desired")).size());
+			bookDAO.deleteBook(bookDAO.searchByAuthor("Rich Bloke").get(0));
+			assertEquals(0, bookDAO.searchByKeywords(Arrays.asList("Bloke")).size());
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testSubstringIndexKeepsSearchResults() {
+		try {
+			BookDAO scanDAO = new BookDAOXML(TEST_BOOK_FILE);
+			BookDAO indexedDAO = new BookDAOXML(TEST_BOOK_FILE, true, false, true);
+			indexedDAO.insertBook(new Book("A New Bök", "Rich Bloke", new BigDecimal("10.50")));
+			
+			//Every substring of every title and author name gives the same result with and without the index
+			for (Book book : scanDAO.listAll()) {
+				for (String text : Arrays.asList(book.getTitle(), book.getAuthor())) {
+					for (int begin = 0; begin < text.length(); begin++) {
+						for (int end = begin + 1; end <= text.length(); end++) {
+							String query = text.substring(begin, end);
+							assertEquals(scanDAO.searchByTitle(query), indexedDAO.searchByTitle(query));
+							assertEquals(scanDAO.searchByAuthor(query), indexedDAO.searchByAuthor(query));
+						}
+					}
+				}
+			}
+			assertEquals(0, indexedDAO.searchByTitle("Inexistent Title").size());
+			
+			indexedDAO.deleteBook(indexedDAO.searchByTitle("New Bök").get(0));
+			assertEquals(0, indexedDAO.searchByTitle("New Bök").size());
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testThreadParses() {
+		try {
+			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE, false);
+			long parses = bookDAO.getThreadParses();
+			bookDAO.searchByAuthor("Cunning Bastard");
+			assertEquals(parses + 1, bookDAO.getThreadParses());
+			
+			//The parses of another thread are not counted for this one
+			Thread other = new Thread(() -> bookDAO.searchByTitle("Generic Title"));
+			other.start();
+			other.join();
+			assertEquals(parses + 1, bookDAO.getThreadParses());
+			
+		} catch (BookstoreException | InterruptedException e) {
+			fail("The test should not end up here!");
+		}
+	}
+	
+	@Test
+	void testStreamingScanKeepsResults() {
+		try {
+			BookDAO cachedDAO = new BookDAOXML(TEST_BOOK_FILE);
+			BookDAO streamingDAO = new BookDAOXML(TEST_BOOK_FILE, false);
+			
+			//Reading the file without building the whole tree gives the same results
+			assertEquals(cachedDAO.listAll(), streamingDAO.listAll());
+			for (String query : Arrays.asList("Mastering åäö", "Generic Title", "Random", "Desired", "Inexistent")) {
+				assertEquals(cachedDAO.searchByTitle(query), streamingDAO.searchByTitle(query));
+				assertEquals(cachedDAO.searchByAuthor(query), streamingDAO.searchByAuthor(query));
+				assertEquals(cachedDAO.searchByKeywords(Arrays.asList(query)),
+						streamingDAO.searchByKeywords(Arrays.asList(query)));
+			}
+			for (Book book : cachedDAO.listAll()) {
+				assertEquals(cachedDAO.getStock(book), streamingDAO.getStock(book));
+			}
+			assertEquals(-1, streamingDAO.getStock(new Book("Inexistent Title", "Nobody", BigDecimal.ONE)));
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testSharedBookInstances() {
+		try {
+			for (boolean cacheEnabled : new boolean[] { false, true }) {
+				BookDAOXML bookDAO = new BookDAOXML(TEST_BOOK_FILE, cacheEnabled);
+				Book book = bookDAO.searchByAuthor("Cunning Bastard").get(0);
+				
+				//The same book is the same object in every result
+				assertSame(book, bookDAO.searchByTitle(book.getTitle()).get(0));
+				assertSame(book, bookDAO.listAll().get(bookDAO.listAll().indexOf(book)));
+				assertSame(book.getAuthor(), bookDAO.searchByAuthor("Cunning Bastard").get(1).getAuthor());
+				
+				//Equal books have equal hash codes, whoever created them
+				Book copy = new Book(book.getTitle(), book.getAuthor(), new BigDecimal(book.getPrice().toString()));
+				assertEquals(book, copy);
+				assertEquals(book.hashCode(), copy.hashCode());
+			}
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testDatabaseWithOneElementPerUnit() throws Exception {
+		//The databases written before the stock count repeat the book element for each unit
+		String book = "<book><title>Random Sales</title><author>Cunning Bastard</author><price>999.00</price></book>";
+		Files.write(new File(TEST_BOOK_FILE).toPath(),
+				("<?xml version=\"1.0\" encoding=\"UTF-8\"?><books>" + book + book + book + "</books>")
+						.getBytes(StandardCharsets.UTF_8));
+		Book randomSales = new Book("Random Sales", "Cunning Bastard", new BigDecimal("999.00"));
+		
+		for (boolean cacheEnabled : new boolean[] { false, true }) {
+			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE, cacheEnabled);
+			assertEquals(1, bookDAO.listAll().size());
+			assertEquals(1, bookDAO.searchByTitle("Random").size());
+			assertEquals(3, bookDAO.getStock(randomSales));
+		}
+	}
+
 	@Test
 	void testInsertBook() {
 		try {
 			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE);
 			
-			assertEquals(47, bookDAO.listAll().size());
+			assertEquals(6, bookDAO.listAll().size());
 			
 			Book newBook = new Book("A New Bök", "Rich Bloke", new BigDecimal("10.50"));
 			bookDAO.insertBook(newBook);
 			
-			assertEquals(48, bookDAO.listAll().size());
+			assertEquals(7, bookDAO.listAll().size());
 			assertEquals(2, bookDAO.searchByAuthor("Rich Bloke").size());
 			
 			Book secondNewBook = new Book("Desired", "New Author", new BigDecimal("20"));
 			bookDAO.insertBook(secondNewBook);
 			
-			assertEquals(49, bookDAO.listAll().size());
+			assertEquals(8, bookDAO.listAll().size());
 			assertEquals(1, bookDAO.searchByTitle("Desired").size());
 			
+			//Another copy of a book already registered just increases its stock
+			bookDAO.insertBook(secondNewBook);
+			assertEquals(8, bookDAO.listAll().size());
+			assertEquals(2, bookDAO.getStock(secondNewBook));
+			
 		} catch (BookstoreException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -134,20 +284,23 @@ public class BookDAOXMLTest {
 		try {
 			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE);
 			
-			assertEquals(47, bookDAO.listAll().size());
+			assertEquals(6, bookDAO.listAll().size());
 			
-			//There is just one book of this author
+			//There is just one copy of the book of this author
 			Book toRemove = bookDAO.searchByAuthor("Rich Bloke").get(0);
 			bookDAO.deleteBook(toRemove);
 			
-			assertEquals(46, bookDAO.listAll().size());
+			assertEquals(5, bookDAO.listAll().size());
 			assertEquals(0, bookDAO.searchByAuthor("Rich Bloke").size());
+			assertEquals(false, bookDAO.deleteBook(toRemove));
 			
 			Book secondToRemove = bookDAO.searchByTitle("Random Sales").get(0);
+			int stock = bookDAO.getStock(secondToRemove);
 			bookDAO.deleteBook(secondToRemove);
 			
-			assertEquals(45, bookDAO.listAll().size());
-			assertEquals(22, bookDAO.searchByTitle("Random Sales").size());
+			assertEquals(5, bookDAO.listAll().size());
+			assertEquals(2, bookDAO.searchByTitle("Random Sales").size());
+			assertEquals(stock - 1, bookDAO.getStock(secondToRemove));
 			
 		} catch (BookstoreException e) {
 			// TODO Auto-generated catch block
@@ -155,10 +308,231 @@ public class BookDAOXMLTest {
 		}
 	}
 
+	@Test
+	void testStockCounters() {
+		try {
+			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE);
+			Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+			Book newBook = new Book("Desired", "New Author", new BigDecimal("20"));
+			
+			assertEquals(-1, bookDAO.getStock(newBook));
+			assertEquals(true, bookDAO.incrementStock(newBook, 3));
+			assertEquals(3, bookDAO.getStock(newBook));
+			assertEquals(false, bookDAO.incrementStock(newBook, -1));
+			
+			//Just the units in stock can be removed
+			int stock = bookDAO.getStock(book);
+			assertEquals(2, bookDAO.decrementStock(book, 2));
+			assertEquals(stock - 2, bookDAO.getStock(book));
+			assertEquals(stock - 2, bookDAO.decrementStock(book, stock));
+			assertEquals(0, bookDAO.getStock(book));
+			assertEquals(0, bookDAO.searchByTitle("Mastering åäö").size());
+			assertEquals(0, bookDAO.decrementStock(new Book("Inexistent Title", "Nobody", BigDecimal.ONE), 1));
+			
+			//A book without stock comes back when it is restocked
+			bookDAO.incrementStock(book, 1);
+			assertEquals(1, bookDAO.searchByTitle("Mastering åäö").size());
+			
+			//The counters are persisted
+			BookDAO otherDAO = new BookDAOXML(TEST_BOOK_FILE);
+			assertEquals(1, otherDAO.getStock(book));
+			assertEquals(3, otherDAO.getStock(newBook));
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testStockOverflow() {
+		for (boolean journaled : new boolean[] { false, true }) {
+			try {
+				BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE, true, journaled);
+				Book newBook = new Book("Desired", "New Author", new BigDecimal("20"));
+				Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+				int stock = bookDAO.getStock(book);
+				assertEquals(true, bookDAO.incrementStock(newBook, Integer.MAX_VALUE));
+
+				//A stock larger than an int holds is refused, and nothing is changed
+				assertEquals(false, bookDAO.incrementStock(newBook, 2));
+				Map<Book, Integer> quantities = new LinkedHashMap<Book, Integer>();
+				quantities.put(book, 1);
+				quantities.put(newBook, 1);
+				assertEquals(false, bookDAO.incrementStock(quantities));
+				assertEquals(Integer.MAX_VALUE, bookDAO.getStock(newBook));
+				assertEquals(stock, bookDAO.getStock(book));
+
+				//The refused units are not persisted either
+				BookDAO otherDAO = new BookDAOXML(TEST_BOOK_FILE, true, journaled);
+				assertEquals(Integer.MAX_VALUE, otherDAO.getStock(newBook));
+				assertEquals(Integer.MAX_VALUE, bookDAO.decrementStock(newBook, Integer.MAX_VALUE));
+			} catch (BookstoreException e) {
+				fail("The test should not end up here!");
+			}
+		}
+	}
+
+	@Test
+	void testCheckout() {
+		this.checkCheckout(false);
+	}
+
+	@Test
+	void testJournaledCheckout() {
+		this.checkCheckout(true);
+	}
+
+	private void checkCheckout(boolean journaled) {
+		try {
+			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE, true, journaled);
+			Book richBloke = bookDAO.searchByAuthor("Rich Bloke").get(0);
+			Book secondAuthor = bookDAO.searchByAuthor("Second Author").get(0);
+			Book inexistent = new Book("Inexistent Title", "Nobody", BigDecimal.ONE);
+			
+			//The units are served in the basket order, the ones beyond the stock are not in stock
+			PurchaseStatus[] statuses = bookDAO.checkout(secondAuthor, richBloke, inexistent, secondAuthor,
+					richBloke, secondAuthor, secondAuthor);
+			assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK, PurchaseStatus.OK,
+					PurchaseStatus.DOES_NOT_EXIST, PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK,
+					PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK }, statuses);
+			assertEquals(0, bookDAO.getStock(richBloke));
+			assertEquals(0, bookDAO.getStock(secondAuthor));
+			assertEquals(4, bookDAO.listAll().size());
+			
+			//The whole basket is persisted
+			BookDAO otherDAO = new BookDAOXML(TEST_BOOK_FILE, true, journaled);
+			assertEquals(0, otherDAO.getStock(richBloke));
+			assertEquals(0, otherDAO.getStock(secondAuthor));
+			assertEquals(0, otherDAO.checkout().length);
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testConcurrentCheckouts() throws Exception {
+		BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE, true, true);
+		Book randomSales = new Book("Random Sales", "Cunning Bastard", new BigDecimal("999.00"));
+		Book mastering = bookDAO.searchByTitle("Mastering åäö").get(0);
+		AtomicInteger bought = new AtomicInteger();
+		
+		//Several shoppers fight for the 20 units of the same book, buying other books too
+		Thread[] shoppers = new Thread[8];
+		for (int i = 0; i < shoppers.length; i++) {
+			shoppers[i] = new Thread(() -> {
+				for (int j = 0; j < 5; j++) {
+					PurchaseStatus[] statuses = bookDAO.checkout(randomSales, mastering);
+					if (statuses[0] == PurchaseStatus.OK) {
+						bought.incrementAndGet();
+					}
+				}
+			});
+			shoppers[i].start();
+		}
+		for (Thread shopper : shoppers) {
+			shopper.join();
+		}
+		
+		//No unit is sold twice
+		assertEquals(20, bought.get());
+		assertEquals(0, bookDAO.getStock(randomSales));
+		assertEquals(0, bookDAO.getStock(mastering));
+		assertEquals(0, new BookDAOXML(TEST_BOOK_FILE, true, true).getStock(randomSales));
+	}
+
+	@Test
+	void testCatalogReloadedAfterExternalChange() {
+		try {
+			BookDAO bookDAO = new BookDAOXML(TEST_BOOK_FILE);
+			BookDAO otherDAO = new BookDAOXML(TEST_BOOK_FILE);
+			
+			//Both objects have the catalog in memory now
+			assertEquals(6, bookDAO.listAll().size());
+			assertEquals(6, otherDAO.listAll().size());
+			
+			otherDAO.insertBook(new Book("Desired", "New Author", new BigDecimal("20")));
+			
+			//The first object must notice that the file was changed by the second one
+			assertEquals(7, bookDAO.listAll().size());
+			assertEquals(1, bookDAO.searchByTitle("Desired").size());
+			
+			bookDAO.deleteBook(bookDAO.searchByTitle("Desired").get(0));
+			assertEquals(0, otherDAO.searchByTitle("Desired").size());
+			
+		} catch (BookstoreException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	void testJournaledChanges() {
+		try {
+			BookDAOXML bookDAO = new BookDAOXML(TEST_BOOK_FILE, true, true);
+			File testFile = new File(TEST_BOOK_FILE);
+			long snapshotLength = testFile.length();
+			
+			bookDAO.insertBook(new Book("Desired", "New Author", new BigDecimal("20")));
+			bookDAO.deleteBook(bookDAO.searchByAuthor("Rich Bloke").get(0));
+			
+			//The changes go to the journal, the XML file is not rewritten
+			assertEquals(snapshotLength, testFile.length());
+			assertEquals(6, bookDAO.listAll().size());
+			
+			//Another object replays the journal over the XML file
+			BookDAO otherDAO = new BookDAOXML(TEST_BOOK_FILE, true, true);
+			assertEquals(6, otherDAO.listAll().size());
+			assertEquals(1, otherDAO.searchByTitle("Desired").size());
+			assertEquals(0, otherDAO.searchByAuthor("Rich Bloke").size());
+			
+			//After the compaction, even an object that ignores the journal sees the changes
+			bookDAO.compact();
+			assertEquals(0, new File(TEST_BOOK_FILE + ".journal").length());
+			BookDAO plainDAO = new BookDAOXML(TEST_BOOK_FILE);
+			assertEquals(6, plainDAO.listAll().size());
+			assertEquals(1, plainDAO.searchByTitle("Desired").size());
+			assertEquals(0, plainDAO.searchByAuthor("Rich Bloke").size());
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testBulkIncrement() {
+		try {
+			BookDAOXML bookDAO = new BookDAOXML(TEST_BOOK_FILE, true, true);
+			Book book = bookDAO.searchByTitle("Mastering åäö").get(0);
+			Map<Book, Integer> quantities = new LinkedHashMap<Book, Integer>();
+			quantities.put(book, 5);
+			quantities.put(new Book("Desired", "New Author", new BigDecimal("20")), 2);
+			quantities.put(new Book("Registered", "New Author", new BigDecimal("20")), 0);
+
+			assertEquals(true, bookDAO.incrementStock(quantities));
+			assertEquals(20, bookDAO.getStock(book));
+			assertEquals(7, bookDAO.listAll().size());
+
+			//Nothing is written if any quantity is negative
+			quantities.put(book, -1);
+			assertEquals(false, bookDAO.incrementStock(quantities));
+
+			BookDAO otherDAO = new BookDAOXML(TEST_BOOK_FILE, true, true);
+			assertEquals(20, otherDAO.getStock(book));
+			assertEquals(2, otherDAO.getStock(new Book("Desired", "New Author", new BigDecimal("20"))));
+			assertEquals(0, otherDAO.getStock(new Book("Registered", "New Author", new BigDecimal("20"))));
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
 	@AfterEach
 	void cleanBooksDatabase() throws Exception {
 		File testFile = new File(TEST_BOOK_FILE);
 		testFile.delete();
+		File journalFile = new File(TEST_BOOK_FILE + ".journal");
+		journalFile.delete();
 	}
 
 }
@@ -0,0 +1,114 @@
+package io.github.joaofso.bookstore.control.dao.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.aux.PurchaseStatus;
+import io.github.joaofso.bookstore.control.BookStore;
+import io.github.joaofso.bookstore.control.dao.BookDAO;
+import io.github.joaofso.bookstore.control.dao.StorageProvider;
+import io.github.joaofso.bookstore.control.dao.StorageProviders;
+import io.github.joaofso.bookstore.control.dao.UserDAO;
+import io.github.joaofso.bookstore.model.Book;
+import io.github.joaofso.bookstore.model.User;
+
+public class MemoryStorageProviderTest {
+
+	@Test
+	void testProviderSelection() {
+		try {
+			assertTrue(StorageProviders.available().keySet().containsAll(Arrays.asList("xml", "binary", "memory")));
+			assertEquals("xml", StorageProviders.get().getName());
+
+			System.setProperty(StorageProviders.STORAGE_PROPERTY, "memory");
+			assertEquals("memory", StorageProviders.get().getName());
+			assertTrue(StorageProviders.get().createBookDAO() instanceof BookDAOMemory);
+
+			System.setProperty(StorageProviders.STORAGE_PROPERTY, "inexistent");
+			assertThrows(BookstoreException.class, () -> StorageProviders.get());
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testBookDAO() {
+		BookDAO bookDAO = new MemoryStorageProvider().createBookDAO();
+		Book book = new Book("Mastering åäö", "Average Swede", new BigDecimal("762.00"));
+		Book other = new Book("How To Spend Money", "Rich Bloke", new BigDecimal("1000000.00"));
+
+		assertEquals(-1, bookDAO.getStock(book));
+		assertEquals(true, bookDAO.incrementStock(book, 2));
+		assertEquals(true, bookDAO.insertBook(other));
+		assertEquals(2, bookDAO.listAll().size());
+		assertEquals(1, bookDAO.searchByKeywords(Arrays.asList("Swede")).size());
+
+		PurchaseStatus[] statuses = bookDAO.checkout(other, book, other, new Book("Inexistent", "Nobody", BigDecimal.ONE));
+		assertArrayEquals(new PurchaseStatus[] { PurchaseStatus.OK, PurchaseStatus.OK, PurchaseStatus.NOT_IN_STOCK,
+				PurchaseStatus.DOES_NOT_EXIST }, statuses);
+		assertEquals(1, bookDAO.getStock(book));
+		assertEquals(0, bookDAO.getStock(other));
+		assertEquals(1, bookDAO.listAll().size());
+
+		//A stock larger than an int holds is refused, and nothing is changed
+		assertEquals(true, bookDAO.incrementStock(other, Integer.MAX_VALUE));
+		assertEquals(false, bookDAO.incrementStock(other, 1));
+		Map<Book, Integer> quantities = new LinkedHashMap<Book, Integer>();
+		quantities.put(book, 1);
+		quantities.put(other, 1);
+		assertEquals(false, bookDAO.incrementStock(quantities));
+		assertEquals(1, bookDAO.getStock(book));
+		assertEquals(Integer.MAX_VALUE, bookDAO.getStock(other));
+	}
+
+	@Test
+	void testUserDAO() {
+		UserDAO userDAO = new MemoryStorageProvider().createUserDAO();
+		User user = new User("admin", "admin", true);
+
+		assertEquals(true, userDAO.addUser(user));
+		assertEquals(false, userDAO.addUser(new User("admin", "other", false)));
+		assertEquals(user, userDAO.retrieveUser("admin"));
+		assertEquals(null, userDAO.retrieveUser("nobody"));
+		assertEquals(false, userDAO.removeUser(new User("admin", "other", false)));
+		assertEquals(true, userDAO.removeUser(user));
+		assertEquals(null, userDAO.retrieveUser("admin"));
+	}
+
+	@Test
+	void testBookStoresShareTheEngine() {
+		try {
+			StorageProvider provider = new MemoryStorageProvider();
+			BookStore firstStore = new BookStore(provider);
+			assertEquals(true, firstStore.addNewUser("customer", "secret", false));
+			assertEquals(true, firstStore.addNewBook("Generic Title", "First Author", "185.50", 3));
+
+			//Another bookstore over the same engine sees the user and the books
+			BookStore secondStore = new BookStore(provider);
+			secondStore.loginUser("customer", "secret");
+			assertEquals(1, secondStore.list("Generic").length);
+
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@AfterEach
+	void clearStorageProperty() {
+		System.clearProperty(StorageProviders.STORAGE_PROPERTY);
+	}
+
+}
@@ -95,6 +95,32 @@ public class UserDAOXMLTest {
 		
 	}
 	
+	@Test
+	void testChangesMadeByOthers() {
+		try {
+			UserDAO userDAO = new UserDAOXML(TEST_USER_FILE);
+			UserDAO otherDAO = new UserDAOXML(TEST_USER_FILE);
+			User newUser = new User("anotherUser", "anotherPassword", false);
+
+			assertNull(userDAO.retrieveUser("anotherUser"));
+			assertTrue(otherDAO.addUser(newUser));
+			
+			//The directory is read again when the file is changed by someone else
+			assertEquals(newUser, userDAO.retrieveUser("anotherUser"));
+			assertEquals(false, userDAO.addUser(newUser));
+			
+			//The users handed out are copies of the ones in the directory
+			userDAO.retrieveUser("anotherUser").setPassword("changed");
+			assertEquals("anotherPassword", userDAO.retrieveUser("anotherUser").getPassword());
+			
+			assertTrue(userDAO.removeUser(newUser));
+			assertNull(otherDAO.retrieveUser("anotherUser"));
+			
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+	
 	@AfterAll
 	static void cleanUserDatabase() throws Exception {
 		File testFile = new File(TEST_USER_FILE);
@@ -0,0 +1,68 @@
+package io.github.joaofso.bookstore.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+
+		for (long value = 1; value <= 10000; value++) {
+			histogram.record(value * 1000);
+		}
+		assertEquals(10000, histogram.getCount());
+		assertEquals(10000000, histogram.getMax());
+		assertEquals(5000500, histogram.getMean(), 0.001);
+
+		//Every percentile is within 1/64 of the exact value, never below it
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			long exact = (long) (percentile * 100) * 1000;
+			long value = histogram.getValueAtPercentile(percentile);
+			assertTrue(value >= exact && value <= exact + exact / 64, percentile + "th percentile: " + value);
+		}
+		assertEquals(10000000, histogram.getValueAtPercentile(100));
+
+		//The small values and the huge ones have buckets of their own
+		for (long value : new long[] { 0, 1, 127, 128, 129, 1L << 40, Long.MAX_VALUE }) {
+			int bucket = LatencyHistogram.bucket(value);
+			assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+			assertTrue(bucket == 0 || LatencyHistogram.highestValue(bucket - 1) < value);
+		}
+	}
+
+	@Test
+	void testCoordinatedOmission() {
+		LatencyHistogram uncorrected = new LatencyHistogram();
+		LatencyHistogram corrected = new LatencyHistogram();
+
+		//A client asking every millisecond is stalled for one second once
+		for (int i = 0; i < 1000; i++) {
+			uncorrected.record(100000, 1000000);
+			corrected.record(100000, 1000000);
+		}
+		uncorrected.record(1000000000);
+		corrected.record(1000000000, 1000000);
+
+		//The requests that would have waited during the stall are counted too
+		assertEquals(1001, uncorrected.getCount());
+		assertEquals(2000, corrected.getCount());
+		assertTrue(uncorrected.getValueAtPercentile(99) < 1000000);
+		assertTrue(corrected.getValueAtPercentile(99) > 900000000);
+
+		LatencyHistogram merged = new LatencyHistogram();
+		merged.add(uncorrected);
+		merged.add(corrected);
+		assertEquals(3001, merged.getCount());
+		assertEquals(1000000000, merged.getMax());
+
+		merged.reset();
+		assertEquals(0, merged.getCount());
+		assertEquals(0, merged.getMax());
+	}
+
+}
@@ -0,0 +1,73 @@
+package io.github.joaofso.bookstore.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.control.dao.impl.UserDAOXML;
+import io.github.joaofso.bookstore.model.User;
+
+public class MetricsTest {
+
+	@Test
+	void testOperations() throws Exception {
+		OperationMetrics operation = Metrics.operation("MetricsTest", "operation");
+		assertSame(operation, Metrics.operation("MetricsTest", "operation"));
+
+		long first = operation.start();
+		long second = operation.start();
+		assertEquals(2, operation.getInFlight());
+		operation.end(first);
+		operation.end(second);
+		assertEquals(0, operation.getInFlight());
+		assertEquals(2, operation.getCount());
+		assertTrue(operation.getMaxMicros() >= operation.get50thPercentileMicros());
+
+		//The operation is published as a platform MBean and in the text dump
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(Metrics.DOMAIN + ":type=Operation,component=MetricsTest,name=operation");
+		assertEquals(2L, server.getAttribute(name, "Count"));
+		assertEquals(0L, server.getAttribute(name, "InFlight"));
+		server.invoke(name, "reset", null, null);
+		assertEquals(0, operation.getCount());
+		assertTrue(Metrics.dump().contains("MetricsTest.operation count=0 inFlight=0"));
+	}
+
+	@Test
+	void testFileCounters() throws Exception {
+		File dbFile = File.createTempFile("MetricsTest", ".xml");
+		dbFile.delete();
+		try {
+			UserDAOXML userDAO = new UserDAOXML(dbFile.getPath());
+			Counter parses = Metrics.counter("UserDAOXML", "parses");
+			Counter rewrites = Metrics.counter("UserDAOXML", "rewrites");
+			Counter rewrittenBytes = Metrics.counter("UserDAOXML", "rewrittenBytes");
+			long parsesBefore = parses.getValue();
+			long rewritesBefore = rewrites.getValue();
+			long bytesBefore = rewrittenBytes.getValue();
+
+			//The file is parsed once, and rewritten by every change
+			assertTrue(userDAO.addUser(new User("metrics", "password", false)));
+			assertNotNull(userDAO.retrieveUser("metrics"));
+			assertNotNull(userDAO.retrieveUser("metrics"));
+			assertEquals(parsesBefore + 1, parses.getValue());
+			assertEquals(rewritesBefore + 1, rewrites.getValue());
+			assertEquals(bytesBefore + dbFile.length(), rewrittenBytes.getValue());
+
+			ObjectName name = new ObjectName(Metrics.DOMAIN + ":type=Counter,component=UserDAOXML,name=rewrites");
+			assertEquals(rewrites.getValue(), ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Value"));
+		} finally {
+			dbFile.delete();
+		}
+	}
+
+}
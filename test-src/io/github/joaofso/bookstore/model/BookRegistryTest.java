@@ -0,0 +1,34 @@
+package io.github.joaofso.bookstore.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+public class BookRegistryTest {
+
+	@Test
+	void testCanonical() {
+		BookRegistry registry = new BookRegistry();
+		Book book = registry.canonical("Generic Title", "First Author", "185.50");
+
+		//The same book is found whatever the scale of the price, and whoever created it
+		assertSame(book, registry.canonical("Generic Title", "First Author", "185.5"));
+		Book copy = new Book("Generic Title", "First Author", new BigDecimal("185.50"));
+		assertSame(book, registry.canonical(copy));
+		assertEquals(1, registry.size());
+
+		//The books of the same title are kept apart by author and price
+		Book otherAuthor = registry.canonical("Generic Title", "Second Author", "185.50");
+		Book otherPrice = registry.canonical("Generic Title", "First Author", "200.00");
+		assertNotSame(book, otherAuthor);
+		assertNotSame(book, otherPrice);
+		assertSame(otherPrice, registry.canonical("Generic Title", "First Author", "200"));
+		assertSame(book.getTitle(), otherAuthor.getTitle());
+		assertEquals(3, registry.size());
+	}
+
+}
@@ -0,0 +1,46 @@
+package io.github.joaofso.bookstore.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+public class MoneyTest {
+
+	@Test
+	void testParsing() {
+		//The format of the exercise file, with commas separating the thousands
+		assertEquals(100000000L, Money.parseMinorUnits("1,000,000.00"));
+		assertEquals(76200L, Money.parseMinorUnits(" 762.00 "));
+		assertEquals(1050L, Money.parseMinorUnits("10.5"));
+		assertEquals(2000L, Money.parseMinorUnits("20"));
+		assertEquals(-1050L, Money.parseMinorUnits("-10.500"));
+		assertEquals("1000000.00", Money.parse("1,000,000").toString());
+		assertEquals("-0.05", Money.parse("-0.05").toString());
+
+		assertThrows(NumberFormatException.class, () -> Money.parse("10.005"));
+		assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+		assertThrows(NumberFormatException.class, () -> Money.parse(",100"));
+		assertThrows(NumberFormatException.class, () -> Money.parse("."));
+		assertThrows(NumberFormatException.class, () -> Money.parse("ten"));
+		assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999999999"));
+	}
+
+	@Test
+	void testArithmetic() {
+		Money price = Money.parse("185.50");
+
+		assertEquals(Money.parse("556.50"), price.multiply(3));
+		assertEquals(Money.ZERO, price.subtract(price));
+		assertEquals(0, price.compareTo(Money.valueOf(new BigDecimal("185.5"))));
+		assertEquals(0, new BigDecimal("742.00").compareTo(price.add(price).multiply(2).toBigDecimal()));
+		assertEquals(2000L, Money.toMinorUnits(20, 0));
+		assertEquals(1050L, Money.toMinorUnits(10500, 3));
+
+		assertThrows(ArithmeticException.class, () -> Money.valueOf(new BigDecimal("0.001")));
+		assertThrows(ArithmeticException.class, () -> Money.ofMinorUnits(Long.MAX_VALUE).add(price));
+	}
+
+}
@@ -0,0 +1,33 @@
+package io.github.joaofso.bookstore.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+public class ShoppingBasketTest {
+
+	@Test
+	void testOverflow() {
+		ShoppingBasket basket = new ShoppingBasket();
+		Book cheap = new Book("Mastering åäö", "Average Swede", new BigDecimal("762.00"));
+		Book expensive = new Book("How To Spend Money", "Rich Bloke", Money.ofMinorUnits(Long.MAX_VALUE / 2));
+		basket.addItem(cheap, 2);
+		basket.addItem(expensive, 1);
+
+		//Neither the units nor the total can wrap, and a failed add leaves the basket as it was
+		assertThrows(ArithmeticException.class, () -> basket.addItem(cheap, Integer.MAX_VALUE));
+		assertThrows(ArithmeticException.class, () -> basket.addItem(expensive, 2));
+		assertEquals(3, basket.size());
+		assertEquals(2, basket.getItems().get(0).getQuantity());
+		assertEquals(1, basket.getItems().get(1).getQuantity());
+		assertEquals(Long.MAX_VALUE / 2 + 152400, basket.getTotalMoney().getMinorUnits());
+
+		assertEquals(2, basket.removeItem(cheap, Integer.MAX_VALUE));
+		assertEquals(1, basket.size());
+		assertEquals(Long.MAX_VALUE / 2, basket.getTotalMoney().getMinorUnits());
+	}
+
+}
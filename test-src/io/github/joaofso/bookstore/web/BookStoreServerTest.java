@@ -0,0 +1,162 @@
+package io.github.joaofso.bookstore.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.joaofso.bookstore.aux.BookstoreException;
+import io.github.joaofso.bookstore.control.BookController;
+import io.github.joaofso.bookstore.control.SessionManager;
+import io.github.joaofso.bookstore.control.UserController;
+import io.github.joaofso.bookstore.control.dao.impl.MemoryStorageProvider;
+
+public class BookStoreServerTest {
+
+	private BookStoreServer server;
+	private int status;
+
+	@BeforeEach
+	void startServer() {
+		try {
+			MemoryStorageProvider provider = new MemoryStorageProvider();
+			BookController bookController = new BookController(provider.createBookDAO());
+			UserController userController = new UserController(provider.createUserDAO());
+			bookController.add("Mastering åäö", "Average Swede", "762.00", 2);
+			userController.createUser("admin", "admin", true);
+
+			this.server = new BookStoreServer(new SessionManager(bookController, userController), 0);
+			this.server.start();
+		} catch (BookstoreException e) {
+			fail("The test should not end up here!");
+		}
+	}
+
+	@Test
+	void testShopping() throws IOException {
+		assertEquals("{\"error\":\"The user is not logged in\"}", this.request("GET", "/books", null, ""));
+		assertEquals(401, this.status);
+
+		this.request("POST", "/users", null, "username=shopper&password=secret");
+		assertEquals(200, this.status);
+		String login = this.request("POST", "/login", null, "username=shopper&password=secret");
+		String token = login.substring("{\"token\":\"".length(), login.length() - 2);
+
+		assertEquals("[{\"title\":\"Mastering åäö\",\"author\":\"Average Swede\",\"price\":\"762.00\"}]",
+				this.request("GET", "/books?search=" + encode("åäö"), token, ""));
+
+		String book = "title=" + encode("Mastering åäö") + "&author=Average+Swede&price=762.00";
+		this.request("POST", "/basket/add", token, book + "&quantity=3");
+		assertEquals(
+				"{\"items\":[{\"title\":\"Mastering åäö\",\"author\":\"Average Swede\",\"price\":\"762.00\",\"quantity\":3}],\"total\":\"2286.00\"}",
+				this.request("GET", "/basket", token, ""));
+
+		String purchase = this.request("POST", "/buy", token, "");
+		assertTrue(purchase.endsWith("\"status\":0},{\"title\":\"Mastering åäö\",\"author\":\"Average Swede\",\"price\":\"762.00\",\"status\":1}]"));
+		assertEquals("{\"items\":[],\"total\":\"0.00\"}", this.request("GET", "/basket", token, ""));
+
+		this.request("POST", "/logout", token, "");
+		this.request("GET", "/basket", token, "");
+		assertEquals(401, this.status);
+	}
+
+	@Test
+	void testAdminTasks() throws IOException {
+		this.request("POST", "/users", null, "username=shopper&password=secret");
+		String shopperLogin = this.request("POST", "/login", null, "username=shopper&password=secret");
+		String shopper = shopperLogin.substring("{\"token\":\"".length(), shopperLogin.length() - 2);
+		this.request("POST", "/admin/books", shopper, "title=New&author=Someone&price=10.00");
+		assertEquals(403, this.status);
+
+		String adminLogin = this.request("POST", "/login", null, "username=admin&password=admin");
+		String admin = adminLogin.substring("{\"token\":\"".length(), adminLogin.length() - 2);
+		this.request("POST", "/admin/books", admin, "title=New&author=Someone&price=10.00&quantity=2");
+		assertEquals(200, this.status);
+		assertEquals(2, this.request("GET", "/books", shopper, "").split("\"title\"").length - 1);
+
+		this.request("POST", "/users/remove", admin, "username=shopper&password=admin");
+		assertEquals(200, this.status);
+		this.request("POST", "/login", null, "username=shopper&password=secret");
+		assertEquals(401, this.status);
+
+		this.request("GET", "/login", null, "");
+		assertEquals(405, this.status);
+		this.request("GET", "/inexistent", admin, "");
+		assertEquals(404, this.status);
+	}
+
+	@Test
+	void testRequestLimits() throws IOException {
+		String login = this.request("POST", "/login", null, "username=admin&password=admin");
+		String token = login.substring("{\"token\":\"".length(), login.length() - 2);
+		String book = "title=" + encode("Mastering åäö") + "&author=Average+Swede&price=762.00";
+
+		//A basket holds a bounded number of units, so the purchase never expands a huge one
+		this.request("POST", "/basket/add", token, book + "&quantity=2000000000");
+		assertEquals(400, this.status);
+		this.request("POST", "/basket/add", token, book + "&quantity=" + BookStoreServer.MAX_BASKET_UNITS);
+		assertEquals(200, this.status);
+		this.request("POST", "/basket/add", token, book);
+		assertEquals(400, this.status);
+		String purchase = this.request("POST", "/buy", token, "");
+		assertEquals(200, this.status);
+		assertEquals(BookStoreServer.MAX_BASKET_UNITS, purchase.split("\"status\"").length - 1);
+
+		StringBuilder form = new StringBuilder("username=admin&password=admin&padding=");
+		while (form.length() <= BookStoreServer.MAX_BODY_BYTES) {
+			form.append("0123456789");
+		}
+		this.request("POST", "/login", null, form.toString());
+		assertEquals(413, this.status);
+	}
+
+	@AfterEach
+	void stopServer() {
+		if (this.server != null) {
+			this.server.stop();
+		}
+	}
+
+	private String request(String method, String path, String token, String form) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + this.server.getPort() + path)
+				.openConnection();
+		connection.setRequestMethod(method);
+		if (token != null) {
+			connection.setRequestProperty(BookStoreServer.SESSION_HEADER, token);
+		}
+		if (method.equals("POST")) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+			try (OutputStream output = connection.getOutputStream()) {
+				output.write(form.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		this.status = connection.getResponseCode();
+		InputStream input = this.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = input.read(buffer)) > 0) {
+			body.write(buffer, 0, read);
+		}
+		input.close();
+		return new String(body.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static String encode(String value) throws IOException {
+		return URLEncoder.encode(value, "UTF-8");
+	}
+
+}